@@ -0,0 +1,431 @@
+package com.example.tictactoe;
+
+import com.example.tictactoe.ai.AlphaBetaEngine;
+import com.example.tictactoe.ai.MoveEngine;
+import com.example.tictactoe.ai.PonderingEngine;
+import com.example.tictactoe.ai.RandomEngine;
+import com.example.tictactoe.ai.Tablebase;
+import com.example.tictactoe.ai.TablebaseEngine;
+import com.example.tictactoe.ai.ThreatSpaceEngine;
+import com.example.tictactoe.analysis.AnalysisService;
+import com.example.tictactoe.analysis.GameAnalysis;
+import com.example.tictactoe.capture.Capture;
+import com.example.tictactoe.capture.ReplayRunner;
+import com.example.tictactoe.capture.TrafficCapture;
+import com.example.tictactoe.cluster.ShardRouter;
+import com.example.tictactoe.headless.NetworkBot;
+import com.example.tictactoe.http.HttpApiServer;
+import com.example.tictactoe.headless.SimulationRunner;
+import com.example.tictactoe.headless.Tournament;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.network.InboundLimiter;
+import com.example.tictactoe.network.MultiplexedConnection;
+import com.example.tictactoe.ratings.Leaderboard;
+import com.example.tictactoe.ratings.Rating;
+import com.example.tictactoe.ratings.RatingsService;
+import com.example.tictactoe.server.GameServer;
+import com.example.tictactoe.server.SerialExecutor;
+import com.example.tictactoe.server.SessionPool;
+import com.example.tictactoe.server.ShardServer;
+import com.example.tictactoe.util.ConfigService;
+import com.example.tictactoe.util.GameConfig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is the entry point for running the game without JavaFX, e.g. as bot worker or simulation runner.
+ * It never touches a JavaFX class, so the toolkit is neither loaded nor initialized.
+ * The time from JVM start until the process is ready is printed, which makes startup regressions visible.
+ * In every mode the metrics are published as JMX MBeans, like in the JavaFX application, but only once the mode is ready:
+ * the platform MBean server takes a few hundred milliseconds to start and is not needed for the first game.
+ * config.properties is watched as well: server limits and timeouts, the time budget of engines without their own budget
+ * and the analysis batch size follow a changed file without a restart.
+ *
+ * Usage: HeadlessMain --mode=server|shard|router|http|bot|bots|replay|simulate|tournament|analyze|build-tablebase [--join] [--games=N] [--size=N] [--win=N] [--seed=N]
+ *        [--port=N] [--mux-port=N] [--bots=N] [--shards=HOST:PORT,...] [--engine=random|threat|alphabeta] [--tablebase=FILE] [--ponder] [--exit-when-ready]
+ *        [--engines=ENGINE[:MILLIS],...] [--format=roundrobin|gauntlet] [--min-games=N] [--precision=ELO] [--ratings=FILE]
+ *        [--capture=FILE] [--pacing=original|max] [--concurrency=N]
+ *
+ * The engine is used by the bot and the first simulated player, the second simulated player always plays random moves.
+ * With --tablebase they play perfectly from the given tablebase file on boards it covers.
+ * With --ponder the bot searches the opponent's likely replies while waiting for the opponent's move.
+ * The server also accepts multiplexed connections with --mux-port. The bot farm (--mode=bots) joins --bots=N bots
+ * over one multiplexed connection to that port and ends when all their games are over.
+ * The http mode serves the HTTP/JSON API on --port with http.engines engines of the --engine type.
+ * With --ratings the tournament also updates lasting Elo ratings in the given file and prints the leaderboard.
+ * With --capture the server records the frames of its sessions into the given file; the replay mode plays such a file back
+ * against the --mux-port of a server and exits with status 2 if the server answered any session differently.
+ * The router reads commands from the console to change the shards while it runs: "add HOST:PORT", "remove HOST:PORT" and "shards".
+ *
+ */
+
+public class HeadlessMain {
+    public static void main(String[] args) throws InterruptedException, IOException {
+        Map<String, String> options = parseOptions(args);
+        String mode = options.getOrDefault("mode", "bot");
+        ConfigService configService = ConfigService.getDefault();
+        GameConfig config = configService.get();
+        configService.startWatching(); // Server-, KI- und Analyse-Einstellungen werden ohne Neustart übernommen
+        int size = Integer.parseInt(options.getOrDefault("size", String.valueOf(config.getBoardSize())));
+        int defaultWinLength = options.containsKey("size") ? Math.min(size, GameConfig.MAX_WIN_LENGTH) : config.getWinLength();
+        int winLength = Integer.parseInt(options.getOrDefault("win", String.valueOf(defaultWinLength)));
+        boolean exitWhenReady = options.containsKey("exit-when-ready");
+        int port = Integer.parseInt(options.getOrDefault("port", String.valueOf(config.getNetworkPort())));
+
+        switch (mode) {
+            case "bot": {
+                String host = config.getOpponentIp();
+                CountDownLatch ready = new CountDownLatch(1);
+                NetworkBot bot = new NetworkBot(new GameModel(size, winLength), createEngine(options, config, new Random()), host, port, () -> {
+                    printReady("bot");
+                    ready.countDown();
+                });
+                if (options.containsKey("join")) {
+                    bot.join();
+                } else {
+                    bot.host();
+                }
+                if (exitWhenReady) {
+                    ready.await();
+                    bot.stop();
+                } else {
+                    bot.awaitFinished();
+                }
+                break;
+            }
+            case "bots": {
+                int bots = Integer.parseInt(options.getOrDefault("bots", "100"));
+                runBotFarm(options, config, size, winLength, bots, Integer.parseInt(options.getOrDefault("mux-port", String.valueOf(port))), exitWhenReady);
+                break;
+            }
+            case "replay": {
+                Capture capture = Capture.read(Path.of(options.getOrDefault("capture", "capture.txt")));
+                ReplayRunner.Pacing pacing = "original".equals(options.get("pacing")) ? ReplayRunner.Pacing.ORIGINAL : ReplayRunner.Pacing.MAX;
+                int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+                ReplayRunner.Report report = runReplay(config, capture, pacing, concurrency, Integer.parseInt(options.getOrDefault("mux-port", String.valueOf(port))));
+                System.out.println(report);
+                System.exit(report.getDivergentSessions() > 0 ? 2 : 0);
+                break;
+            }
+            case "server":
+            case "shard": {
+                SessionPool sessionPool = new SessionPool(size, winLength, config.getServerMaxSessions());
+                configService.addListener(changed -> sessionPool.setMaxSessions(changed.getServerMaxSessions()));
+                int multiplexPort = Integer.parseInt(options.getOrDefault("mux-port", "0"));
+                GameServer server = "shard".equals(mode) ? new ShardServer(port, sessionPool) : new GameServer(port, multiplexPort, sessionPool);
+                if (options.containsKey("capture")) {
+                    TrafficCapture capture = TrafficCapture.open(Path.of(options.get("capture")), size, winLength);
+                    server.setCapture(capture);
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> { // der Server läuft bis zum Abbruch, die Datei soll trotzdem vollständig sein
+                        server.setCapture(null);
+                        try {
+                            capture.close();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }, "tictactoe_capture_shutdown_thread"));
+                }
+                server.start();
+                printReady(mode);
+                if (exitWhenReady) {
+                    server.stop();
+                } else {
+                    Thread.currentThread().join();
+                }
+                break;
+            }
+            case "http": {
+                List<MoveEngine> engines = new ArrayList<>();
+                Random random = new Random();
+                for (int i = 0; i < config.getHttpEngines(); i++) {
+                    engines.add(createEngine(options, config, new Random(random.nextLong())));
+                }
+                HttpApiServer api = new HttpApiServer(port, engines, config.getHttpCacheEntries(), config.getMaxLineLength());
+                api.start();
+                printReady("http api");
+                if (exitWhenReady) {
+                    api.stop();
+                } else {
+                    Thread.currentThread().join();
+                }
+                break;
+            }
+            case "router": {
+                ShardRouter router = new ShardRouter(port, Arrays.asList(options.getOrDefault("shards", "").split(",")));
+                router.start();
+                printReady("router");
+                if (exitWhenReady) {
+                    router.stop();
+                } else {
+                    readRouterCommands(router);
+                    Thread.currentThread().join();
+                }
+                break;
+            }
+            case "simulate": {
+                int games = Integer.parseInt(options.getOrDefault("games", "10000"));
+                long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+                SimulationRunner runner = new SimulationRunner(size, winLength);
+                printReady("simulation");
+                long start = System.nanoTime();
+                Map<GameState, Integer> results = runner.run(games, createEngine(options, config, new Random(seed)), new RandomEngine(new Random(seed + 1)));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println("simulated " + games + " games in " + String.format("%.3f", seconds) + "s ("
+                        + String.format("%.0f", games / seconds) + " games/s): " + results);
+                break;
+            }
+            case "tournament": {
+                int maxGames = Integer.parseInt(options.getOrDefault("games", "1000"));
+                int minGames = Integer.parseInt(options.getOrDefault("min-games", String.valueOf(Math.min(maxGames, 20))));
+                double precision = Double.parseDouble(options.getOrDefault("precision", "50"));
+                Tournament tournament = new Tournament(size, winLength, minGames, maxGames, precision);
+                for (String spec : options.getOrDefault("engines", "random,alphabeta").split(",")) {
+                    createEngine(spec, config.getAiTimeBudgetMillis(), new Random()); // ungültige Namen sofort melden
+                    tournament.addEntrant(spec, () -> createEngine(spec, config.getAiTimeBudgetMillis(), new Random()));
+                }
+                Tournament.Format format = "gauntlet".equals(options.get("format")) ? Tournament.Format.GAUNTLET : Tournament.Format.ROUND_ROBIN;
+                RatingsService ratings = null;
+                if (options.containsKey("ratings")) {
+                    ratings = new RatingsService(RatingsService.DEFAULT_INITIAL_RATING, RatingsService.DEFAULT_K_FACTOR,
+                            Path.of(options.get("ratings")), RatingsService.DEFAULT_SNAPSHOT_SECONDS);
+                    ratings.start();
+                    tournament.setRatings(ratings);
+                }
+                printReady("tournament");
+                System.out.println(tournament.run(format));
+                if (ratings != null) {
+                    Leaderboard leaderboard = ratings.awaitUpdates().join();
+                    System.out.println("leaderboard:");
+                    int rank = 1;
+                    for (Rating rating : leaderboard.top(10)) {
+                        System.out.println(rank++ + ". " + rating);
+                    }
+                    ratings.stop();
+                }
+                break;
+            }
+            case "analyze": {
+                int games = Integer.parseInt(options.getOrDefault("games", "1000"));
+                long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+                List<GameModel> finished = new ArrayList<>();
+                MoveEngine engineX = new RandomEngine(new Random(seed));
+                MoveEngine engineO = new RandomEngine(new Random(seed + 1));
+                for (int game = 0; game < games; game++) {
+                    GameModel model = new GameModel(size, winLength);
+                    new SimulationRunner(size, winLength).run(model, engineX, engineO);
+                    finished.add(model);
+                }
+                printReady("analysis");
+                long start = System.nanoTime();
+                int blunders = 0;
+                for (CompletableFuture<GameAnalysis> analysis : AnalysisService.getDefault().analyzeAll(finished)) {
+                    blunders += analysis.join().getBlunders().size();
+                }
+                System.out.println("analyzed " + games + " games in " + (System.nanoTime() - start) / 1_000_000 + " ms, "
+                        + blunders + " blunders, " + Metrics.ANALYSIS_POSITIONS.getCount() + " positions evaluated, "
+                        + Metrics.ANALYSIS_CACHE_HITS.getCount() + " cache hits");
+                break;
+            }
+            case "build-tablebase": {
+                Path file = Path.of(options.getOrDefault("tablebase", "tablebase-" + size + "x" + size + ".bin"));
+                Metrics.registry().registerMBeans();
+                Tablebase.build(size, winLength, file);
+                break;
+            }
+            default: {
+                System.err.println("unknown mode: " + mode);
+                System.exit(1);
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Joins the bots over one multiplexed connection, their callbacks share a thread pool.
+     */
+
+    private static void runBotFarm(Map<String, String> options, GameConfig config, int size, int winLength, int bots, int multiplexPort,
+                                   boolean exitWhenReady) throws IOException, InterruptedException {
+        ExecutorService callbackPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_bot_callback_thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Socket socket = new Socket(config.getOpponentIp(), multiplexPort);
+        MultiplexedConnection multiplexer = new MultiplexedConnection(socket, true, config.getMaxQueuedMessages(), InboundLimiter.fromConfig(config, bots), null);
+        multiplexer.start();
+        CountDownLatch ready = new CountDownLatch(bots);
+        List<NetworkBot> farm = new ArrayList<>();
+        Random random = new Random();
+        long start = System.nanoTime();
+        for (int i = 0; i < bots; i++) {
+            NetworkBot bot = new NetworkBot(new GameModel(size, winLength), createEngine(options, config, new Random(random.nextLong())),
+                    multiplexer, new SerialExecutor(callbackPool), ready::countDown);
+            farm.add(bot);
+            bot.join();
+        }
+        ready.await();
+        printReady("bot farm with " + bots + " bots");
+        if (!exitWhenReady) {
+            for (NetworkBot bot : farm) {
+                bot.awaitFinished();
+            }
+            System.out.printf("bot farm: %d games over one connection in %d ms%n", bots / 2, (System.nanoTime() - start) / 1_000_000);
+        }
+        for (NetworkBot bot : farm) {
+            bot.stop();
+        }
+        multiplexer.close();
+        callbackPool.shutdown();
+    }
+
+    /**
+     * Replays a capture over one multiplexed connection to the server, the callbacks of the players share a thread pool.
+     */
+
+    private static ReplayRunner.Report runReplay(GameConfig config, Capture capture, ReplayRunner.Pacing pacing, int concurrency, int multiplexPort)
+            throws IOException, InterruptedException {
+        ExecutorService callbackPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_replay_callback_thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Socket socket = new Socket(config.getOpponentIp(), multiplexPort);
+        MultiplexedConnection multiplexer = new MultiplexedConnection(socket, true, config.getMaxQueuedMessages(),
+                InboundLimiter.fromConfig(config, 2 * Math.max(1, concurrency)), null); // zwei Spieler je gleichzeitigem Spiel
+        multiplexer.start();
+        printReady("replay of " + capture.getSessions().size() + " sessions with " + capture.getFrameCount() + " frames");
+        try {
+            return new ReplayRunner(capture, multiplexer, callbackPool, pacing, concurrency).run();
+        } finally {
+            multiplexer.close();
+            callbackPool.shutdown();
+        }
+    }
+
+    /**
+     * Reads commands for the router from the console until the input ends.
+     */
+
+    private static void readRouterCommands(ShardRouter router) throws IOException {
+        BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = console.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            try {
+                if (words.length == 2 && "add".equals(words[0])) {
+                    router.addShard(words[1]).thenRun(() -> System.out.println("router: shard " + words[1] + " added, games moved"));
+                } else if (words.length == 2 && "remove".equals(words[0])) {
+                    router.removeShard(words[1]).thenRun(() -> System.out.println("router: shard " + words[1] + " drained, it can be stopped"));
+                } else if (words.length == 1 && "shards".equals(words[0])) {
+                    System.out.println("router: games per shard " + router.getGamesPerShard());
+                } else if (!words[0].isEmpty()) {
+                    System.err.println("unknown command, use: add HOST:PORT | remove HOST:PORT | shards");
+                }
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.err.println("router: " + e.getMessage());
+            }
+        }
+    }
+
+    private static MoveEngine createEngine(Map<String, String> options, GameConfig config, Random random) throws IOException {
+        MoveEngine engine = createEngine(options.getOrDefault("engine", "random"), config.getAiTimeBudgetMillis(), random, true);
+        if (options.containsKey("tablebase")) {
+            engine = new TablebaseEngine(Tablebase.open(Path.of(options.get("tablebase"))), engine);
+        }
+        if (options.containsKey("ponder")) {
+            engine = new PonderingEngine(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Creates an engine from its name, optionally followed by the time budget per move, e.g. "alphabeta:200".
+     * The budget stays fixed, e.g. so all games of a tournament are played with the same budget.
+     */
+
+    private static MoveEngine createEngine(String spec, long defaultTimeBudgetMillis, Random random) {
+        return createEngine(spec, defaultTimeBudgetMillis, random, false);
+    }
+
+    /**
+     * Creates an engine from its name like createEngine(String, long, Random).
+     *
+     * @param followConfig whether an engine without its own budget in the spec takes over a changed ai.timeBudgetMillis
+     */
+
+    private static MoveEngine createEngine(String spec, long defaultTimeBudgetMillis, Random random, boolean followConfig) {
+        int separator = spec.indexOf(':');
+        String name = separator < 0 ? spec : spec.substring(0, separator);
+        long timeBudgetMillis = separator < 0 ? defaultTimeBudgetMillis : Long.parseLong(spec.substring(separator + 1));
+        boolean configured = followConfig && separator < 0;
+        switch (name) {
+            case "random":
+                return new RandomEngine(random);
+            case "alphabeta": {
+                AlphaBetaEngine engine = new AlphaBetaEngine(AlphaBetaEngine.MAX_DEPTH, timeBudgetMillis);
+                if (configured) {
+                    ConfigService.getDefault().addListener(config -> engine.setTimeBudgetMillis(config.getAiTimeBudgetMillis()));
+                }
+                return engine;
+            }
+            case "threat": {
+                ThreatSpaceEngine engine = new ThreatSpaceEngine(timeBudgetMillis);
+                if (configured) {
+                    ConfigService.getDefault().addListener(config -> engine.setTimeBudgetMillis(config.getAiTimeBudgetMillis()));
+                }
+                return engine;
+            }
+            default:
+                throw new IllegalArgumentException("unknown engine: " + name);
+        }
+    }
+
+    /**
+     * Prints the time between the JVM start and now, then publishes the metrics as MBeans.
+     * The timestamp is taken before the MBean server is started, so its startup cost is not part of the measurement.
+     *
+     * @param what the name of the component that is ready
+     */
+
+    static void printReady(String what) {
+        long now = System.currentTimeMillis();
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println("headless " + what + " ready " + (now - jvmStart) + " ms after jvm start");
+        Metrics.registry().registerMBeans();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                System.err.println("ignoring argument " + arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+}
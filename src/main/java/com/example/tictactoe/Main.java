@@ -1,5 +1,6 @@
 package com.example.tictactoe;
 
+import com.example.tictactoe.metrics.Metrics;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -14,6 +15,7 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
         System.out.println("started application");
+        Metrics.registry().registerMBeans();
 
         try {
             String path = "/com/example/tictactoe/tictactoe.fxml";
@@ -0,0 +1,253 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This engine searches with negamax and alpha-beta pruning, deepened iteratively within a time budget per move.
+ * Leaves are scored by a PatternEvaluator that is updated together with the board on every move,
+ * so a leaf costs a constant-time score read instead of a scan over the whole board.
+ * Candidate moves are the cells near existing stones, ordered by the score after the move to prune early;
+ * at the root the best move of the previous iteration goes first.
+ *
+ */
+
+public class AlphaBetaEngine implements MoveEngine, DepthLimitedSearch {
+    private static final long WIN_SCORE = Long.MAX_VALUE / 4;
+    public static final int MAX_DEPTH = 64;
+    private static final int DEFAULT_DEPTH = 3;
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private final int maxDepth;
+    private volatile long timeBudgetMillis;
+    private volatile IterativeDeepening driver;
+
+    public AlphaBetaEngine() {
+        this(DEFAULT_DEPTH);
+    }
+
+    /**
+     * Creates an engine that always searches to the given depth.
+     */
+
+    public AlphaBetaEngine(int depth) {
+        this(depth, 0);
+    }
+
+    /**
+     * @param maxDepth         the maximum depth in plies
+     * @param timeBudgetMillis the time one move may take, 0 or less for no limit
+     */
+
+    public AlphaBetaEngine(int maxDepth, long timeBudgetMillis) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        this.maxDepth = maxDepth;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    @Override
+    public int selectMove(GameModel model) {
+        if (model.getGameState().isGameOver() || model.getMoveCount() == model.getSize() * model.getSize()) {
+            return -1;
+        }
+        return driver().selectMove(model);
+    }
+
+    @Override
+    public Session start(GameModel model) {
+        SearchBoard board = SearchBoard.of(model);
+        return new Search(board, PatternEvaluator.of(board), SearchBoard.toStone(model.getCurrentPlayer()));
+    }
+
+    @Override
+    public String getName() {
+        return "alpha-beta depth " + maxDepth;
+    }
+
+    /**
+     * Changes the time budget, e.g. after the configuration was reloaded. Searches that already run keep their budget.
+     *
+     * @param timeBudgetMillis the time one move may take, 0 or less for no limit
+     */
+
+    public synchronized void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        driver = null;
+    }
+
+    /**
+     * Creates the driver on first use instead of in the constructor, so this is not handed out before the engine is complete.
+     */
+
+    private IterativeDeepening driver() {
+        IterativeDeepening current = driver;
+        if (current == null) {
+            synchronized (this) { // damit kein Treiber mit dem alten Budget einen neueren ersetzt
+                current = driver;
+                if (current == null) {
+                    current = new IterativeDeepening(this, timeBudgetMillis, maxDepth);
+                    driver = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static boolean isWinScore(long score) {
+        return Math.abs(score) > WIN_SCORE - 10_000;
+    }
+
+    /**
+     * This class holds the state of one move decision, so the engine itself can be shared between bots.
+     */
+
+    private static final class Search implements Session {
+        private final SearchBoard board;
+        private final PatternEvaluator evaluator;
+        private final int stone;
+        private final PlyBuffers buffers = new PlyBuffers();
+        private long nodes;
+        private long deadline;
+        private boolean aborted;
+        private boolean depthLimited;
+
+        Search(SearchBoard board, PatternEvaluator evaluator, int stone) {
+            this.board = board;
+            this.evaluator = evaluator;
+            this.stone = stone;
+        }
+
+        @Override
+        public long getNodes() {
+            return nodes;
+        }
+
+        @Override
+        public Iteration search(int depth, int preferredMove, long deadline) {
+            this.deadline = deadline;
+            this.aborted = false;
+            this.depthLimited = false;
+            int count = orderedMoves(stone, 0);
+            int[] moves = buffers.moves(0, count);
+            moveToFront(moves, count, preferredMove);
+            int best = -1;
+            long alpha = -WIN_SCORE - 1;
+            for (int i = 0; i < count; i++) {
+                int cell = moves[i];
+                long value = -negamax(SearchBoard.opponent(stone), cell, depth - 1, 1, -WIN_SCORE - 1, -alpha);
+                if (aborted) {
+                    // Nur vollständig durchsuchte Züge zählen
+                    return new Iteration(best, alpha, false, false);
+                }
+                if (value > alpha || best < 0) {
+                    alpha = value;
+                    best = cell;
+                }
+            }
+            return new Iteration(best, alpha, true, isWinScore(alpha) || !depthLimited);
+        }
+
+        private static void moveToFront(int[] moves, int count, int move) {
+            for (int i = 0; i < count; i++) {
+                if (moves[i] == move) {
+                    System.arraycopy(moves, 0, moves, 1, i);
+                    moves[0] = move;
+                    return;
+                }
+            }
+        }
+
+        private boolean timeUp() {
+            if (++nodes % DEADLINE_CHECK_INTERVAL == 0
+                    && (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+                aborted = true;
+            }
+            return aborted;
+        }
+
+        /**
+         * Returns the value of the position for the player to move.
+         * The opponent has just played lastCell; a win of the opponent is scored lower the earlier it happens.
+         */
+
+        private long negamax(int stone, int lastCell, int depth, int ply, long alpha, long beta) {
+            play(lastCell, SearchBoard.opponent(stone));
+            try {
+                if (timeUp()) {
+                    return 0;
+                }
+                if (board.isWin(lastCell)) {
+                    return -WIN_SCORE + ply;
+                }
+                if (board.isFull()) {
+                    return 0;
+                }
+                if (depth == 0) {
+                    depthLimited = true;
+                    return evaluator.score(stone);
+                }
+                int count = orderedMoves(stone, ply);
+                int[] moves = buffers.moves(ply, count);
+                for (int i = 0; i < count; i++) {
+                    int cell = moves[i];
+                    long value = -negamax(SearchBoard.opponent(stone), cell, depth - 1, ply + 1, -beta, -alpha);
+                    if (aborted) {
+                        return 0;
+                    }
+                    if (value > alpha) {
+                        alpha = value;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+                return alpha;
+            } finally {
+                undo(lastCell, SearchBoard.opponent(stone));
+            }
+        }
+
+        private void play(int cell, int stone) {
+            board.place(cell, stone);
+            evaluator.place(cell, stone);
+        }
+
+        private void undo(int cell, int stone) {
+            evaluator.remove(cell, stone);
+            board.remove(cell);
+        }
+
+        /**
+         * Writes the candidate moves into the move buffer of the ply, sorted by the score of the player after the move, best first.
+         *
+         * @return the number of moves
+         */
+
+        private int orderedMoves(int stone, int ply) {
+            int count = board.candidateCount();
+            int[] moves = buffers.moves(ply, count);
+            long[] keys = buffers.keys(ply, count);
+            board.candidates(moves);
+            for (int i = 0; i < count; i++) {
+                evaluator.place(moves[i], stone);
+                keys[i] = evaluator.score(stone);
+                evaluator.remove(moves[i], stone);
+            }
+            // Insertion Sort: die Kandidatenliste ist kurz
+            for (int i = 1; i < count; i++) {
+                int move = moves[i];
+                long key = keys[i];
+                int j = i - 1;
+                while (j >= 0 && keys[j] < key) {
+                    moves[j + 1] = moves[j];
+                    keys[j + 1] = keys[j];
+                    j--;
+                }
+                moves[j + 1] = move;
+                keys[j + 1] = key;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This interface is a search that looks a fixed number of plies ahead, so IterativeDeepening can run it with growing depth.
+ * A session keeps the state of one move decision (boards, tables) between the iterations.
+ *
+ */
+
+public interface DepthLimitedSearch {
+    /**
+     * Starts the search of a move for the current player of the model. The model is not changed.
+     *
+     * @param model the position to search
+     * @return the session for the iterations
+     */
+
+    Session start(GameModel model);
+
+    interface Session {
+        /**
+         * Searches the position to the given depth.
+         * The search must stop soon after the deadline (System.nanoTime()) or an interrupt of the thread and
+         * then return an incomplete iteration with the best move among the root moves searched completely, if any.
+         *
+         * @param depth         the depth in plies
+         * @param preferredMove the best move of the previous iteration, searched first; -1 if there is none
+         * @param deadline      the time when the search has to stop
+         * @return the result of the iteration
+         */
+
+        Iteration search(int depth, int preferredMove, long deadline);
+
+        /**
+         * Returns the number of nodes visited by all iterations so far.
+         */
+
+        long getNodes();
+    }
+
+    /**
+     * This class is the result of one iteration.
+     */
+
+    final class Iteration {
+        private final int move;
+        private final long score;
+        private final boolean completed;
+        private final boolean proven;
+
+        /**
+         * @param move      the best move, -1 if none was searched completely
+         * @param score     the score of the move from the view of the player to move
+         * @param completed true if all root moves were searched to the depth
+         * @param proven    true if the score is exact (a forced result or the whole game tree), deeper searches cannot change it
+         */
+
+        public Iteration(int move, long score, boolean completed, boolean proven) {
+            this.move = move;
+            this.score = score;
+            this.completed = completed;
+            this.proven = proven;
+        }
+
+        public int getMove() {
+            return move;
+        }
+
+        public long getScore() {
+            return score;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public boolean isProven() {
+            return proven;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This class runs a DepthLimitedSearch with depth 1, 2, 3, ... until the time budget of the move is used up,
+ * so the response time depends on the budget and not on the depth.
+ * Each iteration searches the best move of the previous one first, which makes the pruning of the next iteration effective.
+ * The search stops early when an iteration proves the result, and when the time runs out the best move found so far is returned.
+ *
+ * The reached depth, the visited nodes, the nodes per second and the time per move are recorded as metrics.
+ *
+ */
+
+public class IterativeDeepening {
+    private final DepthLimitedSearch search;
+    private final long timeBudgetNanos;
+    private final int maxDepth;
+
+    /**
+     * @param search           the search to deepen
+     * @param timeBudgetMillis the time one move may take, 0 or less for no limit
+     * @param maxDepth         the maximum depth in plies
+     */
+
+    public IterativeDeepening(DepthLimitedSearch search, long timeBudgetMillis, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        this.search = search;
+        this.timeBudgetNanos = timeBudgetMillis > 0 ? timeBudgetMillis * 1_000_000L : Long.MAX_VALUE / 2;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Searches the best move for the current player of the model.
+     *
+     * @param model the position, it is not changed
+     * @return the packed cell index of the move, or -1 if there is none
+     */
+
+    public int selectMove(GameModel model) {
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetNanos;
+        DepthLimitedSearch.Session session = search.start(model);
+        int bestMove = -1;
+        int reachedDepth = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            DepthLimitedSearch.Iteration iteration = session.search(depth, bestMove, deadline);
+            if (iteration.getMove() >= 0) {
+                bestMove = iteration.getMove();
+            }
+            if (!iteration.isCompleted()) {
+                break;
+            }
+            reachedDepth = depth;
+            if (iteration.isProven() || System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long nodes = session.getNodes();
+        Metrics.SEARCH_TIME.recordSince(start);
+        Metrics.SEARCH_DEPTH.set(reachedDepth);
+        Metrics.SEARCH_NODES.add(nodes);
+        Metrics.SEARCH_NODES_PER_SECOND.set(elapsed > 0 ? nodes * 1_000_000_000L / elapsed : 0);
+        return bestMove;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetNanos / 1_000_000L;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This interface represents an engine that chooses the next move for the current player of a GameModel.
+ * Moves are returned as packed cell index (row * size + col), so no array has to be allocated per move.
+ *
+ */
+
+public interface MoveEngine {
+    /**
+     * Chooses a move for the current player. The model is not changed.
+     *
+     * @param model the model to choose a move for
+     * @return the packed cell index of the move, or -1 if there is no legal move
+     */
+
+    int selectMove(GameModel model);
+
+    /**
+     * Lets the engine think about the position in the background while the opponent is to move.
+     * The default does nothing. The model is not changed and not kept, engines work on a copy.
+     *
+     * @param model the model after the engine's own move
+     */
+
+    default void ponder(GameModel model) {
+    }
+
+    /**
+     * Stops thinking in the background, e.g. because the game is over or the connection was closed.
+     */
+
+    default void stopPondering() {
+    }
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.tictactoe.ai;
+
+/**
+ * This class evaluates a position by counting the windows of winLength cells that only one player occupies.
+ * A window with n stones of one player and no stone of the other is an open pattern of size n for that player
+ * (open twos, threes, fours, ...), and more stones weigh exponentially more.
+ *
+ * The counts are updated when a stone is placed or removed: only the 4 * winLength windows through the cell change,
+ * so an update is O(winLength) and the score itself is kept up to date and read in constant time.
+ *
+ */
+
+class PatternEvaluator {
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int size;
+    private final int winLength;
+    private final int cellCount;
+    private final byte[][] windowStones;
+    private final int[][] patternCounts = new int[3][];
+    private final long[] weights;
+    private long score;
+
+    PatternEvaluator(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        this.cellCount = size * size;
+        this.windowStones = new byte[][]{null, new byte[4 * cellCount], new byte[4 * cellCount]};
+        patternCounts[1] = new int[winLength + 1];
+        patternCounts[2] = new int[winLength + 1];
+        weights = new long[winLength + 1];
+        for (int stones = 1; stones <= winLength; stones++) {
+            weights[stones] = 1L << Math.min(2 * stones, 40);
+        }
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (isWindow(direction, cell)) {
+                    // Leere Fenster zählen für beide Spieler als Muster der Größe 0
+                    patternCounts[1][0]++;
+                    patternCounts[2][0]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an evaluator for the stones already on the board.
+     */
+
+    static PatternEvaluator of(SearchBoard board) {
+        PatternEvaluator evaluator = new PatternEvaluator(board.size, board.winLength);
+        for (int cell = 0; cell < board.cells.length; cell++) {
+            if (board.cells[cell] != SearchBoard.EMPTY) {
+                evaluator.place(cell, board.cells[cell]);
+            }
+        }
+        return evaluator;
+    }
+
+    private boolean isWindow(int direction, int first) {
+        int row = first / size;
+        int col = first % size;
+        int lastRow = row + (winLength - 1) * DIRECTIONS[direction][0];
+        int lastCol = col + (winLength - 1) * DIRECTIONS[direction][1];
+        return lastRow < size && lastCol >= 0 && lastCol < size;
+    }
+
+    void place(int cell, int stone) {
+        update(cell, stone, 1);
+    }
+
+    void remove(int cell, int stone) {
+        update(cell, stone, -1);
+    }
+
+    private void update(int cell, int stone, int delta) {
+        int other = SearchBoard.opponent(stone);
+        byte[] own = windowStones[stone];
+        byte[] opposing = windowStones[other];
+        int row = cell / size;
+        int col = cell % size;
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            int rowStep = DIRECTIONS[direction][0];
+            int colStep = DIRECTIONS[direction][1];
+            int base = direction * cellCount;
+            for (int offset = 0; offset < winLength; offset++) {
+                int firstRow = row - offset * rowStep;
+                int firstCol = col - offset * colStep;
+                if (firstRow < 0 || firstCol < 0 || firstCol >= size) {
+                    continue;
+                }
+                int lastRow = firstRow + (winLength - 1) * rowStep;
+                int lastCol = firstCol + (winLength - 1) * colStep;
+                if (lastRow >= size || lastCol < 0 || lastCol >= size) {
+                    continue;
+                }
+                int window = base + firstRow * size + firstCol;
+                int before = own[window];
+                int after = before + delta;
+                own[window] = (byte) after;
+                int blocking = opposing[window];
+                if (blocking == 0) {
+                    move(stone, before, after);
+                }
+                // Für den Gegner ist das Fenster blockiert, sobald ein Stein dieses Spielers darin liegt
+                int otherBefore = before == 0 ? blocking : -1;
+                int otherAfter = after == 0 ? blocking : -1;
+                if (otherBefore != otherAfter) {
+                    move(other, otherBefore, otherAfter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves one window of the player from one pattern size to another; -1 stands for a blocked window.
+     */
+
+    private void move(int stone, int from, int to) {
+        long sign = stone == 1 ? 1 : -1;
+        if (from >= 0) {
+            patternCounts[stone][from]--;
+            score -= sign * weights[from];
+        }
+        if (to >= 0) {
+            patternCounts[stone][to]++;
+            score += sign * weights[to];
+        }
+    }
+
+    /**
+     * Returns the score from the view of the given player in constant time.
+     *
+     * @param stone 1 for X, 2 for O
+     * @return positive if the position is better for the player
+     */
+
+    long score(int stone) {
+        return stone == 1 ? score : -score;
+    }
+
+    /**
+     * Returns the number of windows that only contain the given number of stones of the player.
+     */
+
+    int patternCount(int stone, int stones) {
+        return patternCounts[stone][stones];
+    }
+}
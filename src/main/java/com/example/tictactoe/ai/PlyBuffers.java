@@ -0,0 +1,73 @@
+package com.example.tictactoe.ai;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the scratch arrays of a search per ply: the moves, the keys of move ordering, the gain cells
+ * and the defending cells of a threat. Move generation, move ordering and threat detection reuse the same arrays
+ * at every node. A buffer only grows when a ply needs more room than ever before,
+ * so after the first iterations a search allocates nothing at all.
+ *
+ */
+
+final class PlyBuffers {
+    private int[][] moves = new int[16][];
+    private int[][] gains = new int[16][];
+    private int[][] defenses = new int[16][];
+    private long[][] keys = new long[16][];
+
+    /**
+     * Returns the move buffer of the ply with room for at least capacity moves.
+     * The content is left over from the last node on this ply.
+     */
+
+    int[] moves(int ply, int capacity) {
+        moves = ensurePly(moves, ply);
+        return moves[ply] = ensureCapacity(moves[ply], capacity);
+    }
+
+    /**
+     * Returns the buffer of the ply for the gain cells of a move, see SearchBoard.gains().
+     */
+
+    int[] gains(int ply, int capacity) {
+        gains = ensurePly(gains, ply);
+        return gains[ply] = ensureCapacity(gains[ply], capacity);
+    }
+
+    /**
+     * Returns the buffer of the ply for the cells that defend against a threat.
+     */
+
+    int[] defenses(int ply, int capacity) {
+        defenses = ensurePly(defenses, ply);
+        return defenses[ply] = ensureCapacity(defenses[ply], capacity);
+    }
+
+    /**
+     * Returns the key buffer of the ply with room for at least capacity keys, e.g. for the scores of move ordering.
+     */
+
+    long[] keys(int ply, int capacity) {
+        if (ply >= keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(ply + 1, 2 * keys.length));
+        }
+        long[] buffer = keys[ply];
+        if (buffer == null || buffer.length < capacity) {
+            buffer = new long[Math.max(capacity, buffer == null ? 32 : 2 * buffer.length)];
+            keys[ply] = buffer;
+        }
+        return buffer;
+    }
+
+    private static int[][] ensurePly(int[][] buffers, int ply) {
+        return ply < buffers.length ? buffers : Arrays.copyOf(buffers, Math.max(ply + 1, 2 * buffers.length));
+    }
+
+    private static int[] ensureCapacity(int[] buffer, int capacity) {
+        if (buffer == null || buffer.length < capacity) {
+            return new int[Math.max(capacity, buffer == null ? 32 : 2 * buffer.length)];
+        }
+        return buffer;
+    }
+}
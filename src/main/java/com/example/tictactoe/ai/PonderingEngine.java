@@ -0,0 +1,171 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This engine wraps another engine and uses the opponent's thinking time.
+ * After the own move, the likely replies of the opponent are played on a copy of the model in a background thread
+ * and the answer of the wrapped engine to each of them is kept, keyed by the Zobrist hash of the resulting position.
+ * The first reply searched is the one the wrapped engine would play for the opponent, then the free cells closest to the last move.
+ *
+ * If the real reply was pondered, the answer is returned immediately (or awaited, if it is being searched right now).
+ * Otherwise the background work is cancelled: queued replies are dropped and the running search is interrupted,
+ * which ends engines with a deadline at their next check.
+ *
+ */
+
+public class PonderingEngine implements MoveEngine {
+    private static final int DEFAULT_MAX_REPLIES = 8;
+
+    private final MoveEngine engine;
+    private final int maxReplies;
+    private final ExecutorService executor;
+    private final Map<Long, CompletableFuture<Integer>> answers = new ConcurrentHashMap<>();
+    private volatile Future<?> task;
+    private volatile Long searching;
+
+    public PonderingEngine(MoveEngine engine) {
+        this(engine, DEFAULT_MAX_REPLIES);
+    }
+
+    /**
+     * @param engine     the engine that chooses the moves
+     * @param maxReplies the number of opponent replies that are searched in advance
+     */
+
+    public PonderingEngine(MoveEngine engine, int maxReplies) {
+        this.engine = engine;
+        this.maxReplies = maxReplies;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_ponder_thread");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @Override
+    public int selectMove(GameModel model) {
+        long hash = model.getPositionHash();
+        CompletableFuture<Integer> answer = answers.get(hash);
+        if (answer != null && !answer.isDone() && Long.valueOf(hash).equals(searching)) {
+            // Die Antwort wird gerade berechnet: abwarten statt neu anfangen
+            try {
+                answer.join();
+            } catch (CancellationException e) {
+                answer = null;
+            }
+        }
+        stopPondering();
+        if (answer != null && answer.isDone() && !answer.isCompletedExceptionally()) {
+            int move = answer.join();
+            if (isLegal(model, move)) {
+                Metrics.PONDER_HITS.increment();
+                return move;
+            }
+        }
+        Metrics.PONDER_MISSES.increment();
+        return engine.selectMove(model);
+    }
+
+    private static boolean isLegal(GameModel model, int move) {
+        int size = model.getSize();
+        return move >= 0 && move < size * size && model.getPlayerAt(move / size, move % size) == Player.EMPTY;
+    }
+
+    @Override
+    public void ponder(GameModel model) {
+        stopPondering();
+        if (model.getGameState().isGameOver()) {
+            return;
+        }
+        GameModel copy = model.copy();
+        task = executor.submit(() -> ponderReplies(copy));
+    }
+
+    private void ponderReplies(GameModel model) {
+        for (int reply : likelyReplies(model)) {
+            if (Thread.currentThread().isInterrupted() || !model.playMove(reply)) {
+                break;
+            }
+            long hash = model.getPositionHash();
+            CompletableFuture<Integer> answer = new CompletableFuture<>();
+            answers.put(hash, answer);
+            searching = hash;
+            int move = model.getGameState().isGameOver() ? -1 : engine.selectMove(model);
+            searching = null;
+            if (Thread.currentThread().isInterrupted()) {
+                // Abgebrochene Suche liefert kein verlässliches Ergebnis
+                answer.cancel(false);
+                model.unmakeMove();
+                break;
+            }
+            answer.complete(move);
+            model.unmakeMove();
+        }
+    }
+
+    /**
+     * Returns the predicted reply of the opponent first, then the free cells in growing distance to the last move.
+     */
+
+    private List<Integer> likelyReplies(GameModel model) {
+        List<Integer> replies = new ArrayList<>();
+        int predicted = engine.selectMove(model);
+        if (predicted >= 0) {
+            replies.add(predicted);
+        }
+        int size = model.getSize();
+        int[] history = model.getMoveHistory();
+        int center = history.length > 0 ? history[history.length - 1] : (size / 2) * size + size / 2;
+        int centerRow = center / size;
+        int centerCol = center % size;
+        for (int radius = 1; radius < size && replies.size() < maxReplies; radius++) {
+            for (int row = centerRow - radius; row <= centerRow + radius && replies.size() < maxReplies; row++) {
+                for (int col = centerCol - radius; col <= centerCol + radius && replies.size() < maxReplies; col++) {
+                    boolean onRing = Math.abs(row - centerRow) == radius || Math.abs(col - centerCol) == radius;
+                    if (onRing && row >= 0 && row < size && col >= 0 && col < size
+                            && model.getPlayerAt(row, col) == Player.EMPTY && row * size + col != predicted) {
+                        replies.add(row * size + col);
+                    }
+                }
+            }
+        }
+        return replies;
+    }
+
+    /**
+     * Cancels the background work and forgets all pondered answers.
+     */
+
+    @Override
+    public void stopPondering() {
+        Future<?> running = task;
+        if (running != null && !running.isDone()) {
+            running.cancel(true);
+            Metrics.PONDER_CANCELLED.increment();
+        }
+        task = null;
+        for (CompletableFuture<Integer> answer : answers.values()) {
+            answer.cancel(false);
+        }
+        answers.clear();
+    }
+
+    @Override
+    public String getName() {
+        return engine.getName() + " (pondering)";
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.GameModel;
+
+import java.util.Random;
+
+/**
+ * This engine plays a uniformly random legal move.
+ * It is used as simplest bot and for simulations.
+ *
+ */
+
+public class RandomEngine implements MoveEngine {
+    private final Random random;
+
+    public RandomEngine() {
+        this(new Random());
+    }
+
+    public RandomEngine(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public int selectMove(GameModel model) {
+        int size = model.getSize();
+        if (model.getGameState().isGameOver()) {
+            return -1;
+        }
+        int emptyCells = size * size - model.getMoveCount();
+        if (emptyCells <= 0) {
+            return -1;
+        }
+        return model.emptyCell(random.nextInt(emptyCells));
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.Player;
+
+import java.util.Arrays;
+
+/**
+ * This class is a compact board for searching engines that can play and take back moves in constant time.
+ * Cells are packed indices (row * size + col) holding 0 (empty), 1 (X) or 2 (O).
+ *
+ * Besides the cells, the set of candidate moves is kept up to date incrementally:
+ * an empty cell is a candidate if a stone lies within NEIGHBORHOOD cells of it.
+ * On large boards this keeps the move generation proportional to the area around the stones instead of the whole board.
+ *
+ */
+
+class SearchBoard {
+    static final int EMPTY = 0;
+    static final int NEIGHBORHOOD = 2;
+    static final int WIN = Integer.MAX_VALUE;
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    final int size;
+    final int winLength;
+    final byte[] cells;
+    private final int[] near;
+    private final int[] candidates;
+    private final int[] candidatePosition;
+    private final int[] winningGains;
+    private int candidateCount;
+    private int stoneCount;
+
+    SearchBoard(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        int cellCount = size * size;
+        this.cells = new byte[cellCount];
+        this.near = new int[cellCount];
+        this.candidates = new int[cellCount];
+        this.candidatePosition = new int[cellCount];
+        this.winningGains = new int[4 * winLength];
+        Arrays.fill(candidatePosition, -1);
+    }
+
+    /**
+     * Creates a search board with the position of the model.
+     *
+     * @param model the model to copy
+     * @return the board
+     */
+
+    static SearchBoard of(GameModel model) {
+        SearchBoard board = new SearchBoard(model.getSize(), model.getWinLength());
+        Player[][] position = model.getBoard();
+        for (int row = 0; row < board.size; row++) {
+            for (int col = 0; col < board.size; col++) {
+                if (position[row][col] != Player.EMPTY) {
+                    board.place(row * board.size + col, toStone(position[row][col]));
+                }
+            }
+        }
+        return board;
+    }
+
+    static int toStone(Player player) {
+        return player == Player.X ? 1 : (player == Player.O ? 2 : EMPTY);
+    }
+
+    static int opponent(int stone) {
+        return 3 - stone;
+    }
+
+    void place(int cell, int stone) {
+        cells[cell] = (byte) stone;
+        stoneCount++;
+        removeCandidate(cell);
+        updateNeighborhood(cell, 1);
+    }
+
+    void remove(int cell) {
+        cells[cell] = EMPTY;
+        stoneCount--;
+        updateNeighborhood(cell, -1);
+        if (near[cell] > 0) {
+            addCandidate(cell);
+        }
+    }
+
+    private void updateNeighborhood(int cell, int delta) {
+        int row = cell / size;
+        int col = cell % size;
+        int fromRow = Math.max(0, row - NEIGHBORHOOD);
+        int toRow = Math.min(size - 1, row + NEIGHBORHOOD);
+        int fromCol = Math.max(0, col - NEIGHBORHOOD);
+        int toCol = Math.min(size - 1, col + NEIGHBORHOOD);
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromCol; c <= toCol; c++) {
+                int neighbor = r * size + c;
+                near[neighbor] += delta;
+                if (cells[neighbor] == EMPTY) {
+                    if (near[neighbor] == 0) {
+                        removeCandidate(neighbor);
+                    } else if (delta > 0 && near[neighbor] == 1) {
+                        addCandidate(neighbor);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addCandidate(int cell) {
+        if (candidatePosition[cell] < 0) {
+            candidatePosition[cell] = candidateCount;
+            candidates[candidateCount++] = cell;
+        }
+    }
+
+    private void removeCandidate(int cell) {
+        int position = candidatePosition[cell];
+        if (position >= 0) {
+            int last = candidates[--candidateCount];
+            candidates[position] = last;
+            candidatePosition[last] = position;
+            candidatePosition[cell] = -1;
+        }
+    }
+
+    /**
+     * Returns the number of candidate moves, i.e. how large the buffer for candidates(int[]) has to be.
+     */
+
+    int candidateCount() {
+        return stoneCount == 0 ? 1 : candidateCount;
+    }
+
+    /**
+     * Copies the current candidate moves into the buffer, so the caller can iterate while playing moves.
+     * Searches pass a buffer of their own for every ply, so move generation allocates nothing.
+     *
+     * @param moves the buffer, must hold at least candidateCount() cells
+     * @return the number of candidate cells; the center if the board is empty
+     */
+
+    int candidates(int[] moves) {
+        if (stoneCount == 0) {
+            moves[0] = (size / 2) * size + size / 2;
+            return 1;
+        }
+        System.arraycopy(candidates, 0, moves, 0, candidateCount);
+        return candidateCount;
+    }
+
+    int getStoneCount() {
+        return stoneCount;
+    }
+
+    boolean isFull() {
+        return stoneCount == cells.length;
+    }
+
+    /**
+     * Checks if the stone on the cell completes a line. Only the lines through the cell are looked at.
+     */
+
+    boolean isWin(int cell) {
+        int stone = cells[cell];
+        int row = cell / size;
+        int col = cell % size;
+        for (int[] direction : DIRECTIONS) {
+            int count = 1 + count(stone, row, col, direction[0], direction[1]) + count(stone, row, col, -direction[0], -direction[1]);
+            if (count >= winLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int count(int stone, int row, int col, int rowStep, int colStep) {
+        int count = 0;
+        int r = row + rowStep;
+        int c = col + colStep;
+        while (count < winLength && r >= 0 && r < size && c >= 0 && c < size && cells[r * size + c] == stone) {
+            count++;
+            r += rowStep;
+            c += colStep;
+        }
+        return count;
+    }
+
+    /**
+     * Calls the visitor for every window of winLength cells through the cell that does not contain a stone of the opponent.
+     * This is the incremental part of the threat detection: a move can only create threats in these windows.
+     *
+     * @param cell    the cell all windows go through
+     * @param stone   the stone whose windows are looked at; the cell itself counts as this stone
+     * @param visitor receives the first cell, the step, the number of own stones and the number of empty cells
+     */
+
+    void forEachWindow(int cell, int stone, WindowVisitor visitor) {
+        for (int window = 0; window < windowCount(); window++) {
+            int first = windowFirst(cell, window);
+            if (first < 0) {
+                continue;
+            }
+            int step = windowStep(window);
+            int own = windowOwn(first, step, cell, stone);
+            if (own >= 0) {
+                visitor.visit(first, step, own, winLength - own);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of windows through a cell, on the board or not. Hot loops walk the windows with windowFirst(),
+     * windowStep() and windowOwn() instead of forEachWindow(), so they need no visitor object.
+     */
+
+    int windowCount() {
+        return DIRECTIONS.length * winLength;
+    }
+
+    /**
+     * Returns the first cell of a window through the cell, or -1 if the window does not fit on the board.
+     *
+     * @param window the number of the window, from 0 to windowCount() - 1
+     */
+
+    int windowFirst(int cell, int window) {
+        int[] direction = DIRECTIONS[window / winLength];
+        int offset = window % winLength - (winLength - 1);
+        int firstRow = cell / size + offset * direction[0];
+        int firstCol = cell % size + offset * direction[1];
+        int lastRow = firstRow + (winLength - 1) * direction[0];
+        int lastCol = firstCol + (winLength - 1) * direction[1];
+        if (firstRow < 0 || firstRow >= size || lastRow < 0 || lastRow >= size
+                || firstCol < 0 || firstCol >= size || lastCol < 0 || lastCol >= size) {
+            return -1;
+        }
+        return firstRow * size + firstCol;
+    }
+
+    int windowStep(int window) {
+        int[] direction = DIRECTIONS[window / winLength];
+        return direction[0] * size + direction[1];
+    }
+
+    /**
+     * Counts the stones of the player in the window, the cell itself counts as a stone of the player.
+     *
+     * @return the number of own stones, or -1 if the window contains a stone of the opponent
+     */
+
+    int windowOwn(int first, int step, int cell, int stone) {
+        int other = opponent(stone);
+        int own = 0;
+        for (int i = 0, current = first; i < winLength; i++, current += step) {
+            int value = current == cell ? stone : cells[current];
+            if (value == stone) {
+                own++;
+            } else if (value == other) {
+                return -1;
+            }
+        }
+        return own;
+    }
+
+    /**
+     * Returns the empty cells that would complete a line after the stone is played on the (empty) cell.
+     *
+     * @param cell  the empty cell
+     * @param stone the stone to play
+     * @param gains receives the distinct gain cells, must have room for 4 * winLength cells
+     * @return the number of gain cells, or WIN if the move itself completes a line
+     */
+
+    int gains(int cell, int stone, int[] gains) {
+        int count = 0;
+        for (int window = 0; window < windowCount(); window++) {
+            int first = windowFirst(cell, window);
+            if (first < 0) {
+                continue;
+            }
+            int step = windowStep(window);
+            int own = windowOwn(first, step, cell, stone);
+            if (own == winLength) {
+                return WIN;
+            }
+            if (own == winLength - 1) {
+                for (int i = 0, current = first; i < winLength; i++, current += step) {
+                    if (current != cell && cells[current] == EMPTY) {
+                        count = addDistinct(gains, count, current);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    static int addDistinct(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return count;
+            }
+        }
+        values[count] = value;
+        return count + 1;
+    }
+
+    /**
+     * Returns an empty cell on which the stone would complete a line, or -1.
+     */
+
+    int findWinningCell(int stone) {
+        for (int i = 0; i < candidateCount; i++) {
+            int cell = candidates[i];
+            if (gains(cell, stone, winningGains) == WIN) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    interface WindowVisitor {
+        void visit(int first, int step, int own, int empty);
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.BoardSymmetry;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class is a solved endgame tablebase for small boards (up to 4x4), built by retrograde analysis.
+ * Every position is stored from the view of the player to move: win, loss or draw plus the number of plies until the result.
+ *
+ * A position is encoded as base-3 number over all cells (0 = empty, 1 = player to move, 2 = opponent).
+ * Only the smallest of the 8 symmetric variants of a legal position is stored. The file contains a bitset over all
+ * encodings that marks the stored positions, a prefix count per bitset word and one packed value byte per stored position,
+ * so a lookup is a bit count plus one byte read on the memory-mapped file.
+ *
+ */
+
+public class Tablebase {
+    public static final int RESULT_UNKNOWN = 0;
+    public static final int RESULT_WIN = 1;
+    public static final int RESULT_LOSS = 2;
+    public static final int RESULT_DRAW = 3;
+
+    private static final int MAGIC = 0x54544242; // "TTBB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int MAX_SIZE = 4;
+
+    private final int size;
+    private final int winLength;
+    private final int cells;
+    private final int positionCount;
+    private final int wordCount;
+    private final ByteBuffer data;
+    private final long wordsOffset;
+    private final long prefixOffset;
+    private final long valuesOffset;
+    private final Encoding encoding;
+
+    private Tablebase(int size, int winLength, ByteBuffer data) {
+        this.size = size;
+        this.winLength = winLength;
+        this.cells = size * size;
+        this.encoding = new Encoding(size, winLength);
+        this.positionCount = encoding.positionCount;
+        this.wordCount = (positionCount + 63) / 64;
+        this.data = data;
+        this.wordsOffset = HEADER_SIZE;
+        this.prefixOffset = wordsOffset + 8L * wordCount;
+        this.valuesOffset = prefixOffset + 4L * wordCount;
+    }
+
+    /**
+     * Maps a tablebase file into memory. Nothing is copied to the heap, the operating system pages the file in on demand.
+     *
+     * @param file the file written by build()
+     * @return the tablebase
+     * @throws IOException if the file cannot be read or has the wrong format
+     */
+
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("not a tablebase file: " + file);
+            }
+            int size = buffer.getInt(8);
+            int winLength = buffer.getInt(12);
+            System.out.println("tablebase " + size + "x" + size + " opened from " + file);
+            return new Tablebase(size, winLength, buffer);
+        }
+    }
+
+    /**
+     * Solves all positions of the board with retrograde analysis and writes the tablebase file.
+     * The positions are solved level by level from the full board back to the empty board;
+     * all positions of one level only depend on the level after it and are solved in parallel on all cores.
+     * Memory use is one byte per encoding (43 MB for 4x4) plus the output buffers.
+     *
+     * @param size      the board size, at most 4
+     * @param winLength the number of symbols in a row that win
+     * @param file      the file to write
+     * @throws IOException if the file cannot be written
+     */
+
+    public static void build(int size, int winLength, Path file) throws IOException {
+        if (size < 1 || size > MAX_SIZE || winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("tablebase supports boards up to " + MAX_SIZE + "x" + MAX_SIZE);
+        }
+        long start = System.nanoTime();
+        Encoding encoding = new Encoding(size, winLength);
+        int positionCount = encoding.positionCount;
+        byte[] values = new byte[positionCount];
+
+        for (int level = encoding.cells; level >= 0; level--) {
+            final int stones = level;
+            IntStream.range(0, positionCount).parallel().forEach(index -> {
+                if (encoding.stoneCount(index) == stones && encoding.isLegal(index) && encoding.canonical(index) == index) {
+                    values[index] = encoding.solve(index, values);
+                }
+            });
+            System.out.println("tablebase: solved level " + level);
+        }
+
+        int wordCount = (positionCount + 63) / 64;
+        long[] words = new long[wordCount];
+        IntStream.range(0, wordCount).parallel().forEach(word -> {
+            long bits = 0;
+            int end = Math.min(positionCount, (word + 1) * 64);
+            for (int index = word * 64; index < end; index++) {
+                if (values[index] != 0) {
+                    bits |= 1L << (index - word * 64);
+                }
+            }
+            words[word] = bits;
+        });
+        int[] prefix = new int[wordCount];
+        int stored = 0;
+        for (int word = 0; word < wordCount; word++) {
+            prefix[word] = stored;
+            stored += Long.bitCount(words[word]);
+        }
+
+        ByteBuffer output = ByteBuffer.allocate(HEADER_SIZE + 12 * wordCount + stored).order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(winLength).putInt(stored);
+        output.position(HEADER_SIZE);
+        for (long word : words) {
+            output.putLong(word);
+        }
+        for (int count : prefix) {
+            output.putInt(count);
+        }
+        for (byte value : values) {
+            if (value != 0) {
+                output.put(value);
+            }
+        }
+        output.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (output.hasRemaining()) {
+                channel.write(output);
+            }
+        }
+        System.out.println("tablebase " + size + "x" + size + " with " + stored + " positions written to " + file
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Returns the packed value of a position, see result() and distance().
+     *
+     * @param index the encoded position from the view of the player to move
+     * @return the packed value, or 0 if the position is not legal
+     */
+
+    int lookup(int index) {
+        int canonical = encoding.canonical(index);
+        int word = canonical >>> 6;
+        long bits = data.getLong((int) (wordsOffset + 8L * word));
+        long bit = 1L << (canonical & 63);
+        if ((bits & bit) == 0) {
+            return 0;
+        }
+        int rank = data.getInt((int) (prefixOffset + 4L * word)) + Long.bitCount(bits & (bit - 1));
+        return data.get((int) (valuesOffset + rank)) & 0xFF;
+    }
+
+    public static int result(int value) {
+        return value & 0x3;
+    }
+
+    public static int distance(int value) {
+        return value >>> 2;
+    }
+
+    public boolean supports(GameModel model) {
+        return model.getSize() == size && model.getWinLength() == winLength;
+    }
+
+    /**
+     * Encodes the position of the model from the view of its current player.
+     *
+     * @param model the model, must have the size and win length of this tablebase
+     * @return the encoded position
+     */
+
+    public int encode(GameModel model) {
+        synchronized (model) {
+            Player mover = model.getCurrentPlayer();
+            int index = 0;
+            for (int cell = cells - 1; cell >= 0; cell--) {
+                Player player = model.getPlayerAt(cell / size, cell % size);
+                int digit = player == Player.EMPTY ? 0 : (player == mover ? 1 : 2);
+                index = index * 3 + digit;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Returns the packed value of the position of the model, from the view of its current player.
+     *
+     * @param model the model to look up
+     * @return the packed value, or 0 if the position is not in the tablebase
+     */
+
+    public int probe(GameModel model) {
+        return lookup(encode(model));
+    }
+
+    /**
+     * Returns the best move of the current player in O(cells) table lookups:
+     * the fastest win, otherwise a draw, otherwise the slowest loss.
+     *
+     * @param model the model to look up
+     * @return the packed cell index of the best move, or -1 if there is none
+     */
+
+    public int bestMove(GameModel model) {
+        int index = encode(model);
+        int bestMove = -1;
+        int bestScore = Integer.MIN_VALUE;
+        int power = 1;
+        for (int cell = 0; cell < cells; cell++, power *= 3) {
+            if ((index / power) % 3 != 0) {
+                continue;
+            }
+            int child = encoding.swapSides(index + power);
+            int value = lookup(child);
+            if (value == 0) {
+                continue;
+            }
+            int score = scoreForParent(value);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = cell;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Converts the value of a child position (seen by the opponent) to a score for the player who made the move.
+     */
+
+    private static int scoreForParent(int childValue) {
+        int distance = distance(childValue);
+        switch (result(childValue)) {
+            case RESULT_LOSS:
+                return 1000 - distance;
+            case RESULT_DRAW:
+                return 0;
+            default:
+                return -1000 + distance;
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * This class holds the lookup tables for encoding, symmetries and line checks.
+     * Every table works on one half of the cells, so a full operation is two array lookups per half instead of a loop over all cells.
+     */
+
+    static final class Encoding {
+        private final int size;
+        private final int cells;
+        private final int lowCells;
+        private final int lowRange;
+        private final int positionCount;
+        private final int[][] transformLow = new int[BoardSymmetry.TRANSFORM_COUNT][];
+        private final int[][] transformHigh = new int[BoardSymmetry.TRANSFORM_COUNT][];
+        private final int[] swapLow;
+        private final int[] swapHigh;
+        private final byte[] countLow;
+        private final byte[] countHigh;
+        private final int[] moverMaskLow;
+        private final int[] moverMaskHigh;
+        private final int[] opponentMaskLow;
+        private final int[] opponentMaskHigh;
+        private final int[] lineMasks;
+
+        Encoding(int size, int winLength) {
+            this.size = size;
+            this.cells = size * size;
+            this.lowCells = (cells + 1) / 2;
+            this.lowRange = pow3(lowCells);
+            int highCells = cells - lowCells;
+            int highRange = pow3(highCells);
+            this.positionCount = pow3(cells);
+
+            BoardSymmetry symmetry = BoardSymmetry.forSize(size);
+            for (int t = 0; t < BoardSymmetry.TRANSFORM_COUNT; t++) {
+                transformLow[t] = new int[lowRange];
+                transformHigh[t] = new int[highRange];
+            }
+            swapLow = new int[lowRange];
+            swapHigh = new int[highRange];
+            countLow = new byte[lowRange];
+            countHigh = new byte[highRange];
+            moverMaskLow = new int[lowRange];
+            moverMaskHigh = new int[highRange];
+            opponentMaskLow = new int[lowRange];
+            opponentMaskHigh = new int[highRange];
+            fillHalf(0, lowCells, lowRange, symmetry, transformLow, swapLow, countLow, moverMaskLow, opponentMaskLow);
+            fillHalf(lowCells, highCells, highRange, symmetry, transformHigh, swapHigh, countHigh, moverMaskHigh, opponentMaskHigh);
+            lineMasks = lineMasks(size, winLength);
+        }
+
+        private void fillHalf(int firstCell, int cellCount, int range, BoardSymmetry symmetry, int[][] transforms,
+                              int[] swap, byte[] count, int[] moverMask, int[] opponentMask) {
+            for (int value = 0; value < range; value++) {
+                int rest = value;
+                int swapped = 0;
+                int power = 1;
+                for (int i = 0; i < cellCount; i++, power *= 3) {
+                    int digit = rest % 3;
+                    rest /= 3;
+                    int cell = firstCell + i;
+                    if (digit != 0) {
+                        count[value]++;
+                        if (digit == 1) {
+                            moverMask[value] |= 1 << cell;
+                        } else {
+                            opponentMask[value] |= 1 << cell;
+                        }
+                        for (int t = 0; t < BoardSymmetry.TRANSFORM_COUNT; t++) {
+                            transforms[t][value] += digit * pow3(symmetry.apply(t, cell));
+                        }
+                    }
+                    swapped += (digit == 0 ? 0 : 3 - digit) * power;
+                }
+                swap[value] = swapped * (firstCell == 0 ? 1 : lowRange);
+            }
+        }
+
+        int stoneCount(int index) {
+            return countLow[index % lowRange] + countHigh[index / lowRange];
+        }
+
+        int canonical(int index) {
+            int low = index % lowRange;
+            int high = index / lowRange;
+            int best = index;
+            for (int t = 1; t < BoardSymmetry.TRANSFORM_COUNT; t++) {
+                int transformed = transformLow[t][low] + transformHigh[t][high];
+                if (transformed < best) {
+                    best = transformed;
+                }
+            }
+            return best;
+        }
+
+        int swapSides(int index) {
+            return swapLow[index % lowRange] + swapHigh[index / lowRange];
+        }
+
+        private boolean hasLine(int mask) {
+            for (int line : lineMasks) {
+                if ((mask & line) == line) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * A position is legal if the player to move has as many stones as the opponent or one less
+         * and has no complete line (the game would have ended with the player's last move).
+         */
+
+        boolean isLegal(int index) {
+            int low = index % lowRange;
+            int high = index / lowRange;
+            int movers = Integer.bitCount(moverMaskLow[low] | moverMaskHigh[high]);
+            int opponents = Integer.bitCount(opponentMaskLow[low] | opponentMaskHigh[high]);
+            return (movers == opponents || movers == opponents - 1) && !hasLine(moverMaskLow[low] | moverMaskHigh[high]);
+        }
+
+        /**
+         * Solves one position from the already solved positions with one more stone.
+         */
+
+        byte solve(int index, byte[] values) {
+            int low = index % lowRange;
+            int high = index / lowRange;
+            if (hasLine(opponentMaskLow[low] | opponentMaskHigh[high])) {
+                return pack(RESULT_LOSS, 0);
+            }
+            if (stoneCount(index) == cells) {
+                return pack(RESULT_DRAW, 0);
+            }
+            int bestWin = Integer.MAX_VALUE;
+            int bestDraw = Integer.MAX_VALUE;
+            int longestLoss = -1;
+            int power = 1;
+            for (int cell = 0; cell < cells; cell++, power *= 3) {
+                if ((index / power) % 3 != 0) {
+                    continue;
+                }
+                int child = canonical(swapSides(index + power));
+                int value = values[child] & 0xFF;
+                int distance = distance(value) + 1;
+                switch (result(value)) {
+                    case RESULT_LOSS:
+                        bestWin = Math.min(bestWin, distance);
+                        break;
+                    case RESULT_DRAW:
+                        bestDraw = Math.min(bestDraw, distance);
+                        break;
+                    case RESULT_WIN:
+                        longestLoss = Math.max(longestLoss, distance);
+                        break;
+                    default:
+                        throw new IllegalStateException("child position not solved: " + child);
+                }
+            }
+            if (bestWin != Integer.MAX_VALUE) {
+                return pack(RESULT_WIN, bestWin);
+            }
+            if (bestDraw != Integer.MAX_VALUE) {
+                return pack(RESULT_DRAW, bestDraw);
+            }
+            return pack(RESULT_LOSS, longestLoss);
+        }
+
+        private static byte pack(int result, int distance) {
+            return (byte) (result | (distance << 2));
+        }
+
+        private static int pow3(int exponent) {
+            int result = 1;
+            for (int i = 0; i < exponent; i++) {
+                result *= 3;
+            }
+            return result;
+        }
+
+        private static int[] lineMasks(int size, int winLength) {
+            int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+            List<Integer> masks = new ArrayList<>();
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    for (int[] direction : directions) {
+                        int endRow = row + direction[0] * (winLength - 1);
+                        int endCol = col + direction[1] * (winLength - 1);
+                        if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) {
+                            continue;
+                        }
+                        int mask = 0;
+                        for (int i = 0; i < winLength; i++) {
+                            mask |= 1 << ((row + direction[0] * i) * size + col + direction[1] * i);
+                        }
+                        masks.add(mask);
+                    }
+                }
+            }
+            return masks.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This engine plays perfectly on boards covered by a tablebase and delegates all other boards to a fallback engine.
+ *
+ */
+
+public class TablebaseEngine implements MoveEngine {
+    private final Tablebase tablebase;
+    private final MoveEngine fallback;
+
+    public TablebaseEngine(Tablebase tablebase, MoveEngine fallback) {
+        this.tablebase = tablebase;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public int selectMove(GameModel model) {
+        if (model.getGameState().isGameOver()) {
+            return -1;
+        }
+        if (tablebase.supports(model)) {
+            int move = tablebase.bestMove(model);
+            if (move >= 0) {
+                return move;
+            }
+        }
+        return fallback.selectMove(model);
+    }
+
+    @Override
+    public String getName() {
+        return "tablebase " + tablebase.getSize() + "x" + tablebase.getSize();
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.tictactoe.ai;
+
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This engine searches for forced wins with threat-space search, as known from Gomoku programs.
+ * The attacker only plays threats and the defender only the moves that answer them, which keeps the tree small enough
+ * to find long forcing sequences on large boards (e.g. 15x15 with five in a row) within a tight time budget:
+ * <ul>
+ *     <li>a four (one cell left to complete a line) forces the defender to play that cell,</li>
+ *     <li>a three (a move after which the attacker can create two fours at once) is answered by every cell that
+ *     prevents all such double fours, and by every four of the defender.</li>
+ * </ul>
+ * Threats are only detected in the windows through the last move and candidate moves are only cells near existing stones.
+ * If no forced win is found, immediate threats of the opponent are blocked and otherwise the best cell by a simple
+ * window evaluation is played. An interrupt of the searching thread ends the search like the deadline.
+ *
+ */
+
+public class ThreatSpaceEngine implements MoveEngine {
+    private static final int DEFAULT_MAX_DEPTH = 12;
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private volatile long timeBudgetNanos;
+    private final int maxDepth;
+
+    public ThreatSpaceEngine(long timeBudgetMillis) {
+        this(timeBudgetMillis, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param timeBudgetMillis the time one move may take
+     * @param maxDepth         the maximum number of attacker threats in a sequence
+     */
+
+    public ThreatSpaceEngine(long timeBudgetMillis, int maxDepth) {
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Changes the time budget, e.g. after the configuration was reloaded. Searches that already run keep their budget.
+     */
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+    }
+
+    @Override
+    public int selectMove(GameModel model) {
+        if (model.getGameState().isGameOver()) {
+            return -1;
+        }
+        SearchBoard board = SearchBoard.of(model);
+        if (board.isFull()) {
+            return -1;
+        }
+        int me = SearchBoard.toStone(model.getCurrentPlayer());
+        int opponent = SearchBoard.opponent(me);
+
+        int win = board.findWinningCell(me);
+        if (win >= 0) {
+            return win;
+        }
+        int block = board.findWinningCell(opponent);
+        if (block >= 0) {
+            return block;
+        }
+
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        Search search = new Search(board, me, deadline);
+        int move = search.findForcedWin(maxDepth);
+        if (move >= 0) {
+            return move;
+        }
+        // Eigene Gewinnfolge nicht gefunden: den ersten Zug einer gegnerischen Gewinnfolge besetzen
+        Search defense = new Search(board, opponent, System.nanoTime() + Math.max(0, deadline - System.nanoTime()) / 2);
+        int threat = defense.findForcedWin(maxDepth / 2);
+        if (threat >= 0) {
+            return threat;
+        }
+        return bestByEvaluation(board, me);
+    }
+
+    /**
+     * Scores every candidate by the windows through it: open windows of the player count as attack,
+     * open windows of the opponent as defense, each growing by factor 4 per stone.
+     */
+
+    private static int bestByEvaluation(SearchBoard board, int me) {
+        int best = -1;
+        long bestScore = -1;
+        long[] score = new long[1];
+        int[] candidates = new int[board.candidateCount()];
+        int count = board.candidates(candidates);
+        for (int i = 0; i < count; i++) {
+            int cell = candidates[i];
+            score[0] = 0;
+            board.forEachWindow(cell, me, (first, step, own, empty) -> score[0] += 1L << (2 * Math.min(own, 30)));
+            board.forEachWindow(cell, SearchBoard.opponent(me), (first, step, own, empty) -> score[0] += 1L << (2 * Math.min(own - 1, 30)));
+            if (score[0] > bestScore) {
+                bestScore = score[0];
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String getName() {
+        return "threat-space search";
+    }
+
+    /**
+     * This class holds the state of one search, so the engine itself can be shared between bots.
+     */
+
+    private static final class Search {
+        private final SearchBoard board;
+        private final int attacker;
+        private final int defender;
+        private final long deadline;
+        private final int winLength;
+        private final PlyBuffers buffers = new PlyBuffers();
+        private long nodes;
+        private boolean aborted;
+        private int rootMove = -1;
+
+        Search(SearchBoard board, int attacker, long deadline) {
+            this.board = board;
+            this.attacker = attacker;
+            this.defender = SearchBoard.opponent(attacker);
+            this.deadline = deadline;
+            this.winLength = board.winLength;
+        }
+
+        /**
+         * Deepens the search one threat at a time, so the shortest forced win is found first.
+         *
+         * @return the first move of a forced win, or -1 if none was found in time
+         */
+
+        int findForcedWin(int maxDepth) {
+            for (int depth = 1; depth <= maxDepth && !aborted; depth++) {
+                if (attack(depth, 0)) {
+                    return rootMove;
+                }
+            }
+            return -1;
+        }
+
+        private boolean timeUp() {
+            if (++nodes % DEADLINE_CHECK_INTERVAL == 0
+                    && (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+                aborted = true;
+            }
+            return aborted;
+        }
+
+        /**
+         * Returns true if the attacker (to move) wins with a sequence of at most depth threats.
+         */
+
+        private boolean attack(int depth, int ply) {
+            if (timeUp()) {
+                return false;
+            }
+            int[] gains = buffers.gains(ply, 4 * winLength);
+            int[] candidates = buffers.moves(ply, board.candidateCount());
+            int candidateCount = board.candidates(candidates);
+            for (int i = 0; i < candidateCount; i++) {
+                int cell = candidates[i];
+                int count = board.gains(cell, attacker, gains);
+                if (count == SearchBoard.WIN || count >= 2 && board.findWinningCell(defender) < 0) {
+                    return found(cell, ply);
+                }
+            }
+            if (depth == 0 || board.findWinningCell(defender) >= 0) {
+                return false;
+            }
+
+            // Vierer: der Verteidiger muss genau ein Feld besetzen
+            for (int i = 0; i < candidateCount; i++) {
+                int cell = candidates[i];
+                if (board.gains(cell, attacker, gains) != 1) {
+                    continue;
+                }
+                int reply = gains[0];
+                board.place(cell, attacker);
+                board.place(reply, defender);
+                boolean win = !board.isWin(reply) && attack(depth - 1, ply + 2);
+                board.remove(reply);
+                board.remove(cell);
+                if (win) {
+                    return found(cell, ply);
+                }
+                if (aborted) {
+                    return false;
+                }
+            }
+
+            // Dreier: jede Verteidigung muss widerlegt werden
+            if (depth < 2) {
+                return false;
+            }
+            for (int i = 0; i < candidateCount; i++) {
+                int cell = candidates[i];
+                board.place(cell, attacker);
+                int defenseCount = threeDefenses(cell, ply);
+                boolean win = defenseCount > 0;
+                if (win) {
+                    int[] defenses = buffers.defenses(ply, defenseCount);
+                    for (int d = 0; d < defenseCount; d++) {
+                        int reply = defenses[d];
+                        board.place(reply, defender);
+                        win = !board.isWin(reply) && attack(depth - 1, ply + 2);
+                        board.remove(reply);
+                        if (!win) {
+                            break;
+                        }
+                    }
+                }
+                board.remove(cell);
+                if (win) {
+                    return found(cell, ply);
+                }
+                if (aborted) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private boolean found(int cell, int ply) {
+            if (ply == 0) {
+                rootMove = cell;
+            }
+            return true;
+        }
+
+        /**
+         * Checks if the attacker stone on the cell created a three, i.e. a follow-up that creates two fours at once.
+         * The defenses are the follow-up cells, their gain cells and every cell where the defender creates a four.
+         * Any other reply loses to the double four, so only these have to be searched.
+         * The cells are written to the defense buffer of the ply, which has room for every possible defense:
+         * at most two follow-ups per window with their gain cells, plus the candidates.
+         *
+         * @return the number of defending cells, or 0 if the move is no three
+         */
+
+        private int threeDefenses(int cell, int ply) {
+            int capacity = Math.min(board.cells.length, board.candidateCount() + 8 * winLength * (4 * winLength + 1));
+            int[] defenses = buffers.defenses(ply, capacity);
+            // Die Puffer von ply + 1 sind frei, der Angriff sucht erst ab ply + 2 weiter
+            int[] gains = buffers.gains(ply + 1, 4 * winLength);
+            int count = 0;
+            for (int window = 0; window < board.windowCount(); window++) {
+                int first = board.windowFirst(cell, window);
+                if (first < 0) {
+                    continue;
+                }
+                int step = board.windowStep(window);
+                if (board.windowOwn(first, step, cell, attacker) != winLength - 2) {
+                    continue;
+                }
+                for (int i = 0, current = first; i < winLength; i++, current += step) {
+                    if (board.cells[current] != SearchBoard.EMPTY) {
+                        continue;
+                    }
+                    int followUpGains = board.gains(current, attacker, gains);
+                    if (followUpGains >= 2) {
+                        count = SearchBoard.addDistinct(defenses, count, current);
+                        if (followUpGains != SearchBoard.WIN) {
+                            for (int g = 0; g < followUpGains; g++) {
+                                count = SearchBoard.addDistinct(defenses, count, gains[g]);
+                            }
+                        }
+                    }
+                }
+            }
+            if (count == 0) {
+                return 0;
+            }
+            int[] candidates = buffers.moves(ply + 1, board.candidateCount());
+            int candidateCount = board.candidates(candidates);
+            for (int i = 0; i < candidateCount; i++) {
+                int candidate = candidates[i];
+                if (board.gains(candidate, defender, gains) >= 1) {
+                    count = SearchBoard.addDistinct(defenses, count, candidate);
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.tictactoe.analysis;
+
+import com.example.tictactoe.ai.AlphaBetaEngine;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.BoardSymmetry;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.util.ConfigService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class analyzes finished games: every position of the game is evaluated and each move gets the value before and
+ * after it from the mover's view, so moves that dropped the game-theoretic value are flagged as blunders.
+ * Blunders are only flagged on boards the evaluator solves exactly; a heuristic score that swings at the search horizon
+ * says nothing about a mistake.
+ *
+ * The positions of all games passed to one call are collected first and then evaluated in batches on a shared worker pool,
+ * so many small games do not create many tiny tasks. Results are cached by the board size, the win length, the canonical
+ * position (all 8 symmetric positions share one entry) and the player to move, so positions that occur in many games are evaluated only once,
+ * even if two games ask for them at the same time.
+ *
+ */
+
+public class AnalysisService {
+    private static final int DEFAULT_MAX_CACHE_ENTRIES = 1_000_000;
+    private static final int SOLVER_MAX_CELLS = 9;
+    private static final int SEARCH_DEPTH = 2;
+    private static volatile AnalysisService defaultService;
+
+    private final PositionEvaluator evaluator;
+    private final ExecutorService executor;
+    private volatile int batchSize;
+    private final int maxCacheEntries;
+    private final Map<PositionKey, CompletableFuture<Long>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param evaluator       evaluates the positions, must be thread-safe
+     * @param threads         the number of worker threads
+     * @param batchSize       the number of positions one task of the pool evaluates
+     * @param maxCacheEntries the cache is cleared when it grows beyond this size
+     */
+
+    public AnalysisService(PositionEvaluator evaluator, int threads, int batchSize, int maxCacheEntries) {
+        this.evaluator = evaluator;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxCacheEntries = maxCacheEntries;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_analysis_thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the shared service with one worker per core and the batch size of the configuration,
+     * which follows analysis.batchSize when the configuration is reloaded. Boards up to 3x3 are solved exactly, larger boards are evaluated with a shallow alpha-beta search.
+     */
+
+    public static AnalysisService getDefault() {
+        AnalysisService service = defaultService;
+        if (service == null) {
+            synchronized (AnalysisService.class) {
+                service = defaultService;
+                if (service == null) {
+                    PositionEvaluator solver = new SolverEvaluator();
+                    PositionEvaluator search = new SearchEvaluator(new AlphaBetaEngine(), SEARCH_DEPTH);
+                    PositionEvaluator evaluator = new PositionEvaluator() {
+                        @Override
+                        public long evaluate(GameModel position) {
+                            int cells = position.getSize() * position.getSize();
+                            return cells <= SOLVER_MAX_CELLS ? solver.evaluate(position) : search.evaluate(position);
+                        }
+
+                        @Override
+                        public boolean isExact(GameModel position) {
+                            int cells = position.getSize() * position.getSize();
+                            return cells <= SOLVER_MAX_CELLS ? solver.isExact(position) : search.isExact(position);
+                        }
+                    };
+                    ConfigService configService = ConfigService.getDefault();
+                    AnalysisService created = new AnalysisService(evaluator, Runtime.getRuntime().availableProcessors(),
+                            configService.get().getAnalysisBatchSize(), DEFAULT_MAX_CACHE_ENTRIES);
+                    configService.addListener(config -> created.setBatchSize(config.getAnalysisBatchSize()));
+                    service = created;
+                    defaultService = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Changes the number of positions one task evaluates, used for the next analysis.
+     */
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Analyzes one finished game.
+     *
+     * @param game the game, it must be over; it is not changed
+     * @return the analysis, completed by the worker pool
+     */
+
+    public CompletableFuture<GameAnalysis> analyze(GameModel game) {
+        return analyzeAll(List.of(game)).get(0);
+    }
+
+    /**
+     * Analyzes many finished games together, so their positions share batches and cache entries.
+     *
+     * @param games the games, all must be over; they are not changed
+     * @return one analysis per game, in the same order
+     */
+
+    public List<CompletableFuture<GameAnalysis>> analyzeAll(Collection<GameModel> games) {
+        List<PendingPosition> pending = new ArrayList<>();
+        List<CompletableFuture<GameAnalysis>> results = new ArrayList<>();
+        if (cache.size() > maxCacheEntries) {
+            cache.clear();
+        }
+        for (GameModel game : games) {
+            if (!game.getGameState().isGameOver()) {
+                throw new IllegalArgumentException("game is not over yet");
+            }
+            results.add(collectPositions(game, pending));
+        }
+        int batchSize = this.batchSize;
+        for (int start = 0; start < pending.size(); start += batchSize) {
+            List<PendingPosition> batch = pending.subList(start, Math.min(pending.size(), start + batchSize));
+            executor.execute(() -> evaluateBatch(batch));
+        }
+        return results;
+    }
+
+    /**
+     * Takes the game back to its first position and plays it forward again, looking up or queueing every position.
+     */
+
+    private CompletableFuture<GameAnalysis> collectPositions(GameModel game, List<PendingPosition> pending) {
+        GameModel model = game.copy();
+        int[] moves = model.getMoveHistory();
+        while (model.unmakeMove() >= 0) {
+            // zurück bis zur Ausgangsstellung
+        }
+        BoardSymmetry symmetry = BoardSymmetry.forSize(model.getSize());
+        boolean exact = evaluator.isExact(model);
+        List<CompletableFuture<Long>> values = new ArrayList<>();
+        Player[] movers = new Player[moves.length];
+        for (int ply = 0; ply <= moves.length; ply++) {
+            if (ply > 0) {
+                model.playMove(moves[ply - 1]);
+            }
+            if (model.getGameState().isGameOver()) {
+                // Der letzte Zug hat gewonnen: für den Spieler am Zug ist die Partie verloren
+                long value = model.getGameState() == GameState.DRAW ? 0 : -PositionEvaluator.WIN;
+                values.add(CompletableFuture.completedFuture(value));
+                break;
+            }
+            if (ply < moves.length) {
+                movers[ply] = model.getCurrentPlayer();
+            }
+            PositionKey key = new PositionKey(model.getSize(), model.getWinLength(), symmetry.canonicalize(model.getBoard()),
+                    model.getCurrentPlayer());
+            CompletableFuture<Long> value = cache.get(key);
+            if (value == null) {
+                CompletableFuture<Long> created = new CompletableFuture<>();
+                value = cache.putIfAbsent(key, created);
+                if (value == null) {
+                    value = created;
+                    pending.add(new PendingPosition(model.copy(), created));
+                } else {
+                    Metrics.ANALYSIS_CACHE_HITS.increment();
+                }
+            } else {
+                Metrics.ANALYSIS_CACHE_HITS.increment();
+            }
+            values.add(value);
+        }
+        return CompletableFuture.allOf(values.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> buildAnalysis(moves, movers, values, exact));
+    }
+
+    private static GameAnalysis buildAnalysis(int[] moves, Player[] movers, List<CompletableFuture<Long>> values, boolean exact) {
+        List<MoveAnalysis> analysis = new ArrayList<>(moves.length);
+        for (int ply = 0; ply < moves.length; ply++) {
+            long before = values.get(ply).join();
+            long after = -values.get(ply + 1).join();
+            boolean blunder = exact && PositionEvaluator.outcome(after) < PositionEvaluator.outcome(before);
+            analysis.add(new MoveAnalysis(ply, moves[ply], movers[ply], before, after, blunder));
+        }
+        return new GameAnalysis(analysis);
+    }
+
+    private void evaluateBatch(List<PendingPosition> batch) {
+        for (PendingPosition position : batch) {
+            try {
+                position.value.complete(evaluator.evaluate(position.model));
+                Metrics.ANALYSIS_POSITIONS.increment();
+            } catch (RuntimeException e) {
+                position.value.completeExceptionally(e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class PendingPosition {
+        private final GameModel model;
+        private final CompletableFuture<Long> value;
+
+        PendingPosition(GameModel model, CompletableFuture<Long> value) {
+            this.model = model;
+            this.value = value;
+        }
+    }
+
+    /**
+     * This class is the cache key: board size, win length, the canonical board and the player to move.
+     * The same stones have a different value when fewer of them in a row win.
+     */
+
+    private static final class PositionKey {
+        private final int size;
+        private final int winLength;
+        private final BoardSymmetry.Canonical board;
+        private final Player toMove;
+
+        PositionKey(int size, int winLength, BoardSymmetry.Canonical board, Player toMove) {
+            this.size = size;
+            this.winLength = winLength;
+            this.board = board;
+            this.toMove = toMove;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PositionKey)) {
+                return false;
+            }
+            PositionKey key = (PositionKey) other;
+            return size == key.size && winLength == key.winLength && toMove == key.toMove && board.equals(key.board);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * size + winLength) + board.hashCode()) + toMove.hashCode();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.tictactoe.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is the analysis of a finished game, one entry per move.
+ *
+ */
+
+public class GameAnalysis {
+    private final List<MoveAnalysis> moves;
+
+    GameAnalysis(List<MoveAnalysis> moves) {
+        this.moves = Collections.unmodifiableList(moves);
+    }
+
+    public List<MoveAnalysis> getMoves() {
+        return moves;
+    }
+
+    public List<MoveAnalysis> getBlunders() {
+        List<MoveAnalysis> blunders = new ArrayList<>();
+        for (MoveAnalysis move : moves) {
+            if (move.isBlunder()) {
+                blunders.add(move);
+            }
+        }
+        return blunders;
+    }
+
+    @Override
+    public String toString() {
+        return "GameAnalysis{moves=" + moves.size() + ", blunders=" + getBlunders() + "}";
+    }
+}
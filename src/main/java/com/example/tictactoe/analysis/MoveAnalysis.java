@@ -0,0 +1,80 @@
+package com.example.tictactoe.analysis;
+
+import com.example.tictactoe.model.Player;
+
+/**
+ * This class is the analysis of one move: the value of the position for the mover before and after the move.
+ * A move is a blunder if the game-theoretic outcome for the mover got worse, e.g. from a won to a drawn position.
+ *
+ */
+
+public class MoveAnalysis {
+    private final int ply;
+    private final int cell;
+    private final Player player;
+    private final long scoreBefore;
+    private final long scoreAfter;
+    private final boolean blunder;
+
+    MoveAnalysis(int ply, int cell, Player player, long scoreBefore, long scoreAfter, boolean blunder) {
+        this.ply = ply;
+        this.cell = cell;
+        this.player = player;
+        this.scoreBefore = scoreBefore;
+        this.scoreAfter = scoreAfter;
+        this.blunder = blunder;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Returns the move as packed cell index (row * size + col).
+     */
+
+    public int getCell() {
+        return cell;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Returns the value of the best move in the position, from the view of the mover.
+     */
+
+    public long getScoreBefore() {
+        return scoreBefore;
+    }
+
+    /**
+     * Returns the value of the position after the move, from the view of the mover.
+     */
+
+    public long getScoreAfter() {
+        return scoreAfter;
+    }
+
+    public boolean isBlunder() {
+        return blunder;
+    }
+
+    @Override
+    public String toString() {
+        return "MoveAnalysis{ply=" + ply + ", cell=" + cell + ", player=" + player + ", before=" + describe(scoreBefore)
+                + ", after=" + describe(scoreAfter) + (blunder ? ", blunder" : "") + "}";
+    }
+
+    private static String describe(long score) {
+        switch (PositionEvaluator.outcome(score)) {
+            case 1:
+                return "win in " + (PositionEvaluator.WIN - score);
+            case -1:
+                return "loss in " + (PositionEvaluator.WIN + score);
+            default:
+                return String.valueOf(score);
+        }
+    }
+}
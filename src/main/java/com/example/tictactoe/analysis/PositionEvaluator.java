@@ -0,0 +1,33 @@
+package com.example.tictactoe.analysis;
+
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This interface evaluates a running position from the view of the player to move.
+ * Proven results are reported as WIN minus the number of plies until the win (or the negative for a loss),
+ * everything between -PROVEN and PROVEN is a heuristic score or a draw (0 for exact evaluators).
+ * Implementations must be thread-safe; the model is a private copy and may be changed during the evaluation.
+ *
+ */
+
+public interface PositionEvaluator {
+    long WIN = Long.MAX_VALUE / 4;
+    long PROVEN = WIN - 10_000;
+
+    long evaluate(GameModel position);
+
+    /**
+     * Returns true if the evaluator knows the game-theoretic value of every position on the board of the given position,
+     * so any drop of the value is a mistake and not an artifact of the evaluation. Only then are blunders reported.
+     */
+
+    boolean isExact(GameModel position);
+
+    /**
+     * Returns the game-theoretic outcome of a score: 1 for a proven win, -1 for a proven loss, otherwise 0.
+     */
+
+    static int outcome(long score) {
+        return score >= PROVEN ? 1 : (score <= -PROVEN ? -1 : 0);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.tictactoe.analysis;
+
+import com.example.tictactoe.ai.DepthLimitedSearch;
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This evaluator scores positions with the root score of a depth-limited search, e.g. the alpha-beta engine.
+ * It is used for large boards that cannot be solved; only the proven wins and losses it finds are exact.
+ *
+ */
+
+public class SearchEvaluator implements PositionEvaluator {
+    private final DepthLimitedSearch search;
+    private final int depth;
+
+    public SearchEvaluator(DepthLimitedSearch search, int depth) {
+        this.search = search;
+        this.depth = depth;
+    }
+
+    @Override
+    public long evaluate(GameModel position) {
+        return search.start(position).search(depth, -1, Long.MAX_VALUE).getScore();
+    }
+
+    @Override
+    public boolean isExact(GameModel position) {
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.tictactoe.analysis;
+
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This evaluator solves positions completely with negamax over the model's make/unmake stack.
+ * Solved positions are memoized by their Zobrist hash, per board size and win length, so each position of the game tree
+ * is solved once for all games. The hash covers the stones and the side to move, but not the board size or win length,
+ * so one board's memo must not answer for another.
+ * It is meant for small boards (3x3), where the whole tree has a few thousand positions.
+ *
+ */
+
+public class SolverEvaluator implements PositionEvaluator {
+    private final Map<Long, Map<Long, Long>> solvedByBoard = new ConcurrentHashMap<>();
+
+    @Override
+    public long evaluate(GameModel position) {
+        long board = (long) position.getSize() << 32 | position.getWinLength();
+        return solve(position, solvedByBoard.computeIfAbsent(board, ignored -> new ConcurrentHashMap<>()));
+    }
+
+    private long solve(GameModel position, Map<Long, Long> solved) {
+        Long known = solved.get(position.getPositionHash());
+        if (known != null) {
+            return known;
+        }
+        long best = -WIN - 1;
+        for (int cell = position.nextEmptyCell(0); cell >= 0; cell = position.nextEmptyCell(cell + 1)) {
+            if (!position.playMove(cell)) {
+                continue;
+            }
+            long value;
+            if (position.getGameState().isGameOver()) {
+                value = position.getGameState() == GameState.DRAW ? 0 : WIN - 1;
+            } else {
+                long reply = solve(position, solved);
+                // Ein Gewinn in n Zügen ist aus Sicht des Vorgängers n + 1 Halbzüge entfernt
+                value = reply >= PROVEN ? -(reply - 1) : (reply <= -PROVEN ? -(reply + 1) : -reply);
+            }
+            position.unmakeMove();
+            best = Math.max(best, value);
+        }
+        solved.put(position.getPositionHash(), best);
+        return best;
+    }
+
+    @Override
+    public boolean isExact(GameModel position) {
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.tictactoe.analysis;
+
+import com.example.tictactoe.ai.Tablebase;
+import com.example.tictactoe.model.GameModel;
+
+/**
+ * This evaluator reads the exact value of a position from a tablebase and delegates boards the tablebase does not cover.
+ *
+ */
+
+public class TablebaseEvaluator implements PositionEvaluator {
+    private final Tablebase tablebase;
+    private final PositionEvaluator fallback;
+
+    public TablebaseEvaluator(Tablebase tablebase, PositionEvaluator fallback) {
+        this.tablebase = tablebase;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public long evaluate(GameModel position) {
+        if (!tablebase.supports(position)) {
+            return fallback.evaluate(position);
+        }
+        int value = tablebase.probe(position);
+        switch (Tablebase.result(value)) {
+            case Tablebase.RESULT_WIN:
+                return WIN - Tablebase.distance(value);
+            case Tablebase.RESULT_LOSS:
+                return -(WIN - Tablebase.distance(value));
+            case Tablebase.RESULT_DRAW:
+                return 0;
+            default:
+                return fallback.evaluate(position);
+        }
+    }
+
+    @Override
+    public boolean isExact(GameModel position) {
+        return tablebase.supports(position) || fallback.isExact(position);
+    }
+}
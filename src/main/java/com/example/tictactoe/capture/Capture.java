@@ -0,0 +1,172 @@
+package com.example.tictactoe.capture;
+
+import com.example.tictactoe.model.Player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is a capture file read back into memory: the board of the server and its sessions in the order they started,
+ * each with the frames its players sent. See TrafficCapture for the file format.
+ *
+ */
+
+public final class Capture {
+    private final int size;
+    private final int winLength;
+    private final List<Session> sessions;
+
+    private Capture(int size, int winLength, List<Session> sessions) {
+        this.size = size;
+        this.winLength = winLength;
+        this.sessions = Collections.unmodifiableList(sessions);
+    }
+
+    /**
+     * Reads a capture file. Frames of sessions whose start is not in the file, e.g. because the capture began
+     * while they were running, are skipped.
+     *
+     * @throws IOException if the file cannot be read or is not a capture file
+     */
+
+    public static Capture read(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !header.startsWith(TrafficCapture.HEADER)) {
+                throw new IOException("not a capture file: " + file);
+            }
+            int size = 0;
+            int winLength = 0;
+            for (String field : header.substring(TrafficCapture.HEADER.length()).trim().split(" ")) {
+                if (field.startsWith("size=")) {
+                    size = Integer.parseInt(field.substring(5));
+                } else if (field.startsWith("win=")) {
+                    winLength = Integer.parseInt(field.substring(4));
+                }
+            }
+            if (size <= 0 || winLength <= 0) {
+                throw new IOException("capture file without board size: " + file);
+            }
+            Map<Long, Session> sessions = new LinkedHashMap<>();
+            int lineNumber = 1;
+            int skipped = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split(" ");
+                if (fields.length != 5) {
+                    throw new IOException("invalid frame in line " + lineNumber + ": " + line);
+                }
+                try {
+                    long micros = Long.parseLong(fields[0]);
+                    long sessionId = Long.parseLong(fields[1]);
+                    if (TrafficCapture.START.equals(fields[3])) {
+                        sessions.put(sessionId, new Session(sessionId, micros));
+                        continue;
+                    }
+                    Session session = sessions.get(sessionId);
+                    if (session == null) {
+                        skipped++;
+                        continue;
+                    }
+                    session.frames.add(new Frame(micros, Player.valueOf(fields[2]), fields[3], fields[4]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("invalid frame in line " + lineNumber + ": " + line);
+                }
+            }
+            if (skipped > 0) {
+                System.out.println("capture: skipped " + skipped + " frames of sessions that started before the capture");
+            }
+            return new Capture(size, winLength, new ArrayList<>(sessions.values()));
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+    public int getFrameCount() {
+        int count = 0;
+        for (Session session : sessions) {
+            count += session.frames.size();
+        }
+        return count;
+    }
+
+    /**
+     * This class is one captured session: when it started and the frames of both players in the order the server handled them.
+     */
+
+    public static final class Session {
+        private final long id;
+        private final long startMicros;
+        private final List<Frame> frames = new ArrayList<>();
+
+        private Session(long id, long startMicros) {
+            this.id = id;
+            this.startMicros = startMicros;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getStartMicros() {
+            return startMicros;
+        }
+
+        public List<Frame> getFrames() {
+            return Collections.unmodifiableList(frames);
+        }
+    }
+
+    /**
+     * This class is one captured frame and the outcome the server reported for it.
+     */
+
+    public static final class Frame {
+        private final long micros;
+        private final Player player;
+        private final String command;
+        private final String outcome;
+
+        private Frame(long micros, Player player, String command, String outcome) {
+            this.micros = micros;
+            this.player = player;
+            this.command = command;
+            this.outcome = outcome;
+        }
+
+        public long getMicros() {
+            return micros;
+        }
+
+        public Player getPlayer() {
+            return player;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getOutcome() {
+            return outcome;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.example.tictactoe.capture;
+
+import com.example.tictactoe.metrics.LatencyHistogram;
+import com.example.tictactoe.metrics.MetricsRegistry;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.network.MultiplexedConnection;
+import com.example.tictactoe.network.NetworkCommand;
+import com.example.tictactoe.network.NetworkConnection;
+import com.example.tictactoe.network.NetworkListener;
+import com.example.tictactoe.server.SerialExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class plays a capture back against a running server, to compare a changed server with real traffic before it is rolled out.
+ * Every captured session is replayed by two players on channels of one multiplexed connection, each session on its own
+ * virtual thread. A player sends its next frame only after the server answered the previous one, so the order within
+ * a session is the captured one; with Pacing.ORIGINAL the frames are in addition sent at their captured times,
+ * with Pacing.MAX as fast as the server answers, at most the given number of sessions at the same time.
+ *
+ * For every frame the answer of the server is compared with the captured outcome (game state and position hash).
+ * The first difference ends the replay of that session and is reported as divergence, together with the throughput
+ * and the latency percentiles from sending a frame to its answer.
+ *
+ */
+
+public class ReplayRunner {
+    public enum Pacing {
+        ORIGINAL, MAX
+    }
+
+    private static final long REPLY_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_REPORTED_DIVERGENCES = 10;
+
+    private final Capture capture;
+    private final MultiplexedConnection multiplexer;
+    private final Executor callbackExecutor;
+    private final Pacing pacing;
+    private final int concurrency;
+    private final Object pairing = new Object();
+    private final LatencyHistogram latency = new MetricsRegistry("com.example.tictactoe.replay").histogram("replay.latency");
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicInteger divergentSessions = new AtomicInteger();
+    private final List<String> divergences = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param capture          the capture to replay, the server must use the same board size
+     * @param multiplexer      the started connection to the multiplexed port of the server
+     * @param callbackExecutor runs the callbacks of the replaying players, in order per player
+     * @param pacing           whether to keep the captured timing or to send as fast as possible
+     * @param concurrency      the maximum number of sessions replayed at the same time with Pacing.MAX
+     */
+
+    public ReplayRunner(Capture capture, MultiplexedConnection multiplexer, Executor callbackExecutor, Pacing pacing, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.capture = capture;
+        this.multiplexer = multiplexer;
+        this.callbackExecutor = callbackExecutor;
+        this.pacing = pacing;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Replays all sessions and returns when the last one is done.
+     */
+
+    public Report run() throws InterruptedException {
+        List<Capture.Session> sessions = capture.getSessions();
+        long firstMicros = sessions.isEmpty() ? 0 : sessions.get(0).getStartMicros();
+        Semaphore slots = new Semaphore(pacing == Pacing.MAX ? concurrency : Integer.MAX_VALUE);
+        long startNanos = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Capture.Session session : sessions) {
+                if (pacing == Pacing.ORIGINAL) {
+                    sleepUntil(startNanos, session.getStartMicros() - firstMicros);
+                }
+                slots.acquire();
+                threads.execute(() -> {
+                    try {
+                        replay(session, startNanos, firstMicros);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        } // close() wartet, bis alle Sitzungen fertig sind
+        return new Report(sessions.size(), divergentSessions.get(), framesSent.get(), System.nanoTime() - startNanos, latency,
+                new ArrayList<>(divergences));
+    }
+
+    private void replay(Capture.Session session, long startNanos, long firstMicros) throws InterruptedException {
+        ReplaySeat seatX = new ReplaySeat();
+        ReplaySeat seatO = new ReplaySeat();
+        synchronized (pairing) { // der Server paart die Kanäle in der Reihenfolge, in der sie geöffnet werden
+            seatX.connect();
+            seatO.connect();
+        }
+        try {
+            if (!seatX.awaitSnapshot() || !seatO.awaitSnapshot()) {
+                diverge(session, -1, "game start", "no snapshot from the server");
+                return;
+            }
+            List<Capture.Frame> frames = session.getFrames();
+            for (int i = 0; i < frames.size(); i++) {
+                Capture.Frame frame = frames.get(i);
+                if (pacing == Pacing.ORIGINAL) {
+                    sleepUntil(startNanos, frame.getMicros() - firstMicros);
+                }
+                ReplaySeat sender = frame.getPlayer() == Player.X ? seatX : seatO;
+                ReplaySeat other = sender == seatX ? seatO : seatX;
+                String actual = send(sender, other, frame.getCommand());
+                framesSent.incrementAndGet();
+                if (!frame.getOutcome().equals(actual)) {
+                    diverge(session, i, frame.getPlayer() + " " + frame.getCommand() + " -> " + frame.getOutcome(), actual);
+                    return;
+                }
+                if (frame.getCommand().equals(NetworkCommand.QUIT.toString())) {
+                    return;
+                }
+            }
+            if (!frames.isEmpty() && (seatX.assigned != Player.X || seatO.assigned != Player.O)) {
+                diverge(session, -1, "seats X and O", "seats " + seatX.assigned + " and " + seatO.assigned);
+            }
+        } finally {
+            seatX.connection.closeConnection(true);
+            seatO.connection.closeConnection(true);
+        }
+    }
+
+    /**
+     * Sends one frame and waits for the answers it causes, on both seats if the server sends them to both.
+     *
+     * @return the outcome in the format of the capture, or a description of what went wrong
+     */
+
+    private String send(ReplaySeat sender, ReplaySeat other, String command) throws InterruptedException {
+        String[] parts = command.split(":");
+        NetworkCommand type = NetworkCommand.fromString(parts[0]);
+        if (type == null) {
+            return "unsupported frame";
+        }
+        long start = System.nanoTime();
+        switch (type) {
+            case MOVE: {
+                sender.connection.sendMove(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                Reply reply = sender.next();
+                latency.recordSince(start);
+                if (reply.kind == Reply.Kind.SNAPSHOT) {
+                    return TrafficCapture.REJECTED;
+                }
+                if (reply.kind == Reply.Kind.DELTA && other.next().kind != Reply.Kind.DELTA) {
+                    return "opponent did not get the move";
+                }
+                return reply.outcome();
+            }
+            case RESET: {
+                sender.connection.sendReset();
+                Reply reply = sender.next();
+                latency.recordSince(start);
+                if (reply.kind == Reply.Kind.SNAPSHOT && other.next().kind != Reply.Kind.SNAPSHOT) {
+                    return "opponent did not get the reset";
+                }
+                return reply.outcome();
+            }
+            case SYNC: {
+                sender.connection.requestSnapshot();
+                Reply reply = sender.next();
+                latency.recordSince(start);
+                return reply.outcome();
+            }
+            case QUIT: {
+                sender.connection.sendQuitAndClose();
+                Reply reply = other.next();
+                latency.recordSince(start);
+                return reply.kind == Reply.Kind.CLOSED ? TrafficCapture.NONE : reply.outcome();
+            }
+            default:
+                return "unsupported frame";
+        }
+    }
+
+    private void diverge(Capture.Session session, int frame, String expected, String actual) {
+        divergentSessions.incrementAndGet();
+        if (divergences.size() < MAX_REPORTED_DIVERGENCES) {
+            divergences.add("session " + session.getId() + (frame >= 0 ? " frame " + frame : "") + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    private static void sleepUntil(long startNanos, long offsetMicros) throws InterruptedException {
+        long remaining = startNanos + TimeUnit.MICROSECONDS.toNanos(offsetMicros) - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    /**
+     * This class is one answer of the server as seen by a replaying player.
+     */
+
+    private static final class Reply {
+        enum Kind {
+            SNAPSHOT, DELTA, CLOSED, TIMEOUT
+        }
+
+        private static final Reply CLOSED = new Reply(Kind.CLOSED, null, 0);
+        private static final Reply TIMEOUT = new Reply(Kind.TIMEOUT, null, 0);
+
+        private final Kind kind;
+        private final GameState state;
+        private final long positionHash;
+
+        Reply(Kind kind, GameState state, long positionHash) {
+            this.kind = kind;
+            this.state = state;
+            this.positionHash = positionHash;
+        }
+
+        String outcome() {
+            switch (kind) {
+                case CLOSED:
+                    return "connection closed by the server";
+                case TIMEOUT:
+                    return "no answer within " + REPLY_TIMEOUT_MILLIS + " ms";
+                default:
+                    return TrafficCapture.outcome(state, positionHash);
+            }
+        }
+    }
+
+    /**
+     * This class is one replaying player. It only collects the answers of the server, the session thread consumes them.
+     */
+
+    private final class ReplaySeat implements NetworkListener {
+        private final BlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+        private final GameModel position = new GameModel(capture.getSize(), capture.getWinLength());
+        private NetworkConnection connection;
+        private volatile Player assigned;
+
+        void connect() {
+            connection = new NetworkConnection(this, multiplexer, new SerialExecutor(callbackExecutor));
+            connection.startClient();
+        }
+
+        Reply next() throws InterruptedException {
+            Reply reply = replies.poll(REPLY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            return reply != null ? reply : Reply.TIMEOUT;
+        }
+
+        boolean awaitSnapshot() throws InterruptedException {
+            return next().kind == Reply.Kind.SNAPSHOT;
+        }
+
+        @Override
+        public void onStateReceived(Player[][] board, Player currentPlayer, GameState gameState) {
+            long hash;
+            try {
+                position.restoreState(board, currentPlayer, gameState); // ein Snapshot hat keinen Hash, er wird hier berechnet
+                hash = position.getPositionHash();
+            } catch (IllegalArgumentException e) {
+                hash = 0;
+            }
+            replies.add(new Reply(Reply.Kind.SNAPSHOT, gameState, hash));
+        }
+
+        @Override
+        public void onDeltaReceived(int row, int col, Player currentPlayer, GameState gameState, long positionHash) {
+            replies.add(new Reply(Reply.Kind.DELTA, gameState, positionHash));
+        }
+
+        @Override
+        public void onConnectionChanged(boolean connected, Player assignedPlayer) {
+            if (connected) {
+                assigned = assignedPlayer;
+            } else {
+                replies.add(Reply.CLOSED);
+            }
+        }
+
+        @Override
+        public void onMoveReceived(int row, int col) {
+        }
+
+        @Override
+        public void onResetReceived() {
+        }
+
+        @Override
+        public void onError(String message) {
+            System.err.println("replay: server error: " + message);
+        }
+
+        @Override
+        public void onOpponentQuit() {
+        }
+    }
+
+    /**
+     * This class is the result of a replay.
+     */
+
+    public static final class Report {
+        private final int sessions;
+        private final int divergentSessions;
+        private final long frames;
+        private final long elapsedNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+        private final List<String> divergences;
+
+        Report(int sessions, int divergentSessions, long frames, long elapsedNanos, LatencyHistogram latency, List<String> divergences) {
+            this.sessions = sessions;
+            this.divergentSessions = divergentSessions;
+            this.frames = frames;
+            this.elapsedNanos = elapsedNanos;
+            this.p50Nanos = latency.valueAtPercentile(50);
+            this.p90Nanos = latency.valueAtPercentile(90);
+            this.p99Nanos = latency.valueAtPercentile(99);
+            this.maxNanos = latency.getMaxNanos();
+            this.divergences = Collections.unmodifiableList(divergences);
+        }
+
+        public int getSessions() {
+            return sessions;
+        }
+
+        public int getDivergentSessions() {
+            return divergentSessions;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public double getFramesPerSecond() {
+            return elapsedNanos == 0 ? 0 : frames * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the first divergences, at most ten.
+         */
+
+        public List<String> getDivergences() {
+            return divergences;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                    "replayed %d sessions, %d frames in %d ms (%.0f frames/s)%n"
+                            + "latency p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%n"
+                            + "divergent sessions: %d",
+                    sessions, frames, elapsedNanos / 1_000_000, getFramesPerSecond(),
+                    p50Nanos / 1e6, p90Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6, divergentSessions));
+            for (String divergence : divergences) {
+                text.append(System.lineSeparator()).append("  ").append(divergence);
+            }
+            return text.toString();
+        }
+    }
+}
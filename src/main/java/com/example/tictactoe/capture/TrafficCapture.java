@@ -0,0 +1,148 @@
+package com.example.tictactoe.capture;
+
+import com.example.tictactoe.metrics.Counter;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class records the traffic of a game server into a capture file, which the ReplayRunner can play back later.
+ * Every line is one frame a player sent to a session, with the time since the capture started, the session id,
+ * the seat and what the server made of it:
+ *
+ * <pre>
+ * # tictactoe capture 1 size=3 win=3
+ * 1520 7 - START -
+ * 2210 7 X MOVE:1:1 PLAYING:9f0c2a...
+ * 2650 7 O MOVE:1:1 REJECTED
+ * 3100 7 O QUIT -
+ * </pre>
+ *
+ * The outcome of a move, reset or sync is the game state and the position hash afterwards, so a replay can tell exactly
+ * where a changed server starts to behave differently. Recording only puts the line into a bounded queue, a writer thread
+ * writes it; if the disk cannot keep up, frames are dropped and counted instead of slowing down the sessions.
+ *
+ */
+
+public class TrafficCapture {
+    static final String HEADER = "# tictactoe capture 1";
+    static final String START = "START";
+    public static final String REJECTED = "REJECTED";
+    public static final String NONE = "-";
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final Counter FRAMES_CAPTURED = Metrics.registry().counter("capture.frames");
+    private static final Counter FRAMES_DROPPED = Metrics.registry().counter("capture.frames.dropped");
+
+    private final BlockingQueue<String> lines = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BufferedWriter writer;
+    private final Thread writerThread;
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running = true;
+
+    private TrafficCapture(BufferedWriter writer) {
+        this.writer = writer;
+        this.writerThread = new Thread(this::writeLoop, "tictactoe_capture_thread");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Creates the capture file, an existing file is overwritten.
+     *
+     * @param file      the capture file
+     * @param size      the board size of the server, a replay needs the same
+     * @param winLength the win length of the server
+     * @throws IOException if the file cannot be created
+     */
+
+    public static TrafficCapture open(Path file, int size, int winLength) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.write(HEADER + " size=" + size + " win=" + winLength);
+        writer.newLine();
+        System.out.println("capture: recording traffic to " + file);
+        return new TrafficCapture(writer);
+    }
+
+    /**
+     * Records that a session started, the following frames of the session are replayed relative to it.
+     */
+
+    public void recordStart(long sessionId) {
+        record(sessionId, null, START, NONE);
+    }
+
+    /**
+     * Records one frame of a player.
+     *
+     * @param sessionId the session the frame was sent to
+     * @param player    the seat that sent the frame
+     * @param frame     the frame as sent, e.g. "MOVE:1:2"
+     * @param outcome   what the server made of it: outcome(), REJECTED or NONE
+     */
+
+    public void record(long sessionId, Player player, String frame, String outcome) {
+        if (!running) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        String line = micros + " " + sessionId + " " + (player == null ? NONE : player.name()) + " " + frame + " " + outcome;
+        if (lines.offer(line)) {
+            FRAMES_CAPTURED.increment();
+        } else {
+            FRAMES_DROPPED.increment();
+        }
+    }
+
+    /**
+     * Returns the outcome of a frame that changed or reported the position.
+     */
+
+    public static String outcome(GameState state, long positionHash) {
+        return state.name() + ":" + Long.toHexString(positionHash);
+    }
+
+    private void writeLoop() {
+        try {
+            while (running || !lines.isEmpty()) {
+                String line = lines.poll(100, TimeUnit.MILLISECONDS);
+                if (line == null) {
+                    continue;
+                }
+                writer.write(line);
+                writer.newLine();
+                if (lines.isEmpty()) {
+                    writer.flush(); // bei einem Abbruch des Servers fehlen so höchstens die letzten Frames
+                }
+            }
+        } catch (IOException e) {
+            running = false;
+            System.err.println("capture: could not write, recording stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("capture: error closing file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops recording, writes the remaining frames and closes the file.
+     */
+
+    public void close() throws InterruptedException {
+        running = false;
+        writerThread.join();
+    }
+}
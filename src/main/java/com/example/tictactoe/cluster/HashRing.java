@@ -0,0 +1,118 @@
+package com.example.tictactoe.cluster;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * This class is an immutable consistent hash ring that assigns game ids to shards.
+ * Every shard is placed on the ring at many points (virtual nodes), a game belongs to the first shard point
+ * at or after the hash of its id. Adding or removing a shard therefore only moves the games between that shard
+ * and its neighbours, about 1/n of all games, and the games are spread evenly even with few shards.
+ * Changes return a new ring, so a router can swap the ring atomically while other threads look up games.
+ *
+ */
+
+public final class HashRing {
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> points;
+    private final Set<String> nodes;
+
+    /**
+     * Creates an empty ring.
+     *
+     * @param virtualNodes the number of points per shard
+     */
+
+    public HashRing(int virtualNodes) {
+        this(virtualNodes, new TreeMap<>(), new TreeSet<>());
+    }
+
+    private HashRing(int virtualNodes, NavigableMap<Long, String> points, Set<String> nodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+        this.points = points;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Returns a ring that also contains the given shard.
+     *
+     * @param node the shard address, e.g. "127.0.0.1:12001"
+     */
+
+    public HashRing withNode(String node) {
+        if (nodes.contains(node)) {
+            return this;
+        }
+        NavigableMap<Long, String> newPoints = new TreeMap<>(points);
+        for (int replica = 0; replica < virtualNodes; replica++) {
+            newPoints.putIfAbsent(pointHash(node, replica), node); // Kollisionen sind bei 64 Bit praktisch ausgeschlossen
+        }
+        Set<String> newNodes = new TreeSet<>(nodes);
+        newNodes.add(node);
+        return new HashRing(virtualNodes, newPoints, newNodes);
+    }
+
+    /**
+     * Returns a ring without the given shard.
+     */
+
+    public HashRing withoutNode(String node) {
+        if (!nodes.contains(node)) {
+            return this;
+        }
+        NavigableMap<Long, String> newPoints = new TreeMap<>(points);
+        newPoints.values().removeIf(node::equals);
+        Set<String> newNodes = new TreeSet<>(nodes);
+        newNodes.remove(node);
+        return new HashRing(virtualNodes, newPoints, newNodes);
+    }
+
+    /**
+     * Returns the shard that owns the game.
+     *
+     * @param gameId the game id
+     * @return the shard address, or null if the ring is empty
+     */
+
+    public String nodeFor(long gameId) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(mix(gameId));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public Set<String> getNodes() {
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    private static long pointHash(String node, int replica) {
+        long hash = replica;
+        for (int i = 0; i < node.length(); i++) {
+            hash = mix(hash + node.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads neighbouring ids over the whole ring (finalizer of SplitMix64, like the Zobrist keys of the GameModel).
+     */
+
+    static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
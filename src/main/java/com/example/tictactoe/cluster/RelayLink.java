@@ -0,0 +1,99 @@
+package com.example.tictactoe.cluster;
+
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.network.BoundedLineReader;
+import com.example.tictactoe.network.InboundLimiter;
+import com.example.tictactoe.network.NetworkCommand;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.function.Consumer;
+
+/**
+ * This class is one line based connection of the router, either to a player or to a shard.
+ * Unlike NetworkConnection it does not parse the messages, the router only looks at the command and passes the line on unchanged.
+ * A reader thread hands every line to a handler; when the connection ends, for whatever reason, the close handler runs exactly once on that thread.
+ * The lines pass an InboundLimiter first. The handler runs on the reader thread, so throttling stops reading from this peer only.
+ *
+ */
+
+final class RelayLink {
+    private final Socket socket;
+    private final PrintWriter out;
+    private final BoundedLineReader in;
+    private final InboundLimiter limiter;
+    private volatile boolean closed;
+
+    RelayLink(Socket socket, InboundLimiter limiter) throws IOException {
+        this.socket = socket;
+        this.limiter = limiter;
+        this.out = new PrintWriter(socket.getOutputStream(), true);
+        this.in = new BoundedLineReader(new InputStreamReader(socket.getInputStream()), limiter.getMaxLineLength());
+        Metrics.ACTIVE_CONNECTIONS.increment();
+    }
+
+    void start(String name, Consumer<String> lineHandler, Runnable closeHandler) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (!closed) {
+                    String line;
+                    InboundLimiter.Decision decision;
+                    try {
+                        line = in.readLine();
+                        if (line == null) {
+                            break;
+                        }
+                        Metrics.MESSAGES_RECEIVED.increment();
+                        decision = limiter.admit();
+                    } catch (BoundedLineReader.LineTooLongException e) {
+                        System.err.println("router: " + name + ": " + e.getMessage());
+                        line = null;
+                        decision = limiter.overflow();
+                    }
+                    if (decision == InboundLimiter.Decision.DISCONNECT) {
+                        System.err.println("router: " + name + " exceeded the limits, disconnecting");
+                        send(NetworkCommand.ERROR + ":too many or too long messages");
+                        break;
+                    }
+                    if (decision == InboundLimiter.Decision.ACCEPT) {
+                        lineHandler.accept(line);
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("router: " + name + " read error: " + e.getMessage());
+                }
+            } finally {
+                close();
+                Metrics.ACTIVE_CONNECTIONS.decrement();
+                closeHandler.run();
+            }
+        }, "tictactoe_relay_thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized boolean send(String line) {
+        if (closed) {
+            return false;
+        }
+        out.println(line);
+        Metrics.MESSAGES_SENT.increment();
+        return !out.checkError();
+    }
+
+    void close() {
+        closed = true;
+        try {
+            socket.close(); // beendet auch den Lesethread
+        } catch (IOException e) {
+            System.err.println("router: error closing socket: " + e.getMessage());
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+}
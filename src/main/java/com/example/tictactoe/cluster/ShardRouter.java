@@ -0,0 +1,551 @@
+package com.example.tictactoe.cluster;
+
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.network.InboundLimiter;
+import com.example.tictactoe.network.MultiplexedConnection;
+import com.example.tictactoe.network.NetworkCommand;
+import com.example.tictactoe.util.ConfigService;
+import com.example.tictactoe.util.GameConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is the thin front end of a game server cluster. Clients connect with the normal "Join Game" function,
+ * the router pairs them like a GameServer, gives the game an id and assigns it to a shard (a ShardServer process)
+ * with a consistent hash ring. All games on a shard share one multiplexed connection to it: every player gets a channel,
+ * which the router starts with a JOIN and from then on
+ * only copies lines: MOVE, RESET, SYNC and QUIT of the players go to the shard, everything the shard sends goes back unchanged.
+ *
+ * When shards are added or removed, every game whose owner changes is handed over: the router asks the old shard with
+ * HANDOFF on both channels, holds back the players' messages, and reconnects both players to the new shard with the
+ * final position in the JOIN. The held back messages are sent once the new shard has seated both players,
+ * so the players do not notice the move. If a shard fails, its running games end like a lost connection.
+ * Every client connection has its own InboundLimiter with the network.* limits; the shards are trusted and only the line length is limited.
+ * Connections to the shards are opened on a thread pool of their own and games are routed once the connection is there,
+ * without holding a lock, so a slow or dead shard delays neither the accept thread nor the games on the other shards.
+ *
+ */
+
+public class ShardRouter {
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final Set<NetworkCommand> CLIENT_COMMANDS = Set.of(NetworkCommand.MOVE, NetworkCommand.RESET, NetworkCommand.SYNC, NetworkCommand.QUIT);
+
+    private final int port;
+    private final ConfigService configService = ConfigService.getDefault();
+    private final Map<Long, RoutedGame> games = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<MultiplexedConnection>> shardConnections = new ConcurrentHashMap<>();
+    private final ExecutorService connector = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "tictactoe_router_connect_thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile HashRing ring;
+    private volatile boolean running = false;
+    private ServerSocket serverSocket;
+    private Route waitingRoute;
+    private long nextGameId = 1;
+
+    public ShardRouter(int port, Collection<String> shards) {
+        this(port, shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param port         the port the players connect to
+     * @param shards       the addresses of the shards, "host:port"
+     * @param virtualNodes the number of ring points per shard
+     */
+
+    public ShardRouter(int port, Collection<String> shards, int virtualNodes) {
+        HashRing initial = new HashRing(virtualNodes);
+        for (String shard : shards) {
+            address(shard);
+            initial = initial.withNode(shard);
+        }
+        if (initial.isEmpty()) {
+            throw new IllegalArgumentException("a router needs at least one shard");
+        }
+        this.port = port;
+        this.ring = initial;
+    }
+
+    /**
+     * Binds the server socket and starts accepting clients on a background thread.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket(port);
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "tictactoe_router_accept_thread");
+        acceptThread.start();
+        System.out.println("router started on port " + port + " with shards " + ring.getNodes());
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                System.out.println("router: client connected from " + socket.getInetAddress());
+                handleAccepted(socket);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("router: accept failed: " + e.getMessage());
+                }
+            }
+        }
+        System.out.println("router: accept thread finished");
+    }
+
+    private void handleAccepted(Socket socket) {
+        Route route;
+        try {
+            route = new Route(new RelayLink(socket, InboundLimiter.fromConfig(configService.get())));
+        } catch (IOException e) {
+            System.err.println("router: could not set up connection: " + e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException closeException) {
+                System.err.println("router: error closing socket: " + closeException.getMessage());
+            }
+            return;
+        }
+        route.client.start("client", line -> onClientLine(route, line), () -> onClientClosed(route));
+        RoutedGame game = pair(route);
+        if (game != null) {
+            synchronized (game) {
+                connect(game, ring.nodeFor(game.id), null); // kehrt sofort zurück, der Shard wird im Hintergrund verbunden
+            }
+        }
+    }
+
+    /**
+     * Lets the client wait for an opponent, or creates a game with the client that is already waiting.
+     *
+     * @return the new game, or null if the client waits
+     */
+
+    private synchronized RoutedGame pair(Route route) {
+        if (waitingRoute == null || waitingRoute.client.isClosed()) {
+            waitingRoute = route;
+            System.out.println("router: client waits for an opponent");
+            return null;
+        }
+        RoutedGame game = new RoutedGame(nextGameId++, waitingRoute, route);
+        waitingRoute = null;
+        games.put(game.id, game);
+        Metrics.CLUSTER_GAMES.set(games.size());
+        return game;
+    }
+
+    private synchronized void removeWaiting(Route route) {
+        if (waitingRoute == route) {
+            waitingRoute = null;
+            System.out.println("router: waiting client left");
+        }
+    }
+
+    /**
+     * Opens the connections of both players to the shard and sends the JOINs. Must be called with the lock of the game.
+     * The channels are opened on a connector thread once the connection to the shard is there, the messages of the players
+     * are held back until then.
+     *
+     * @param state the position of a handed over game, or null for a new game
+     */
+
+    private void connect(RoutedGame game, String shard, String state) {
+        game.shard = shard;
+        for (Route route : game.routes) {
+            route.ready = false;
+            route.upstream = null;
+        }
+        shardConnection(shard).whenCompleteAsync((multiplexer, error) -> {
+            synchronized (game) {
+                if (game.closed) {
+                    return;
+                }
+                if (error != null) {
+                    Throwable cause = error;
+                    while (cause.getCause() != null) { // CompletionException und UncheckedIOException auspacken
+                        cause = cause.getCause();
+                    }
+                    System.err.println("router: shard " + shard + " is not reachable: " + cause.getMessage());
+                    close(game, NetworkCommand.ERROR + ":shard is not reachable");
+                    return;
+                }
+                openChannels(game, multiplexer, state);
+            }
+        }, connector);
+    }
+
+    private void openChannels(RoutedGame game, MultiplexedConnection multiplexer, String state) {
+        for (Route route : game.routes) {
+            route.upstream = multiplexer.openChannel(new MultiplexedConnection.ChannelHandler() {
+                @Override
+                public void onLine(MultiplexedConnection.Channel channel, String line) {
+                    try {
+                        onShardLine(game, route, line);
+                    } finally {
+                        channel.release();
+                    }
+                }
+
+                @Override
+                public void onClosed(MultiplexedConnection.Channel channel) {
+                    onShardClosed(game, route, channel);
+                }
+            });
+            route.upstream.send(NetworkCommand.JOIN + ":" + game.id + ":" + route.player.name() + (state != null ? ":" + state : ""));
+        }
+    }
+
+    /**
+     * Returns the connection to the shard, all games of the router on that shard share it. A lost or failed connection
+     * is replaced; while a connection is being opened, all games for the shard wait for the same attempt.
+     */
+
+    private CompletableFuture<MultiplexedConnection> shardConnection(String shard) {
+        return shardConnections.compute(shard, (key, existing) -> {
+            if (existing != null && (!existing.isDone() || (!existing.isCompletedExceptionally() && existing.join().isOpen()))) {
+                return existing;
+            }
+            return CompletableFuture.supplyAsync(() -> openShardConnection(shard), connector);
+        });
+    }
+
+    private MultiplexedConnection openShardConnection(String shard) {
+        try {
+            Socket socket = new Socket();
+            socket.connect(address(shard), CONNECT_TIMEOUT_MILLIS);
+            GameConfig config = configService.get();
+            MultiplexedConnection multiplexer = new MultiplexedConnection(socket, true, config.getMaxQueuedMessages(),
+                    new InboundLimiter(InboundLimiter.OverflowPolicy.DROP, 0, 1, Integer.MAX_VALUE, config.getMaxLineLength()), null);
+            multiplexer.start();
+            System.out.println("router: connected to shard " + shard);
+            return multiplexer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeShardConnection(String shard) {
+        CompletableFuture<MultiplexedConnection> connection = shardConnections.remove(shard);
+        if (connection != null) {
+            connection.thenAccept(MultiplexedConnection::close);
+        }
+    }
+
+    private void onClientLine(Route route, String line) {
+        RoutedGame game = route.game;
+        NetworkCommand command = NetworkCommand.fromString(commandOf(line));
+        if (game == null || command == null || !CLIENT_COMMANDS.contains(command)) {
+            System.err.println("router: dropping client message " + line);
+            Metrics.PARSE_ERRORS.increment();
+            return;
+        }
+        synchronized (game) {
+            if (game.closed) {
+                return;
+            }
+            if (route.ready) {
+                route.upstream.send(line);
+                Metrics.CLUSTER_MESSAGES_FORWARDED.increment();
+            } else if (route.pending.size() < configService.get().getMaxQueuedMessages() || command == NetworkCommand.QUIT) {
+                route.pending.add(line); // bis der Shard beide Spieler aufgenommen hat
+            } else {
+                System.err.println("router: too many held back messages, dropping " + line);
+                Metrics.NETWORK_MESSAGES_DROPPED.increment();
+            }
+        }
+    }
+
+    private void onClientClosed(Route route) {
+        if (route.game == null) {
+            removeWaiting(route);
+        } else {
+            onClientLine(route, NetworkCommand.QUIT.toString());
+        }
+    }
+
+    private void onShardLine(RoutedGame game, Route route, String line) {
+        String command = commandOf(line);
+        synchronized (game) {
+            if (game.closed) {
+                return;
+            }
+            if (NetworkCommand.JOIN.toString().equals(command)) {
+                route.ready = true;
+                String pending;
+                while ((pending = route.pending.poll()) != null) {
+                    route.upstream.send(pending);
+                    Metrics.CLUSTER_MESSAGES_FORWARDED.increment();
+                }
+                if (game.routes[0].ready && game.routes[1].ready) {
+                    placed(game);
+                }
+            } else if (NetworkCommand.HANDOFF.toString().equals(command)) {
+                if (line.length() > command.length()) {
+                    game.handoffState = line.substring(command.length() + 1); // nur die zweite Bestätigung enthält den Spielstand
+                }
+            } else {
+                route.client.send(line);
+                Metrics.CLUSTER_MESSAGES_FORWARDED.increment();
+            }
+        }
+    }
+
+    /**
+     * Ends the game when the shard closes a connection, or continues the handoff once the old shard closed both connections.
+     */
+
+    private void onShardClosed(RoutedGame game, Route route, MultiplexedConnection.Channel link) {
+        synchronized (game) {
+            if (game.closed || link != route.upstream) {
+                return;
+            }
+            if (!game.handingOff) {
+                close(game, NetworkCommand.QUIT.toString());
+                return;
+            }
+            if (++game.closedLinks < game.routes.length) {
+                return;
+            }
+            game.handingOff = false;
+            if (game.handoffState == null) {
+                System.err.println("router: shard " + game.shard + " closed game " + game.id + " during the handoff");
+                close(game, NetworkCommand.QUIT.toString());
+                return;
+            }
+            String target = ring.nodeFor(game.id);
+            System.out.println("router: game " + game.id + " handed over from " + game.shard + " to " + target);
+            Metrics.CLUSTER_HANDOFFS.increment();
+            connect(game, target, game.handoffState);
+        }
+    }
+
+    /**
+     * Called when both players are seated on the shard of the game. If the ring changed in the meantime, the game moves on.
+     */
+
+    private void placed(RoutedGame game) {
+        if (!ring.nodeFor(game.id).equals(game.shard)) {
+            startHandoff(game);
+        } else if (game.placement != null) {
+            game.placement.complete(null);
+            game.placement = null;
+        }
+    }
+
+    private void startHandoff(RoutedGame game) {
+        game.handingOff = true;
+        game.handoffState = null;
+        game.closedLinks = 0;
+        for (Route route : game.routes) {
+            route.ready = false;
+            route.upstream.send(NetworkCommand.HANDOFF.toString());
+        }
+    }
+
+    private void close(RoutedGame game, String message) {
+        game.closed = true;
+        games.remove(game.id);
+        Metrics.CLUSTER_GAMES.set(games.size());
+        for (Route route : game.routes) {
+            if (message != null) {
+                route.client.send(message);
+            }
+            route.client.close();
+            if (route.upstream != null) {
+                route.upstream.close();
+            }
+        }
+        if (game.placement != null) {
+            game.placement.complete(null);
+            game.placement = null;
+        }
+    }
+
+    /**
+     * Adds a shard. The games the ring now assigns to it are handed over from their old shards.
+     *
+     * @param shard the address of the new shard, "host:port"
+     * @return completes when all affected games run on their new shard (or have ended)
+     */
+
+    public synchronized CompletableFuture<Void> addShard(String shard) {
+        address(shard);
+        ring = ring.withNode(shard);
+        System.out.println("router: added shard " + shard);
+        return rebalance();
+    }
+
+    /**
+     * Removes a shard. All its games are handed over to the remaining shards; once the returned future is complete,
+     * the shard process can be stopped without losing a game.
+     *
+     * @param shard the address of the shard, "host:port"
+     * @return completes when no game runs on the shard anymore
+     */
+
+    public synchronized CompletableFuture<Void> removeShard(String shard) {
+        if (!ring.getNodes().contains(shard)) {
+            throw new IllegalArgumentException("unknown shard: " + shard);
+        }
+        if (ring.getNodes().size() == 1) {
+            throw new IllegalStateException("the last shard cannot be removed");
+        }
+        ring = ring.withoutNode(shard);
+        System.out.println("router: removed shard " + shard);
+        return rebalance().thenRun(() -> {
+            if (!ring.getNodes().contains(shard)) {
+                closeShardConnection(shard);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> rebalance() {
+        List<CompletableFuture<Void>> moves = new ArrayList<>();
+        for (RoutedGame game : games.values()) {
+            synchronized (game) {
+                if (game.closed || ring.nodeFor(game.id).equals(game.shard)) {
+                    continue;
+                }
+                if (game.placement == null) {
+                    game.placement = new CompletableFuture<>();
+                }
+                moves.add(game.placement);
+                if (!game.handingOff && game.routes[0].ready && game.routes[1].ready) {
+                    startHandoff(game);
+                } // sonst geht es weiter, sobald der Shard die Spieler aufgenommen hat
+            }
+        }
+        System.out.println("router: moving " + moves.size() + " of " + games.size() + " games");
+        return CompletableFuture.allOf(moves.toArray(new CompletableFuture<?>[0]));
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("router: error closing server socket: " + e.getMessage());
+        }
+        if (waitingRoute != null) {
+            waitingRoute.client.close();
+            waitingRoute = null;
+        }
+        for (RoutedGame game : games.values()) {
+            synchronized (game) {
+                if (!game.closed) {
+                    close(game, NetworkCommand.QUIT.toString());
+                }
+            }
+        }
+        for (String shard : ring.getNodes()) {
+            closeShardConnection(shard);
+        }
+        connector.shutdown();
+        System.out.println("router stopped");
+    }
+
+    public Set<String> getShards() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Returns the number of running games per shard, e.g. to see the spread after adding a shard.
+     */
+
+    public Map<String, Integer> getGamesPerShard() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String shard : ring.getNodes()) {
+            counts.put(shard, 0);
+        }
+        for (RoutedGame game : games.values()) {
+            synchronized (game) {
+                if (game.shard != null) {
+                    counts.merge(game.shard, 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static String commandOf(String line) {
+        int separator = line.indexOf(':');
+        return separator < 0 ? line : line.substring(0, separator);
+    }
+
+    private static InetSocketAddress address(String shard) {
+        int separator = shard.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("shard address must be host:port: " + shard);
+        }
+        return new InetSocketAddress(shard.substring(0, separator), Integer.parseInt(shard.substring(separator + 1)));
+    }
+
+    /**
+     * This class is one player of a routed game: the connection to the client and the current connection to the shard.
+     */
+
+    private static final class Route {
+        private final RelayLink client;
+        private final Queue<String> pending = new ArrayDeque<>();
+        private volatile RoutedGame game;
+        private Player player;
+        private MultiplexedConnection.Channel upstream;
+        private boolean ready;
+
+        Route(RelayLink client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * This class is one game on the router. All fields except the id are guarded by the lock of the object.
+     */
+
+    private static final class RoutedGame {
+        private final long id;
+        private final Route[] routes;
+        private String shard;
+        private boolean closed;
+        private boolean handingOff;
+        private int closedLinks;
+        private String handoffState;
+        private CompletableFuture<Void> placement;
+
+        RoutedGame(long id, Route routeX, Route routeO) {
+            this.id = id;
+            this.routes = new Route[]{routeX, routeO};
+            routeX.player = Player.X;
+            routeO.player = Player.O;
+            routeX.game = this;
+            routeO.game = this;
+        }
+    }
+}
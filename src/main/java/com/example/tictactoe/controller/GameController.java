@@ -1,20 +1,24 @@
 package com.example.tictactoe.controller;
 
+import com.example.tictactoe.analysis.AnalysisService;
+import com.example.tictactoe.jfr.BoardRefreshEvent;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.metrics.MetricsReporter;
 import com.example.tictactoe.model.*;
 import com.example.tictactoe.network.*;
-import com.example.tictactoe.util.ConfigLoader;
+import com.example.tictactoe.util.ConfigService;
+import com.example.tictactoe.util.GameConfig;
+import com.example.tictactoe.view.BoardRenderer;
+import com.example.tictactoe.view.ButtonBoardRenderer;
+import com.example.tictactoe.view.CanvasBoardRenderer;
 import javafx.application.Platform;
-import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.geometry.HPos;
-import javafx.geometry.VPos;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.layout.GridPane;
-import javafx.scene.text.Font;
+import javafx.scene.layout.StackPane;
 
-import java.util.Properties;
+import java.util.concurrent.CompletionException;
 
 /**
  * This class is the controller for the Tic Tac Toe game.
@@ -23,21 +27,21 @@ import java.util.Properties;
  */
 
 
-public class GameController implements NetworkListener {
-    @FXML private GridPane boardGrid;
+public class GameController implements NetworkListener, GameModelListener {
+    @FXML private StackPane boardContainer;
     @FXML private Label statusLabel;
     @FXML private Button hostButton;
     @FXML private Button joinButton;
     @FXML private Button newGameButton;
+    @FXML private Button undoButton;
+    @FXML private Button redoButton;
     @FXML private Button quitButton;
 
-    private static final int BOARD_SIZE = GameModel.getBoardSize();
-    private static final String CONFIG_FILE = "config.properties";
-    private static final String DEFAULT_OPPONENT_IP = "127.0.0.1";
-    private static final int DEFAULT_PORT = 54321;
+    private static final int CANVAS_RENDERER_MIN_SIZE = 10;   // ab dieser Größe wird automatisch auf die Canvas gezeichnet
+    private static final double BOARD_PIXEL_SIZE = 300.0;
 
     private GameModel gameModel;
-    private Button[][] boardButtons;
+    private BoardRenderer boardRenderer;
     private NetworkConnection networkConnection;
     private Player localPlayer = null;
 
@@ -45,25 +49,32 @@ public class GameController implements NetworkListener {
     private boolean isNetworkGame = false;
     private String opponentIP;
     private int networkPort;
+    private long metricsReportSeconds;
+    private int boardSize;
+    private int winLength;
+    private String rendererType;
+    private final MetricsReporter metricsReporter = new MetricsReporter(Metrics.registry());
 
 
     @FXML
     public void initialize() {
         System.out.println("initializing gamecontroller");
-        gameModel = new GameModel();
-        boardButtons = new Button[BOARD_SIZE][BOARD_SIZE];
-
         loadConfiguration();
-        createBoardButtons();
+        gameModel = new GameModel(boardSize, winLength);
+        gameModel.addListener(this);
+        Metrics.GAMES_STARTED.increment();
+
+        createBoardRenderer();
         updateBoard();
         updateStatusLabel();
         enableDisableBoard(false);
+        metricsReporter.start(metricsReportSeconds);
 
         System.out.println("gamecontroller initialized successfully");
 
         Platform.runLater(() -> {
-            if (boardGrid.getScene() != null && boardGrid.getScene().getWindow() != null) {
-                boardGrid.getScene().getWindow().setOnCloseRequest(event -> {
+            if (boardContainer.getScene() != null && boardContainer.getScene().getWindow() != null) {
+                boardContainer.getScene().getWindow().setOnCloseRequest(event -> {
                     cleanupAndExit();
                 });
             } else {
@@ -74,67 +85,68 @@ public class GameController implements NetworkListener {
     }
 
     /**
-        * This method loads the configuration from the config file.
-        * It sets the opponent IP and network port based on the loaded properties.
-        * If the properties are not found, it uses default values.
+        * This method reads the configuration snapshot of the shared config service.
+        * The values are already parsed and validated there, invalid values are replaced by defaults.
+        * Changes of the metrics interval are applied while the game is running.
      */
 
     private void loadConfiguration() {
-        Properties config = ConfigLoader.loadConfig(CONFIG_FILE);
-        opponentIP = config.getProperty("opponent.ip", DEFAULT_OPPONENT_IP);
-        try {
-            networkPort = Integer.parseInt(config.getProperty("network.port", String.valueOf(DEFAULT_PORT)));
-        } catch (NumberFormatException e) {
-            System.out.println("invalid port number");
-            networkPort = DEFAULT_PORT;
-        }
-        System.out.println("configuration loaded successfully: " + opponentIP + ":" + networkPort);
+        ConfigService configService = ConfigService.getDefault();
+        GameConfig config = configService.get();
+        opponentIP = config.getOpponentIp();
+        networkPort = config.getNetworkPort();
+        metricsReportSeconds = config.getMetricsReportSeconds();
+        boardSize = config.getBoardSize();
+        winLength = config.getWinLength();
+        rendererType = config.getRendererType();
+        configService.addListener(this::onConfigChanged);
+        configService.startWatching();
+        System.out.println("configuration loaded successfully: " + opponentIP + ":" + networkPort + ", board " + boardSize + "x" + boardSize);
     }
+
     /**
-        * This method creates the buttons for the game board.
-        * It sets the properties of each button and adds them to the grid pane.
-        * It also sets the action handler for each button.
+        * This method is called by the config service on its watcher thread when the config file changed.
+        * Network settings are used for the next host/join, the board size only for the next start.
      */
 
-    private void createBoardButtons() {
-        for (int row = 0; row < BOARD_SIZE; row++) {
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                Button button = new Button();
-                button.setMinSize(90, 90);
-                button.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
-                button.setFont(new Font("Arial Bold", 36));
-                final int r = row;
-                final int c = col;
-
-                button.setUserData(new int[]{r, c});
-                button.setOnAction(this::handleCellClick);
-
-                GridPane.setHalignment(button, HPos.CENTER);
-                GridPane.setValignment(button, VPos.CENTER);
-                GridPane.setHgrow(button, javafx.scene.layout.Priority.ALWAYS);
-                GridPane.setVgrow(button, javafx.scene.layout.Priority.ALWAYS);
-
-                boardGrid.add(button, col, row);
-                boardButtons[row][col] = button;
+    private void onConfigChanged(GameConfig config) {
+        Platform.runLater(() -> {
+            opponentIP = config.getOpponentIp();
+            networkPort = config.getNetworkPort();
+            if (config.getMetricsReportSeconds() != metricsReportSeconds) {
+                metricsReportSeconds = config.getMetricsReportSeconds();
+                metricsReporter.stop();
+                metricsReporter.start(metricsReportSeconds);
             }
+            System.out.println("configuration reloaded: " + opponentIP + ":" + networkPort);
+        });
+    }
+
+    /**
+        * This method creates the renderer for the game board and adds it to the board container.
+        * Small boards are drawn with one button per cell, large boards on a single canvas.
+        * The renderer can be forced with board.renderer=buttons or board.renderer=canvas in the config file.
+     */
+
+    private void createBoardRenderer() {
+        boolean useCanvas = "canvas".equalsIgnoreCase(rendererType)
+                || ("auto".equalsIgnoreCase(rendererType) && boardSize >= CANVAS_RENDERER_MIN_SIZE);
+        if (useCanvas) {
+            boardRenderer = new CanvasBoardRenderer(boardSize, BOARD_PIXEL_SIZE, BOARD_PIXEL_SIZE, this::handleCellClick);
+        } else {
+            boardRenderer = new ButtonBoardRenderer(boardSize, this::handleCellClick);
         }
-        System.out.println("board buttons loaded successfully");
+        boardContainer.getChildren().setAll(boardRenderer.getNode());
     }
 
     /**
-        * This method handles the click event on the game board buttons.
+        * This method handles the click on a cell of the game board.
         * It checks if the move is valid and updates the game model accordingly.
         * It also updates the UI and sends the move over the network if applicable.
      */
 
-    @FXML
-    private void handleCellClick(ActionEvent event) {
-        Button clickedButton = (Button) event.getSource();
-        int[] coords = (int[]) clickedButton.getUserData();
-        int row = coords[0];
-        int col = coords[1];
-
-        System.out.println("button clicked: " + coords[0] + ", " + coords[1]);
+    private void handleCellClick(int row, int col) {
+        System.out.println("cell clicked: " + row + ", " + col);
 
         if (isNetworkGame && !myTurn) {
             System.out.println("not my turn");
@@ -181,6 +193,7 @@ public class GameController implements NetworkListener {
                 System.out.println("game is over: " + gameModel.getGameState().getMessage());
                 enableDisableBoard(false);
                 updateStatusLabel();
+                analyzeFinishedGame();
             }
         } else {
             System.out.println("move failed");
@@ -214,23 +227,36 @@ public class GameController implements NetworkListener {
     }
 
     /**
-        * This method enables or disables the game board buttons based on the given parameter.
-        * It iterates through all buttons and sets their disable property accordingly.
+        * This method enables or disables the game board based on the given parameter.
+        * Only the node of the renderer is disabled, the cells inherit the state from their parent.
      */
 
 
     private void enableDisableBoard(boolean enable) {
-        for (int row = 0; row < BOARD_SIZE; row++) {
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                if (boardButtons[row][col] != null) {
-                    boardButtons[row][col].setDisable(!enable);
-                }
+        boardRenderer.setEnabled(enable);
+    }
+
+    /**
+     * This method lets the analysis service evaluate the finished game in the background and prints the blunders.
+     * If the analysis fails, the error is shown like the other errors of the game.
+     */
+
+    private void analyzeFinishedGame() {
+        AnalysisService.getDefault().analyze(gameModel).whenComplete((analysis, error) -> {
+            if (error == null) {
+                System.out.println("analysis: " + analysis.getBlunders().size() + " blunders " + analysis.getBlunders());
+                return;
             }
-        }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            System.err.println("analysis failed: " + cause);
+            Platform.runLater(() -> showErrorAlert("Analysis Error", "the game could not be analyzed: " + cause.getMessage()));
+        });
     }
 
     private void cleanupAndExit() {
         System.out.println("cleaning up and exiting");
+        metricsReporter.stop();
+        metricsReporter.report();
         if (networkConnection != null) {
             networkConnection.sendQuitAndClose();
             networkConnection = null;
@@ -258,7 +284,7 @@ public class GameController implements NetworkListener {
         isNetworkGame = true;
         localPlayer = Player.X;
         myTurn = true;
-        networkConnection = new NetworkConnection(this, opponentIP, networkPort);
+        networkConnection = new NetworkConnection(this, opponentIP, networkPort, Platform::runLater);
         networkConnection.startServer();
 
         hostButton.setDisable(true);
@@ -285,7 +311,7 @@ public class GameController implements NetworkListener {
         isNetworkGame = true;
         localPlayer = Player.O;
         myTurn = false;
-        networkConnection = new NetworkConnection(this, opponentIP, networkPort);
+        networkConnection = new NetworkConnection(this, opponentIP, networkPort, Platform::runLater);
         networkConnection.startClient();
 
         hostButton.setDisable(true);
@@ -315,6 +341,29 @@ public class GameController implements NetworkListener {
         updateStatusLabel();
     }
 
+    /**
+        * This method takes back the last move of a local game.
+        * In network games the buttons are disabled, because the opponent would not know about it.
+     */
+
+    @FXML
+    private void handleUndo() {
+        if (!isNetworkGame && gameModel.undo()) {
+            updateBoard();
+            enableDisableBoard(true);
+            updateStatusLabel();
+        }
+    }
+
+    @FXML
+    private void handleRedo() {
+        if (!isNetworkGame && gameModel.redo()) {
+            updateBoard();
+            enableDisableBoard(!gameModel.getGameState().isGameOver());
+            updateStatusLabel();
+        }
+    }
+
     @FXML
     private void handleQuitGame() {
         System.out.println("quit game button clicked");
@@ -329,6 +378,7 @@ public class GameController implements NetworkListener {
     private void resetGameInternal(boolean isNetworkReset) {
         System.out.println("resetting game internally. is network reset: " + isNetworkReset);
         gameModel.resetGame();
+        Metrics.GAMES_STARTED.increment();
         updateBoard();
 
         if (!isNetworkReset) {
@@ -351,24 +401,42 @@ public class GameController implements NetworkListener {
     }
     /**
         * This method updates the UI board based on the current state of the game model.
-        * It sets the text and style of each button according to the player occupying that cell.
-        * It also handles the case where a cell is empty.
+        * Only the cells reported as changed by the model are repainted by the board renderer.
      */
 
     private void updateBoard() {
-        Player[][] board = gameModel.getBoard();
-        for (int row = 0; row < BOARD_SIZE; row++) {
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                boardButtons[row][col].setText(board[row][col].toString());
-
-                if (board[row][col] == Player.X) {
-                    boardButtons[row][col].setStyle("-fx-text-fill: #00ffcb");
-                } else if (board[row][col] == Player.O) {
-                    boardButtons[row][col].setStyle("-fx-text-fill: #f61212");
-                } else {
-                    boardButtons[row][col].setStyle("-fx-text-fill: #1b1b1b");
-                }
-            }
+        BoardRefreshEvent event = new BoardRefreshEvent();
+        event.begin();
+        int cellsUpdated = boardRenderer.render(gameModel);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cellsUpdated = cellsUpdated;
+            event.gameState = gameModel.getGameState().name();
+            event.commit();
+        }
+        undoButton.setDisable(isNetworkGame || !gameModel.canUndo());
+        redoButton.setDisable(isNetworkGame || !gameModel.canRedo());
+    }
+
+    /**
+        * This method is called by the game model when a cell was set.
+        * The cell is only marked as dirty here, it is repainted with the next call of updateBoard().
+     */
+
+    @Override
+    public void onCellChanged(int row, int col, Player player) {
+        boardRenderer.markDirty(row, col);
+    }
+
+    /**
+        * This method is called by the game model when the board was reset.
+        * Only the cells that currently show a symbol have to be repainted.
+     */
+
+    @Override
+    public void onBoardReset() {
+        if (boardRenderer != null) {
+            boardRenderer.markOccupiedDirty();
         }
     }
 
@@ -408,6 +476,7 @@ public class GameController implements NetworkListener {
                     myTurn = false;
                     enableDisableBoard(false);
                     System.out.println("networklistener: game is over");
+                    analyzeFinishedGame();
                 } else {
                     myTurn = true;
                     enableDisableBoard(true);
@@ -423,6 +492,53 @@ public class GameController implements NetworkListener {
         }
     }
 
+    /**
+        * This method is called when an authoritative server sends the accepted game state.
+        * The local model is replaced by the server's position, which also undoes a local move the server rejected.
+     */
+
+    @Override
+    public void onStateReceived(Player[][] board, Player currentPlayer, GameState gameState) {
+        if (!isNetworkGame) return;
+
+        try {
+            gameModel.restoreState(board, currentPlayer, gameState);
+        } catch (IllegalArgumentException e) {
+            System.err.println("received state that does not fit the board: " + e.getMessage());
+            return;
+        }
+        updateBoard();
+        myTurn = !gameState.isGameOver() && currentPlayer == localPlayer;
+        enableDisableBoard(myTurn);
+        updateStatusLabel();
+    }
+
+    /**
+        * This method is called when an authoritative server sends an accepted move as delta.
+        * The own move is already on the board, the opponent's move is played; if the board then differs from the server's,
+        * a snapshot is requested, which replaces the board via onStateReceived.
+     */
+
+    @Override
+    public void onDeltaReceived(int row, int col, Player currentPlayer, GameState gameState, long positionHash) {
+        if (!isNetworkGame) return;
+
+        boolean opponentMove = row >= 0 && row < gameModel.getSize() && col >= 0 && col < gameModel.getSize()
+                && gameModel.getPlayerAt(row, col) == Player.EMPTY;
+        if (!gameModel.applyDelta(row, col, currentPlayer, gameState, positionHash)) {
+            System.err.println("board differs from the server after move " + row + ", " + col + ", requesting a snapshot");
+            networkConnection.requestSnapshot();
+            return;
+        }
+        updateBoard();
+        myTurn = !gameState.isGameOver() && currentPlayer == localPlayer;
+        enableDisableBoard(myTurn);
+        updateStatusLabel();
+        if (opponentMove && gameState.isGameOver()) {
+            analyzeFinishedGame(); // nach einem eigenen Zug wurde schon analysiert
+        }
+    }
+
     /**
         * This method is called when a reset request is received from the opponent.
         * It resets the game model and updates the UI accordingly.
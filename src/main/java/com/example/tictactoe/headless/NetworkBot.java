@@ -0,0 +1,215 @@
+package com.example.tictactoe.headless;
+
+import com.example.tictactoe.ai.MoveEngine;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.network.MultiplexedConnection;
+import com.example.tictactoe.network.NetworkConnection;
+import com.example.tictactoe.network.NetworkListener;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * This class is a headless opponent that plays over a NetworkConnection with moves chosen by a MoveEngine.
+ * It speaks the same protocol as the JavaFX client, so a human can host or join a game against it.
+ * All callbacks run directly on the network threads and are synchronized on the bot.
+ * After each own move the engine may ponder on the opponent's replies until the next move arrives.
+ * In a bot farm many bots share one multiplexed connection, each on its own channel; their callbacks then run on an executor,
+ * so a thinking bot does not hold up the messages of the others.
+ *
+ */
+
+public final class NetworkBot implements NetworkListener {
+    private final GameModel gameModel;
+    private final MoveEngine engine;
+    private final NetworkConnection networkConnection;
+    private final Runnable onReady;
+    private final boolean quitWhenOver;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private Player localPlayer;
+
+    /**
+     * Creates a bot for the given model.
+     *
+     * @param gameModel the model the bot plays on, both sides must use the same board size
+     * @param engine    the engine that chooses the bot's moves
+     * @param host      the host to connect to when joining
+     * @param port      the port to listen on or to connect to
+     * @param onReady   called once the bot is listening (host) or connected (join)
+     */
+
+    public NetworkBot(GameModel gameModel, MoveEngine engine, String host, int port, Runnable onReady) {
+        this.gameModel = gameModel;
+        this.engine = engine;
+        this.onReady = onReady;
+        this.quitWhenOver = false;
+        this.networkConnection = new NetworkConnection(this, host, port);
+    }
+
+    /**
+     * Creates a bot that joins over a new channel of a multiplexed connection and quits once its game is over.
+     *
+     * @param gameModel        the model the bot plays on, both sides must use the same board size
+     * @param engine           the engine that chooses the bot's moves
+     * @param multiplexer      the connection shared with the other bots
+     * @param callbackExecutor runs the callbacks of this bot in order
+     * @param onReady          called once the channel is open
+     */
+
+    public NetworkBot(GameModel gameModel, MoveEngine engine, MultiplexedConnection multiplexer, Executor callbackExecutor, Runnable onReady) {
+        this.gameModel = gameModel;
+        this.engine = engine;
+        this.onReady = onReady;
+        this.quitWhenOver = true;
+        this.networkConnection = new NetworkConnection(this, multiplexer, callbackExecutor);
+    }
+
+    public void host() {
+        networkConnection.startServer();
+    }
+
+    public void join() {
+        networkConnection.startClient();
+    }
+
+    public void awaitFinished() throws InterruptedException {
+        finished.await();
+    }
+
+    public void stop() {
+        engine.stopPondering();
+        networkConnection.sendQuitAndClose();
+        finished.countDown();
+    }
+
+    private void playIfMyTurn() {
+        if (localPlayer == null || gameModel.getGameState().isGameOver() || gameModel.getCurrentPlayer() != localPlayer) {
+            return;
+        }
+        int move = engine.selectMove(gameModel);
+        if (move < 0) {
+            System.err.println("bot: engine found no move");
+            return;
+        }
+        int size = gameModel.getSize();
+        int row = move / size;
+        int col = move % size;
+        if (gameModel.makeMove(row, col)) {
+            networkConnection.sendMove(row, col);
+            logIfGameOver();
+            engine.ponder(gameModel);
+        } else {
+            System.err.println("bot: engine chose illegal move " + row + ", " + col);
+        }
+    }
+
+    private void logIfGameOver() {
+        if (gameModel.getGameState().isGameOver()) {
+            System.out.println("bot: game is over: " + gameModel.getGameState().getMessage());
+            if (quitWhenOver) {
+                stop();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onMoveReceived(int row, int col) {
+        if (localPlayer == null || gameModel.getCurrentPlayer() != localPlayer.opponent()) {
+            System.err.println("bot: received move out of turn " + row + ", " + col);
+            return;
+        }
+        try {
+            if (!gameModel.makeMove(row, col)) {
+                System.err.println("bot: received invalid move " + row + ", " + col);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("bot: received move outside the board " + row + ", " + col);
+            return;
+        }
+        logIfGameOver();
+        playIfMyTurn();
+    }
+
+    /**
+     * Takes over the state sent by an authoritative server and answers if it is the bot's turn.
+     */
+
+    @Override
+    public synchronized void onStateReceived(Player[][] board, Player currentPlayer, GameState gameState) {
+        try {
+            gameModel.restoreState(board, currentPlayer, gameState);
+        } catch (IllegalArgumentException e) {
+            System.err.println("bot: received state that does not fit the board: " + e.getMessage());
+            return;
+        }
+        logIfGameOver();
+        playIfMyTurn();
+    }
+
+    /**
+     * Plays a move the server accepted and answers if it is the bot's turn. A board that drifted is replaced by a snapshot.
+     */
+
+    @Override
+    public synchronized void onDeltaReceived(int row, int col, Player currentPlayer, GameState gameState, long positionHash) {
+        boolean opponentMove = (currentPlayer == localPlayer) != gameState.isGameOver(); // nach dem Spielende bleibt der Ziehende am Zug
+        if (!gameModel.applyDelta(row, col, currentPlayer, gameState, positionHash)) {
+            System.err.println("bot: board differs from the server after move " + row + ", " + col + ", requesting a snapshot");
+            networkConnection.requestSnapshot();
+            return;
+        }
+        if (opponentMove) {
+            logIfGameOver(); // nach dem eigenen Zug ist das schon geschehen
+        }
+        playIfMyTurn();
+    }
+
+    @Override
+    public synchronized void onResetReceived() {
+        System.out.println("bot: new game requested");
+        engine.stopPondering();
+        gameModel.resetGame();
+        playIfMyTurn();
+    }
+
+    @Override
+    public synchronized void onConnectionChanged(boolean connected, Player assignedPlayer) {
+        if (connected) {
+            localPlayer = assignedPlayer;
+            System.out.println("bot: connected as player " + localPlayer);
+            gameModel.resetGame();
+            if (assignedPlayer == Player.O) {
+                onReady.run();
+            }
+            playIfMyTurn();
+        } else {
+            System.out.println("bot: disconnected");
+            engine.stopPondering();
+            localPlayer = null;
+            finished.countDown();
+        }
+    }
+
+    @Override
+    public synchronized void onListening(int port) {
+        onReady.run();
+    }
+
+    @Override
+    public void onError(String message) {
+        System.err.println("bot: network error: " + message);
+        if (!networkConnection.isRunning()) {
+            finished.countDown();
+        }
+    }
+
+    @Override
+    public void onOpponentQuit() {
+        System.out.println("bot: opponent quit");
+        engine.stopPondering();
+        finished.countDown();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.tictactoe.headless;
+
+import com.example.tictactoe.ai.MoveEngine;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This class plays complete games between two engines without any UI and counts the results.
+ * One GameModel is reused for all games, so a simulation run only allocates what the engines allocate.
+ *
+ */
+
+public class SimulationRunner {
+    private final int boardSize;
+    private final int winLength;
+
+    public SimulationRunner(int boardSize, int winLength) {
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+    }
+
+    /**
+     * Plays the given number of games, engineX always moves first.
+     *
+     * @param games   the number of games to play
+     * @param engineX the engine playing X
+     * @param engineO the engine playing O
+     * @return the number of games per final game state
+     */
+
+    public Map<GameState, Integer> run(int games, MoveEngine engineX, MoveEngine engineO) {
+        Map<GameState, Integer> results = new EnumMap<>(GameState.class);
+        GameModel gameModel = new GameModel(boardSize, winLength);
+        for (int game = 0; game < games; game++) {
+            results.merge(playGame(gameModel, engineX, engineO), 1, Integer::sum);
+        }
+        return results;
+    }
+
+    /**
+     * Plays one game on the given model, which keeps the finished game (e.g. for an analysis).
+     *
+     * @return the final game state
+     */
+
+    public GameState run(GameModel gameModel, MoveEngine engineX, MoveEngine engineO) {
+        return playGame(gameModel, engineX, engineO);
+    }
+
+    /**
+     * Resets the model and plays one game until it is over.
+     *
+     * @return the final game state
+     */
+
+    static GameState playGame(GameModel gameModel, MoveEngine engineX, MoveEngine engineO) {
+        int size = gameModel.getSize();
+        gameModel.resetGame();
+        Metrics.GAMES_STARTED.increment();
+        while (!gameModel.getGameState().isGameOver()) {
+            MoveEngine engine = gameModel.getCurrentPlayer() == Player.X ? engineX : engineO;
+            int move = engine.selectMove(gameModel);
+            if (move < 0 || !gameModel.makeMove(move / size, move % size)) {
+                throw new IllegalStateException(engine.getName() + " chose an illegal move: " + move);
+            }
+        }
+        return gameModel.getGameState();
+    }
+}
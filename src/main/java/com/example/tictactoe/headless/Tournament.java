@@ -0,0 +1,414 @@
+package com.example.tictactoe.headless;
+
+import com.example.tictactoe.ai.MoveEngine;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.ratings.RatingsService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * This class plays a tournament between engine configurations and estimates their Elo ratings.
+ * In a round robin every entrant plays every other one, in a gauntlet the first entrant plays all others.
+ *
+ * Games are played in pairs with swapped colors, so both entrants move first (as X) equally often.
+ * All cores play at the same time; each worker picks the next match that still needs games.
+ * A match stops early when a sequential probability ratio test (SPRT) decides that the first entrant is stronger
+ * or weaker by half the requested precision, or when the 95% interval of the Elo difference is narrower than the precision.
+ * Unlike a confidence interval that is tested again after every pair, the SPRT keeps its error rates of 5%
+ * however often it is checked. Only the maximum number of games is played if neither happens.
+ * With a RatingsService every finished game also updates the lasting ratings of the entrants, across tournaments.
+ *
+ */
+
+public class Tournament {
+    private static final double Z_95 = 1.96;
+    private static final double SPRT_ALPHA = 0.05;
+    private static final double SPRT_BETA = 0.05;
+    private static final double SPRT_LOWER = Math.log(SPRT_BETA / (1 - SPRT_ALPHA));
+    private static final double SPRT_UPPER = Math.log((1 - SPRT_BETA) / SPRT_ALPHA);
+    private static final int RATING_ITERATIONS = 500;
+
+    public enum Format {
+        ROUND_ROBIN, GAUNTLET
+    }
+
+    private final int boardSize;
+    private final int winLength;
+    private final int minGames;
+    private final int maxGames;
+    private final double precisionElo;
+    private final List<Entrant> entrants = new ArrayList<>();
+    private final List<Match> matches = new ArrayList<>();
+    private int nextMatch;
+    private RatingsService ratings;
+
+    /**
+     * @param boardSize    the board size of all games
+     * @param winLength    the number of symbols in a row that win
+     * @param minGames     the number of games a match plays at least before it may stop
+     * @param maxGames     the number of games a match plays at most
+     * @param precisionElo a match stops when its 95% Elo interval is narrower than this; the SPRT tests -precision/2
+     *                     against +precision/2
+     */
+
+    public Tournament(int boardSize, int winLength, int minGames, int maxGames, double precisionElo) {
+        if (minGames < 2 || maxGames < minGames) {
+            throw new IllegalArgumentException("invalid game limits: " + minGames + ".." + maxGames);
+        }
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.minGames = minGames;
+        this.maxGames = maxGames;
+        this.precisionElo = precisionElo;
+    }
+
+    /**
+     * Adds an entrant. The factory is called for every game, so engines with state are never shared between threads.
+     *
+     * @param name   the name in the results
+     * @param engine creates the engine of the entrant
+     */
+
+    public void addEntrant(String name, Supplier<MoveEngine> engine) {
+        entrants.add(new Entrant(name, engine));
+    }
+
+    /**
+     * Reports every finished game to the ratings service, under the names of the entrants.
+     */
+
+    public void setRatings(RatingsService ratings) {
+        this.ratings = ratings;
+    }
+
+    /**
+     * Plays all matches of the tournament on all cores and returns the results.
+     *
+     * @param format round robin or gauntlet
+     * @return the results of all matches and the fitted ratings
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+
+    public Result run(Format format) throws InterruptedException {
+        if (entrants.size() < 2) {
+            throw new IllegalStateException("a tournament needs at least two entrants");
+        }
+        matches.clear();
+        nextMatch = 0;
+        for (int a = 0; a < entrants.size(); a++) {
+            for (int b = a + 1; b < entrants.size(); b++) {
+                if (format == Format.ROUND_ROBIN || a == 0) {
+                    matches.add(new Match(a, b));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        int workers = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_tournament_thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(this::work));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("tournament game failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(new ArrayList<>(matches), fitRatings(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void work() {
+        GameModel gameModel = new GameModel(boardSize, winLength);
+        Match match;
+        while ((match = claimGamePair()) != null) {
+            Entrant first = entrants.get(match.first);
+            Entrant second = entrants.get(match.second);
+            GameState firstAsX = SimulationRunner.playGame(gameModel, first.engine.get(), second.engine.get());
+            GameState firstAsO = SimulationRunner.playGame(gameModel, second.engine.get(), first.engine.get());
+            if (ratings != null) {
+                ratings.recordResult(first.name, second.name, firstAsX);
+                ratings.recordResult(second.name, first.name, firstAsO);
+            }
+            record(match, score(firstAsX, true), score(firstAsO, false));
+        }
+    }
+
+    /**
+     * Returns the score of the first entrant of a match: 1 for a win, 0.5 for a draw and 0 for a loss.
+     */
+
+    private static double score(GameState state, boolean firstIsX) {
+        if (state == GameState.DRAW) {
+            return 0.5;
+        }
+        return (state == GameState.X_WINS) == firstIsX ? 1 : 0;
+    }
+
+    /**
+     * Picks the next match that still needs games, in turns, so all matches progress at the same speed.
+     *
+     * @return the match the caller plays the next pair of games of, or null if all matches are finished
+     */
+
+    private synchronized Match claimGamePair() {
+        for (int i = 0; i < matches.size(); i++) {
+            Match match = matches.get((nextMatch + i) % matches.size());
+            if (!match.stopped && match.scheduled + 2 <= maxGames) {
+                match.scheduled += 2;
+                nextMatch = (nextMatch + i + 1) % matches.size();
+                return match;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void record(Match match, double... scores) {
+        for (double score : scores) {
+            if (score == 1) {
+                match.wins++;
+            } else if (score == 0) {
+                match.losses++;
+            } else {
+                match.draws++;
+            }
+        }
+        if (!match.stopped && match.games() >= minGames) {
+            double score = match.score();
+            double error = match.standardError();
+            double llr = logLikelihoodRatio(match);
+            String decision = null;
+            if (llr >= SPRT_UPPER) {
+                decision = "stronger";
+            } else if (llr <= SPRT_LOWER) {
+                decision = "weaker";
+            } else if (eloBound(score + Z_95 * error) - eloBound(score - Z_95 * error) < precisionElo) {
+                decision = "precise";
+            }
+            if (decision != null) {
+                match.stopped = true;
+                match.stoppedEarly = match.games() < maxGames;
+                match.decision = decision;
+            }
+        }
+    }
+
+    /**
+     * Returns the log likelihood ratio of the SPRT of a match: the first entrant is stronger by half the precision (H1)
+     * against weaker by half the precision (H0), with the normal approximation of the score distribution.
+     * Returns 0 while all games were drawn, since there is no variance to test with yet.
+     */
+
+    private double logLikelihoodRatio(Match match) {
+        double variance = match.variance();
+        if (variance <= 0) {
+            return 0;
+        }
+        double lower = expected(-precisionElo / 2);
+        double upper = expected(precisionElo / 2);
+        return (match.games() + 1) * (upper - lower) * (2 * match.score() - lower - upper) / (2 * variance);
+    }
+
+    /**
+     * Converts a score (0..1) into an Elo difference. Scores of 0 and 1 are limited to half a game from the edge.
+     */
+
+    static double elo(double score, int games) {
+        double limit = 0.5 / Math.max(1, games);
+        double bounded = Math.min(1 - limit, Math.max(limit, score));
+        return -400 * Math.log10(1 / bounded - 1);
+    }
+
+    /**
+     * Converts a bound of a score interval into an Elo difference without limiting it, so a bound at or beyond
+     * 0 or 1 is reported as an open, one-sided interval (infinite Elo).
+     */
+
+    static double eloBound(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static double expected(double difference) {
+        return 1 / (1 + Math.pow(10, -difference / 400));
+    }
+
+    /**
+     * Fits one rating per entrant to all match results (maximum likelihood of the Elo model, with the first entrant at 0).
+     * Every match counts one virtual draw, so an entrant that won every game still gets a finite rating.
+     */
+
+    private synchronized double[] fitRatings() {
+        double[] ratings = new double[entrants.size()];
+        for (int iteration = 0; iteration < RATING_ITERATIONS; iteration++) {
+            for (int i = 0; i < ratings.length; i++) {
+                double actual = 0;
+                double expected = 0;
+                double information = 0;
+                for (Match match : matches) {
+                    if (match.first != i && match.second != i) {
+                        continue;
+                    }
+                    int games = match.games() + 1;
+                    double points = match.wins + match.draws / 2.0 + 0.5;
+                    int opponent = match.first == i ? match.second : match.first;
+                    double probability = expected(ratings[i] - ratings[opponent]);
+                    actual += match.first == i ? points : games - points;
+                    expected += games * probability;
+                    information += games * probability * (1 - probability);
+                }
+                if (information > 0) {
+                    ratings[i] += 400 / Math.log(10) * (actual - expected) / information;
+                }
+            }
+            double anchor = ratings[0];
+            for (int i = 0; i < ratings.length; i++) {
+                ratings[i] -= anchor;
+            }
+        }
+        return ratings;
+    }
+
+    private static final class Entrant {
+        private final String name;
+        private final Supplier<MoveEngine> engine;
+
+        Entrant(String name, Supplier<MoveEngine> engine) {
+            this.name = name;
+            this.engine = engine;
+        }
+    }
+
+    /**
+     * This class holds the games between two entrants, counted from the view of the first one.
+     */
+
+    private static final class Match {
+        private final int first;
+        private final int second;
+        private int scheduled;
+        private int wins;
+        private int draws;
+        private int losses;
+        private boolean stopped;
+        private boolean stoppedEarly;
+        private String decision;
+
+        Match(int first, int second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        int games() {
+            return wins + draws + losses;
+        }
+
+        /**
+         * Returns the average score per game. Like the ratings, it includes one virtual draw,
+         * so a match without any lost game still has an interval of non-zero width.
+         */
+
+        double score() {
+            return (wins + (draws + 1) / 2.0) / (games() + 1);
+        }
+
+        /**
+         * Returns the standard error of the score from the variance of the single game results.
+         */
+
+        double standardError() {
+            return Math.sqrt(variance() / (games() + 1));
+        }
+
+        /**
+         * Returns the variance of the single game results around the score.
+         */
+
+        double variance() {
+            double score = score();
+            return (wins * (1 - score) * (1 - score) + (draws + 1) * (0.5 - score) * (0.5 - score)
+                    + losses * score * score) / (games() + 1);
+        }
+    }
+
+    /**
+     * This class is the result of a tournament: a line per match and the fitted rating of every entrant.
+     */
+
+    public final class Result {
+        private final List<Match> results;
+        private final double[] ratings;
+        private final long millis;
+
+        private Result(List<Match> results, double[] ratings, long millis) {
+            this.results = results;
+            this.ratings = ratings;
+            this.millis = millis;
+        }
+
+        /**
+         * Returns the rating of the entrant with the given index, relative to the first entrant.
+         */
+
+        public double getRating(int entrant) {
+            return ratings[entrant];
+        }
+
+        public int getTotalGames() {
+            int games = 0;
+            for (Match match : results) {
+                games += match.games();
+            }
+            return games;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Match match : results) {
+                double score = match.score();
+                double error = match.standardError();
+                text.append(String.format("%s vs %s: +%d =%d -%d, elo %+.0f %s%s%n",
+                        entrants.get(match.first).name, entrants.get(match.second).name,
+                        match.wins, match.draws, match.losses, elo(score, match.games()),
+                        interval(eloBound(score - Z_95 * error), eloBound(score + Z_95 * error)),
+                        match.stoppedEarly ? " (stopped early after " + match.games() + " games, " + match.decision + ")" : ""));
+            }
+            text.append("ratings:").append(System.lineSeparator());
+            for (int i = 0; i < entrants.size(); i++) {
+                text.append(String.format("  %-24s %+6.0f%n", entrants.get(i).name, ratings[i]));
+            }
+            text.append(getTotalGames()).append(" games in ").append(millis).append(" ms");
+            return text.toString();
+        }
+
+        /**
+         * Formats a 95% Elo interval; an infinite bound is written as an open end, e.g. "[+330, +inf)".
+         */
+
+        private static String interval(double lower, double upper) {
+            return (Double.isInfinite(lower) ? "(-inf" : String.format("[%+.0f", lower)) + ", "
+                    + (Double.isInfinite(upper) ? "+inf)" : String.format("%+.0f]", upper));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.tictactoe.http;
+
+import com.example.tictactoe.ai.MoveEngine;
+import com.example.tictactoe.model.GameModel;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class shares a fixed number of engines between all requests. The engines keep no state between searches,
+ * but every search keeps a core busy for its whole time budget; so one engine is only used by one request at a time and
+ * a request waits for a free engine. The number of engines limits how many searches run at once, no matter how many
+ * virtual threads wait.
+ *
+ */
+
+final class EnginePool {
+    private final BlockingQueue<MoveEngine> idleEngines;
+
+    EnginePool(Collection<MoveEngine> engines) {
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("the pool needs at least one engine");
+        }
+        this.idleEngines = new ArrayBlockingQueue<>(engines.size(), false, engines);
+    }
+
+    /**
+     * Chooses a move with the next free engine.
+     *
+     * @return the packed cell index of the move, or -1 if there is no legal move
+     * @throws InterruptedException if the thread is interrupted while waiting for an engine
+     */
+
+    int selectMove(GameModel model) throws InterruptedException {
+        MoveEngine engine = idleEngines.take(); // blockiert nur den virtuellen Thread, nicht den Träger-Thread
+        try {
+            return engine.selectMove(model);
+        } finally {
+            idleEngines.add(engine);
+        }
+    }
+
+    int size() {
+        return idleEngines.remainingCapacity() + idleEngines.size();
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.tictactoe.http;
+
+import com.example.tictactoe.ai.MoveEngine;
+import com.example.tictactoe.metrics.Counter;
+import com.example.tictactoe.metrics.LatencyHistogram;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.BoardSymmetry;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.network.BoardCodec;
+import com.example.tictactoe.util.GameConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is an embedded HTTP/JSON endpoint for services that do not speak the socket protocol.
+ * It runs on the JDK's built-in HTTP server with one virtual thread per request, and keeps connections alive between requests.
+ * All calls are stateless, every request carries the whole position:
+ *
+ * GET or POST /api/status     the state of a position
+ * GET or POST /api/move       the position after a move (row, col)
+ * GET or POST /api/best-move  the move the engine chooses for the player to move
+ *
+ * Parameters come from the query string or a flat JSON object in the body: cells (one character per cell in row-major
+ * order, 'X', 'O' or '.'), optionally player (the player to move, by default derived from the number of stones) and
+ * win (the win length, by default the size but at most 5). The answer is a JSON object, errors have an "error" member.
+ *
+ * Best moves come from a shared pool of engines and are cached by canonical position, so symmetric positions and
+ * repeated requests are only searched once, even if they arrive at the same time.
+ *
+ */
+
+public class HttpApiServer {
+    private static final Counter REQUESTS = Metrics.registry().counter("http.requests");
+    private static final Counter ERRORS = Metrics.registry().counter("http.errors");
+    private static final Counter CACHE_HITS = Metrics.registry().counter("http.cache.hits");
+    private static final LatencyHistogram LATENCY = Metrics.registry().histogram("http.request.latency");
+
+    private final int port;
+    private final EnginePool engines;
+    private final int maxCacheEntries;
+    private final int maxBodyLength;
+    private final Map<PositionKey, CompletableFuture<Integer>> cache = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port            the port to listen on, 0 for any free port
+     * @param engines         the engines of the pool, each is used by one request at a time
+     * @param maxCacheEntries the best move cache is cleared when it grows beyond this size
+     * @param maxBodyLength   the maximum length of a request body in bytes
+     */
+
+    public HttpApiServer(int port, Collection<MoveEngine> engines, int maxCacheEntries, int maxBodyLength) {
+        this.port = port;
+        this.engines = new EnginePool(engines);
+        this.maxCacheEntries = maxCacheEntries;
+        this.maxBodyLength = maxBodyLength;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+        System.out.println("http api started on port " + getPort() + " with " + engines.size() + " engines");
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        System.out.println("http api stopped");
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        REQUESTS.increment();
+        int status = 200;
+        String body;
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("POST")) {
+                throw new ApiException(405, "use GET or POST");
+            }
+            Map<String, String> parameters = readParameters(exchange);
+            switch (exchange.getRequestURI().getPath()) {
+                case "/api/status":
+                    body = positionJson(readPosition(parameters));
+                    break;
+                case "/api/move":
+                    body = move(parameters);
+                    break;
+                case "/api/best-move":
+                    body = bestMove(parameters);
+                    break;
+                default:
+                    throw new ApiException(404, "unknown endpoint");
+            }
+        } catch (ApiException e) {
+            status = e.status;
+            body = errorJson(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = errorJson(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // der Server wird gestoppt
+            status = 503;
+            body = errorJson("server is stopping");
+        } catch (RuntimeException e) {
+            System.err.println("http: request failed: " + e);
+            status = 500;
+            body = errorJson("internal error");
+        }
+        if (status != 200) {
+            ERRORS.increment();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length); // feste Länge, damit die Verbindung offen bleiben kann
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        LATENCY.recordSince(start);
+    }
+
+    private String move(Map<String, String> parameters) {
+        GameModel model = readPosition(parameters);
+        int row = parseInt(parameters, "row");
+        int col = parseInt(parameters, "col");
+        if (row < 0 || row >= model.getSize() || col < 0 || col >= model.getSize()) {
+            throw new IllegalArgumentException("row or col outside the board");
+        }
+        if (!model.playMove(row * model.getSize() + col)) {
+            throw new ApiException(409, model.getGameState().isGameOver() ? "game is over" : "cell is not empty");
+        }
+        return positionJson(model);
+    }
+
+    private String bestMove(Map<String, String> parameters) throws InterruptedException {
+        GameModel model = readPosition(parameters);
+        if (model.getGameState().isGameOver()) {
+            throw new ApiException(409, "game is over");
+        }
+        if (cache.size() > maxCacheEntries) {
+            cache.clear();
+        }
+        BoardSymmetry.Canonical canonical = BoardSymmetry.forSize(model.getSize()).canonicalize(model.getBoard());
+        PositionKey key = new PositionKey(canonical, model.getCurrentPlayer(), model.getWinLength());
+        CompletableFuture<Integer> created = new CompletableFuture<>();
+        CompletableFuture<Integer> cached = cache.putIfAbsent(key, created);
+        int canonicalMove;
+        if (cached == null) {
+            try {
+                int move = engines.selectMove(model);
+                canonicalMove = move < 0 ? -1 : canonical.toCanonical(move);
+                created.complete(canonicalMove);
+            } catch (InterruptedException | RuntimeException e) {
+                cache.remove(key, created);
+                created.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            CACHE_HITS.increment();
+            try {
+                canonicalMove = cached.get(); // dieselbe Stellung wird gerade von einer anderen Anfrage gesucht
+            } catch (ExecutionException e) {
+                throw new ApiException(500, "search failed");
+            }
+        }
+        if (canonicalMove < 0) {
+            throw new ApiException(409, "no legal move");
+        }
+        int move = canonical.fromCanonical(canonicalMove);
+        int size = model.getSize();
+        return "{\"row\":" + move / size + ",\"col\":" + move % size + ",\"cached\":" + (cached != null) + "}";
+    }
+
+    /**
+     * Builds the position of a request. The game state is derived from the board, so the client cannot claim a result.
+     */
+
+    private GameModel readPosition(Map<String, String> parameters) {
+        String cells = parameters.get("cells");
+        if (cells == null) {
+            throw new IllegalArgumentException("cells is missing");
+        }
+        if (cells.length() > maxBodyLength) {
+            throw new ApiException(413, "board too large");
+        }
+        Player[][] board = BoardCodec.decodeCells(cells);
+        int size = board.length;
+        int win = parameters.containsKey("win") ? parseInt(parameters, "win") : Math.min(size, GameConfig.MAX_WIN_LENGTH);
+        Player current;
+        if (parameters.containsKey("player")) {
+            current = BoardCodec.decodePlayer(parameters.get("player"));
+        } else {
+            int x = 0;
+            int o = 0;
+            for (int i = 0; i < cells.length(); i++) {
+                x += cells.charAt(i) == 'X' ? 1 : 0;
+                o += cells.charAt(i) == 'O' ? 1 : 0;
+            }
+            current = x > o ? Player.O : Player.X;
+        }
+        GameModel model = new GameModel(size, win);
+        model.restorePosition(board, current);
+        return model;
+    }
+
+    private Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        String body = readBody(exchange);
+        if (!body.isBlank()) {
+            parameters.putAll(Json.parseObject(body));
+        }
+        return parameters;
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(maxBodyLength + 1);
+            if (bytes.length > maxBodyLength) {
+                throw new ApiException(413, "request body longer than " + maxBodyLength + " bytes");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String positionJson(GameModel model) {
+        String[] state = BoardCodec.encodeState(model).split(":");
+        GameState gameState = model.getGameState();
+        return "{\"cells\":" + Json.quote(state[0]) + ",\"player\":" + Json.quote(state[1]) + ",\"state\":" + Json.quote(state[2])
+                + ",\"gameOver\":" + gameState.isGameOver() + ",\"message\":" + Json.quote(gameState.getMessage()) + "}";
+    }
+
+    private static String errorJson(String message) {
+        return "{\"error\":" + Json.quote(message == null ? "invalid request" : message) + "}";
+    }
+
+    private static int parseInt(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is missing");
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a number");
+        }
+    }
+
+    /**
+     * This exception ends a request with the given HTTP status.
+     */
+
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * This class is the cache key: the canonical board, the player to move and the win length.
+     */
+
+    private static final class PositionKey {
+        private final BoardSymmetry.Canonical board;
+        private final Player toMove;
+        private final int winLength;
+
+        PositionKey(BoardSymmetry.Canonical board, Player toMove, int winLength) {
+            this.board = board;
+            this.toMove = toMove;
+            this.winLength = winLength;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PositionKey)) {
+                return false;
+            }
+            PositionKey key = (PositionKey) other;
+            return toMove == key.toMove && winLength == key.winLength && board.equals(key.board);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * board.hashCode() + toMove.hashCode()) + winLength;
+        }
+    }
+}
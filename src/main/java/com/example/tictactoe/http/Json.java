@@ -0,0 +1,187 @@
+package com.example.tictactoe.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class reads and writes the small JSON documents of the HTTP API without a JSON library.
+ * Requests are flat objects whose values are strings, numbers, booleans or null; every value is returned as text,
+ * so a request can carry "row": 1 as well as "row": "1", like a query parameter.
+ *
+ */
+
+final class Json {
+    private final String text;
+    private int position;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a flat JSON object.
+     *
+     * @return the members in document order, null values are left out
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+
+    static Map<String, String> parseObject(String text) {
+        Json json = new Json(text);
+        Map<String, String> members = json.readObject();
+        json.skipWhitespace();
+        if (json.position != text.length()) {
+            throw json.error("unexpected text after the object");
+        }
+        return members;
+    }
+
+    private Map<String, String> readObject() {
+        Map<String, String> members = new LinkedHashMap<>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return members;
+        }
+        while (true) {
+            skipWhitespace();
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            String value = readValue();
+            if (value != null) {
+                members.put(name, value);
+            }
+            skipWhitespace();
+            char next = next();
+            if (next == '}') {
+                return members;
+            }
+            if (next != ',') {
+                throw error("expected ',' or '}'");
+            }
+        }
+    }
+
+    private String readValue() {
+        char first = peek();
+        if (first == '"') {
+            return readString();
+        }
+        if (first == '{' || first == '[') {
+            throw error("nested values are not supported");
+        }
+        int start = position;
+        while (position < text.length() && "+-.0123456789eEtrufalsn".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        String literal = text.substring(start, position);
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.equals("true") || literal.equals("false")) {
+            return literal;
+        }
+        try {
+            Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw error("invalid value");
+        }
+        return literal;
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error("invalid escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("invalid escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    value.append(escaped); // \" \\ und \/
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("unexpected end");
+        }
+        return text.charAt(position);
+    }
+
+    private char next() {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw error("expected '" + expected + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("invalid JSON at " + position + ": " + message);
+    }
+
+    /**
+     * Writes a string as JSON string literal.
+     */
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
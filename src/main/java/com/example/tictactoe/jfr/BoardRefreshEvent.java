@@ -0,0 +1,22 @@
+package com.example.tictactoe.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event that is emitted for every board refresh of the GameController.
+ *
+ */
+
+@Name("com.example.tictactoe.BoardRefresh")
+@Label("Board Refresh")
+@Category({"TicTacToe", "UI"})
+public class BoardRefreshEvent extends Event {
+    @Label("Cells Updated")
+    public int cellsUpdated;
+
+    @Label("Game State")
+    public String gameState;
+}
@@ -0,0 +1,25 @@
+package com.example.tictactoe.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event that is emitted when a network connection is opened or closed.
+ *
+ */
+
+@Name("com.example.tictactoe.Connection")
+@Label("Connection")
+@Category({"TicTacToe", "Network"})
+public class ConnectionEvent extends Event {
+    @Label("Action")
+    public String action;
+
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Local Player")
+    public String localPlayer;
+}
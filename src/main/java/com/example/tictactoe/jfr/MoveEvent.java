@@ -0,0 +1,37 @@
+package com.example.tictactoe.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event that is emitted for every move that is applied to a GameModel.
+ * The event duration covers the whole move, winCheckTime the part spent detecting a win or draw.
+ *
+ */
+
+@Name("com.example.tictactoe.Move")
+@Label("Move Applied")
+@Category({"TicTacToe", "Game"})
+@Description("A move applied to the game model, including the time spent in win detection")
+public class MoveEvent extends Event {
+    @Label("Row")
+    public int row;
+
+    @Label("Column")
+    public int col;
+
+    @Label("Player")
+    public String player;
+
+    @Label("Game State")
+    @Description("The game state after the move")
+    public String gameState;
+
+    @Label("Win Check Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long winCheckTime;
+}
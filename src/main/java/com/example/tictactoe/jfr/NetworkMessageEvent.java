@@ -0,0 +1,34 @@
+package com.example.tictactoe.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event that is emitted for every message received by a NetworkConnection.
+ * The event duration covers parsing and dispatching the message to the listener.
+ *
+ */
+
+@Name("com.example.tictactoe.NetworkMessage")
+@Label("Network Message")
+@Category({"TicTacToe", "Network"})
+@Description("A received network message from parsing to dispatch")
+public class NetworkMessageEvent extends Event {
+    @Label("Command")
+    public String command;
+
+    @Label("Message")
+    public String message;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long parseTime;
+
+    @Label("Dispatched")
+    @Description("Whether the message was handed to the listener")
+    public boolean dispatched;
+}
@@ -0,0 +1,35 @@
+package com.example.tictactoe.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a monotonically increasing counter.
+ * It is backed by a LongAdder so that many threads can increment it without contending on a single field.
+ *
+ */
+
+public class Counter implements CounterMBean {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
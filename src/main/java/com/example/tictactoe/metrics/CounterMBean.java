@@ -0,0 +1,9 @@
+package com.example.tictactoe.metrics;
+
+/**
+ * JMX management interface for a Counter.
+ */
+
+public interface CounterMBean {
+    long getCount();
+}
@@ -0,0 +1,38 @@
+package com.example.tictactoe.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a value that can go up and down, e.g. the number of active connections.
+ *
+ */
+
+public class Gauge implements GaugeMBean {
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    Gauge(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public void decrement() {
+        value.decrementAndGet();
+    }
+
+    public void set(long newValue) {
+        value.set(newValue);
+    }
+
+    @Override
+    public long getValue() {
+        return value.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.tictactoe.metrics;
+
+/**
+ * JMX management interface for a Gauge.
+ */
+
+public interface GaugeMBean {
+    long getValue();
+}
@@ -0,0 +1,24 @@
+package com.example.tictactoe.metrics;
+
+/**
+ * JMX management interface for a LatencyHistogram.
+ * All durations are reported in microseconds.
+ */
+
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,78 @@
+package com.example.tictactoe.metrics;
+
+import com.example.tictactoe.model.GameState;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This class gives static access to the application wide metrics registry and the metrics recorded by the game and network code.
+ * The instruments are looked up once here, so recording on the hot path is just a field access plus an increment.
+ *
+ */
+
+public final class Metrics {
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry("com.example.tictactoe");
+
+    public static final LatencyHistogram MOVE_LATENCY = REGISTRY.histogram("game.move.latency");
+    public static final Counter MOVES_APPLIED = REGISTRY.counter("game.moves.applied");
+    public static final Counter MOVES_REJECTED = REGISTRY.counter("game.moves.rejected");
+    public static final Counter GAMES_STARTED = REGISTRY.counter("game.started");
+
+    public static final LatencyHistogram SEND_LATENCY = REGISTRY.histogram("network.send.latency");
+    public static final LatencyHistogram PROCESS_LATENCY = REGISTRY.histogram("network.process.latency");
+    public static final Counter MESSAGES_SENT = REGISTRY.counter("network.messages.sent");
+    public static final Counter MESSAGES_RECEIVED = REGISTRY.counter("network.messages.received");
+    public static final Counter PARSE_ERRORS = REGISTRY.counter("network.parse.errors");
+    public static final Gauge ACTIVE_CONNECTIONS = REGISTRY.gauge("network.connections.active");
+    public static final Counter NETWORK_MESSAGES_DROPPED = REGISTRY.counter("network.messages.dropped");
+    public static final Counter NETWORK_READS_THROTTLED = REGISTRY.counter("network.reads.throttled");
+    public static final Counter NETWORK_OVERFLOW_DISCONNECTS = REGISTRY.counter("network.overflow.disconnects");
+    public static final Gauge MUX_CHANNELS = REGISTRY.gauge("network.mux.channels.active");
+    public static final Counter SYNC_SNAPSHOTS = REGISTRY.counter("network.sync.snapshots");
+    public static final Counter SYNC_DELTAS = REGISTRY.counter("network.sync.deltas");
+    public static final Counter SYNC_REQUESTS = REGISTRY.counter("network.sync.requests");
+
+    public static final LatencyHistogram SEARCH_TIME = REGISTRY.histogram("ai.search.time");
+    public static final Gauge SEARCH_DEPTH = REGISTRY.gauge("ai.search.depth");
+    public static final Counter SEARCH_NODES = REGISTRY.counter("ai.search.nodes");
+    public static final Gauge SEARCH_NODES_PER_SECOND = REGISTRY.gauge("ai.search.nodesPerSecond");
+    public static final Counter ANALYSIS_POSITIONS = REGISTRY.counter("analysis.positions.evaluated");
+    public static final Counter ANALYSIS_CACHE_HITS = REGISTRY.counter("analysis.cache.hits");
+    public static final Counter PONDER_HITS = REGISTRY.counter("ai.ponder.hits");
+    public static final Counter PONDER_MISSES = REGISTRY.counter("ai.ponder.misses");
+    public static final Counter PONDER_CANCELLED = REGISTRY.counter("ai.ponder.cancelled");
+    public static final Counter CLUSTER_MESSAGES_FORWARDED = REGISTRY.counter("cluster.messages.forwarded");
+    public static final Counter CLUSTER_HANDOFFS = REGISTRY.counter("cluster.handoffs");
+    public static final Gauge CLUSTER_GAMES = REGISTRY.gauge("cluster.games.active");
+
+    private static final Map<GameState, Counter> GAMES_FINISHED = new EnumMap<>(GameState.class);
+
+    static {
+        for (GameState state : GameState.values()) {
+            if (state.isGameOver()) {
+                GAMES_FINISHED.put(state, REGISTRY.counter("game.finished." + state.name().toLowerCase()));
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Counts a finished game by its final state.
+     *
+     * @param state the final game state, PLAYING is ignored
+     */
+
+    public static void gameFinished(GameState state) {
+        Counter counter = GAMES_FINISHED.get(state);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
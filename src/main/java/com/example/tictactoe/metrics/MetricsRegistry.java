@@ -0,0 +1,106 @@
+package com.example.tictactoe.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * This class holds all named metrics of the application.
+ * Metrics are created on first use and live for the lifetime of the registry.
+ * Once registerMBeans() has been called, every existing and every later created metric is also published as a JMX MBean.
+ *
+ */
+
+public class MetricsRegistry {
+    private final String domain;
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+    private final Map<String, ObjectName> registeredNames = new ConcurrentHashMap<>();
+    private volatile MBeanServer mBeanServer;
+
+    public MetricsRegistry(String domain) {
+        this.domain = domain;
+    }
+
+    public Counter counter(String name) {
+        return register(name, Counter.class, () -> new Counter(name));
+    }
+
+    public Gauge gauge(String name) {
+        return register(name, Gauge.class, () -> new Gauge(name));
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return register(name, LatencyHistogram.class, () -> new LatencyHistogram(name));
+    }
+
+    private <T> T register(String name, Class<T> type, Supplier<T> factory) {
+        Object metric = metrics.computeIfAbsent(name, key -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("metric " + name + " is already registered as " + metric.getClass().getSimpleName());
+        }
+        if (mBeanServer != null) {
+            registerMBean(name, metric);
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Publishes all metrics of this registry on the platform MBeanServer.
+     * Metrics created afterwards are published as soon as they are created.
+     */
+
+    public synchronized void registerMBeans() {
+        if (mBeanServer != null) {
+            return;
+        }
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            registerMBean(entry.getKey(), entry.getValue());
+        }
+        System.out.println("metrics registered as jmx mbeans under domain " + domain);
+    }
+
+    private void registerMBean(String name, Object metric) {
+        if (registeredNames.containsKey(name)) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(domain + ":type=" + metric.getClass().getSimpleName() + ",name=" + ObjectName.quote(name));
+            if (registeredNames.putIfAbsent(name, objectName) == null && !mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(metric, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("could not register mbean for metric " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds a human readable snapshot of all metrics, one metric per line.
+     *
+     * @return the snapshot text
+     */
+
+    public String formatSnapshot() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            Object metric = entry.getValue();
+            text.append(entry.getKey()).append(' ');
+            if (metric instanceof Counter counter) {
+                text.append("count=").append(counter.getCount());
+            } else if (metric instanceof Gauge gauge) {
+                text.append("value=").append(gauge.getValue());
+            } else if (metric instanceof LatencyHistogram histogram) {
+                text.append(String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                        histogram.getCount(), histogram.getMeanMicros(), histogram.getP50Micros(), histogram.getP90Micros(),
+                        histogram.getP99Micros(), histogram.getP999Micros(), histogram.getMaxMicros()));
+            }
+            text.append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+}
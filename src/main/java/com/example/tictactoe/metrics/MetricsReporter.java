@@ -0,0 +1,50 @@
+package com.example.tictactoe.metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class periodically prints a text snapshot of a metrics registry to the console.
+ * It uses a single daemon thread, so it never keeps the application alive.
+ *
+ */
+
+public class MetricsReporter {
+    private final MetricsRegistry registry;
+    private ScheduledExecutorService scheduler;
+
+    public MetricsReporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts printing snapshots in the given interval.
+     *
+     * @param intervalSeconds the interval in seconds, values of 0 or less disable the reporter
+     */
+
+    public synchronized void start(long intervalSeconds) {
+        if (scheduler != null || intervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_metrics_reporter_thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        System.out.println("metrics reporter started, interval " + intervalSeconds + "s");
+    }
+
+    public void report() {
+        System.out.println("metrics snapshot:" + System.lineSeparator() + registry.formatSnapshot());
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
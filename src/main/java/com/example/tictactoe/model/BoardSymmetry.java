@@ -0,0 +1,217 @@
+package com.example.tictactoe.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class maps positions of a square board to a canonical orientation under the 8 symmetries of the square
+ * (4 rotations, each with or without mirroring), so caches keyed on positions can share entries between symmetric positions.
+ *
+ * Cells are packed indices (row * size + col). For each symmetry the destination of every cell and its inverse are
+ * precomputed once per board size, so transforming a cell or a move is a single array lookup.
+ * Transform 0 is the identity.
+ *
+ */
+
+public final class BoardSymmetry {
+    public static final int TRANSFORM_COUNT = 8;
+    private static final int[] INVERSE = {0, 3, 2, 1, 4, 5, 6, 7};
+    private static final Map<Integer, BoardSymmetry> INSTANCES = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int[][] destination;
+    private final int[][] source;
+
+    private BoardSymmetry(int size) {
+        this.size = size;
+        int cells = size * size;
+        this.destination = new int[TRANSFORM_COUNT][cells];
+        this.source = new int[TRANSFORM_COUNT][cells];
+        int last = size - 1;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int cell = row * size + col;
+                destination[0][cell] = cell;
+                destination[1][cell] = col * size + (last - row);
+                destination[2][cell] = (last - row) * size + (last - col);
+                destination[3][cell] = (last - col) * size + row;
+                destination[4][cell] = row * size + (last - col);
+                destination[5][cell] = col * size + row;
+                destination[6][cell] = (last - row) * size + col;
+                destination[7][cell] = (last - col) * size + (last - row);
+            }
+        }
+        for (int t = 0; t < TRANSFORM_COUNT; t++) {
+            for (int cell = 0; cell < cells; cell++) {
+                source[t][destination[t][cell]] = cell;
+            }
+        }
+    }
+
+    /**
+     * Returns the (shared) symmetry tables for a board size.
+     *
+     * @param size the board size
+     * @return the tables
+     */
+
+    public static BoardSymmetry forSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("invalid board size: " + size);
+        }
+        return INSTANCES.computeIfAbsent(size, BoardSymmetry::new);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the cell the given cell is moved to by the transform.
+     */
+
+    public int apply(int transform, int cell) {
+        return destination[transform][cell];
+    }
+
+    /**
+     * Returns the cell that the transform moves to the given cell, i.e. maps a move in the transformed
+     * (e.g. canonical) orientation back to the original board.
+     */
+
+    public int invert(int transform, int cell) {
+        return source[transform][cell];
+    }
+
+    /**
+     * Returns the transform that undoes the given one.
+     */
+
+    public static int inverse(int transform) {
+        return INVERSE[transform];
+    }
+
+    /**
+     * Returns the transform whose result is the lexicographically smallest cell sequence.
+     * Ties (symmetric positions) resolve to the smallest transform index, so the result is deterministic.
+     *
+     * @param cells the cell values in row-major order, e.g. 0 = empty, 1 = X, 2 = O
+     * @return the canonical transform
+     */
+
+    public int canonicalTransform(byte[] cells) {
+        int best = 0;
+        for (int t = 1; t < TRANSFORM_COUNT; t++) {
+            int[] candidate = source[t];
+            int[] current = source[best];
+            for (int cell = 0; cell < cells.length; cell++) {
+                int difference = cells[candidate[cell]] - cells[current[cell]];
+                if (difference != 0) {
+                    if (difference < 0) {
+                        best = t;
+                    }
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the canonical form of a position.
+     *
+     * @param board the board, must have the size of these tables
+     * @return the canonical position
+     */
+
+    public Canonical canonicalize(Player[][] board) {
+        byte[] cells = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                Player player = board[row][col];
+                cells[row * size + col] = (byte) (player == Player.X ? 1 : (player == Player.O ? 2 : 0));
+            }
+        }
+        return canonicalize(cells);
+    }
+
+    public Canonical canonicalize(GameModel model) {
+        return canonicalize(model.getBoard());
+    }
+
+    /**
+     * Returns the canonical form of a position given as cell values (0, 1 or 2) in row-major order.
+     */
+
+    public Canonical canonicalize(byte[] cells) {
+        int transform = canonicalTransform(cells);
+        long[] key = new long[(cells.length + 31) / 32];
+        int[] from = source[transform];
+        for (int cell = 0; cell < cells.length; cell++) {
+            key[cell >>> 5] |= (long) cells[from[cell]] << ((cell & 31) << 1);
+        }
+        return new Canonical(this, key, transform);
+    }
+
+    /**
+     * This class is a canonical position: a packed key (2 bits per cell) that is equal for all symmetric positions,
+     * and the transform that maps the original board to it.
+     */
+
+    public static final class Canonical {
+        private final BoardSymmetry symmetry;
+        private final long[] key;
+        private final int transform;
+        private final int hash;
+
+        private Canonical(BoardSymmetry symmetry, long[] key, int transform) {
+            this.symmetry = symmetry;
+            this.key = key;
+            this.transform = transform;
+            this.hash = 31 * symmetry.size + Arrays.hashCode(key);
+        }
+
+        public int getTransform() {
+            return transform;
+        }
+
+        /**
+         * Maps a move on the original board to the canonical orientation.
+         */
+
+        public int toCanonical(int cell) {
+            return symmetry.apply(transform, cell);
+        }
+
+        /**
+         * Maps a move in the canonical orientation (e.g. from a cache or an opening book) back to the original board.
+         */
+
+        public int fromCanonical(int cell) {
+            return symmetry.invert(transform, cell);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Canonical)) {
+                return false;
+            }
+            Canonical canonical = (Canonical) other;
+            return symmetry.size == canonical.symmetry.size && Arrays.equals(key, canonical.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Canonical{size=" + symmetry.size + ", transform=" + transform + "}";
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.example.tictactoe.model;
 
+import com.example.tictactoe.jfr.MoveEvent;
+import com.example.tictactoe.metrics.Metrics;
+
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class represents the game model for a Tic Tac Toe game.
@@ -8,14 +13,34 @@ import java.util.Arrays;
  * The game board is represented as a 2D array of Player objects.
  * The current player is tracked, and the game state is updated based on player moves.
  * The class provides methods to reset the game, make moves, check for wins, and get the current state of the board.
+ * Besides the classic 3x3 board, any square board with a configurable number of symbols in a row to win is supported.
+ * All moves since the last reset are kept on a move stack, so moves can be taken back in constant time
+ * (unmakeMove for searches, undo/redo for players), and a Zobrist hash of the position is updated with every move.
+ * The empty cells are kept as bit mask as well, so engines can generate the legal moves as packed cell indices
+ * with one call instead of looking at every cell through getPlayerAt.
  *
  */
 
 
 public class GameModel extends AbstractGameModel {
     private static final int BOARD_SIZE = 3;
+    /**
+     * The largest board size a model accepts, also the limit for board sizes received over the network.
+     */
+
+    public static final int MAX_BOARD_SIZE = 1000;
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    private final int size;
+    private final int winLength;
     private Player[][] board;
     private Player currentPlayer;
+    private int moveCount;
+    private final int[] history;
+    private int historySize;
+    private int redoSize;
+    private long positionHash;
+    private final long[] emptyMask;
+    private final List<GameModelListener> listeners = new CopyOnWriteArrayList<>();
 
 
     /**
@@ -25,7 +50,27 @@ public class GameModel extends AbstractGameModel {
      */
 
     public GameModel() {
-        this.board = new Player[BOARD_SIZE][BOARD_SIZE];
+        this(BOARD_SIZE, BOARD_SIZE);
+    }
+
+    /**
+        * This constructor initializes a board of the given size where winLength symbols in a row,
+        * column or diagonal win the game. The starting player is Player.X.
+        * If the size or the win length are out of range, an IllegalArgumentException is thrown.
+     */
+
+    public GameModel(int size, int winLength) {
+        if (size < 1 || size > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("invalid board size: " + size);
+        }
+        if (winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("invalid win length: " + winLength);
+        }
+        this.size = size;
+        this.winLength = winLength;
+        this.board = new Player[size][size];
+        this.history = new int[size * size];
+        this.emptyMask = new long[(size * size + 63) >>> 6];
         resetGame();
     }
 
@@ -40,12 +85,40 @@ public class GameModel extends AbstractGameModel {
         this();
         if (startingPlayer == Player.X || startingPlayer == Player.O) {
             this.currentPlayer = startingPlayer;
+            this.positionHash = sideHash(startingPlayer);
         } else {
             throw new IllegalArgumentException("Invalid starting player");
         }
         this.gameState = GameState.PLAYING;
     }
 
+    /**
+        * This constructor copies position, move stack and hash of another model, without listeners and without metrics.
+     */
+
+    private GameModel(GameModel other) {
+        this.size = other.size;
+        this.winLength = other.winLength;
+        this.board = other.getBoard();
+        this.history = Arrays.copyOf(other.history, other.history.length);
+        this.emptyMask = other.emptyMask.clone();
+        this.historySize = other.historySize;
+        this.redoSize = other.redoSize;
+        this.positionHash = other.positionHash;
+        this.moveCount = other.moveCount;
+        this.currentPlayer = other.currentPlayer;
+        this.gameState = other.gameState;
+    }
+
+    /**
+        * This method returns an independent copy of the model, e.g. for a search in the background.
+        * Listeners are not copied.
+     */
+
+    public synchronized GameModel copy() {
+        return new GameModel(this);
+    }
+
     /**
         * This method resets the game board to its initial state.
         * It sets all cells to EMPTY and sets the current player to Player.X.
@@ -54,11 +127,35 @@ public class GameModel extends AbstractGameModel {
 
     @Override
     public synchronized void resetGame() {
-        for (int i = 0; i < BOARD_SIZE; i++) {
+        for (int i = 0; i < size; i++) {
             Arrays.fill(board[i], Player.EMPTY);
         }
+        Arrays.fill(emptyMask, -1L);
+        int unused = emptyMask.length * 64 - size * size;
+        emptyMask[emptyMask.length - 1] >>>= unused; // Bits hinter der letzten Zelle bleiben leer
         currentPlayer = Player.X;
         gameState = GameState.PLAYING;
+        moveCount = 0;
+        historySize = 0;
+        redoSize = 0;
+        positionHash = 0;
+        for (GameModelListener listener : listeners) {
+            listener.onBoardReset();
+        }
+    }
+
+    /**
+     * Registers a listener that is notified about every changed cell and every reset of the board.
+     *
+     * @param listener the listener to add
+     */
+
+    public void addListener(GameModelListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GameModelListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -69,28 +166,292 @@ public class GameModel extends AbstractGameModel {
 
 
     public synchronized boolean makeMove(int row, int col) {
-        if (row < 0 || row >= BOARD_SIZE || col < 0 || col >= BOARD_SIZE) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            Metrics.MOVES_REJECTED.increment();
             throw new IllegalArgumentException("wrong coordinates");
         }
 
+        long start = System.nanoTime();
         if (board[row][col] == Player.EMPTY && gameState == GameState.PLAYING) {
-            board[row][col] = currentPlayer;
-            updateGameState();
-            if (gameState == GameState.PLAYING) {
-                currentPlayer = currentPlayer.opponent();
+            MoveEvent event = new MoveEvent();
+            event.begin();
+            Player mover = currentPlayer;
+            long winCheckTime = applyMove(row, col);
+            redoSize = historySize;
+            if (gameState.isGameOver()) {
+                Metrics.gameFinished(gameState);
+            }
+            Metrics.MOVE_LATENCY.recordSince(start);
+            Metrics.MOVES_APPLIED.increment();
+            for (GameModelListener listener : listeners) {
+                listener.onCellChanged(row, col, mover);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.row = row;
+                event.col = col;
+                event.player = mover.name();
+                event.gameState = gameState.name();
+                event.winCheckTime = winCheckTime;
+                event.commit();
             }
             return true;
         }
+        Metrics.MOVES_REJECTED.increment();
         return false;
     }
 
+    /**
+        * This method sets the stone of the current player, pushes the move on the stack, updates the hash and the game state
+        * and passes the turn. The cell must be empty and the game must be running.
+        *
+        * @return the nanoseconds spent checking for a win or draw
+     */
+
+    private long applyMove(int row, int col) {
+        int cell = row * size + col;
+        board[row][col] = currentPlayer;
+        emptyMask[cell >>> 6] &= ~(1L << cell);
+        moveCount++;
+        history[historySize++] = cell;
+        positionHash ^= cellHash(cell, currentPlayer);
+        long winCheckStart = System.nanoTime();
+        updateGameState(row, col);
+        long winCheckTime = System.nanoTime() - winCheckStart;
+        if (gameState == GameState.PLAYING) {
+            positionHash ^= sideHash(Player.O);
+            currentPlayer = currentPlayer.opponent();
+        }
+        return winCheckTime;
+    }
+
+    /**
+        * This method takes back the last move of the stack and restores board, current player, game state and hash.
+        * A move can only have been made while the game was running, so the previous game state is always PLAYING.
+        *
+        * @return the packed cell index of the move that was taken back
+     */
+
+    private int revertMove() {
+        int cell = history[--historySize];
+        int row = cell / size;
+        int col = cell % size;
+        Player mover = board[row][col];
+        board[row][col] = Player.EMPTY;
+        emptyMask[cell >>> 6] |= 1L << cell;
+        moveCount--;
+        positionHash ^= cellHash(cell, mover);
+        if (currentPlayer != mover) {
+            positionHash ^= sideHash(Player.O);
+            currentPlayer = mover;
+        }
+        gameState = GameState.PLAYING;
+        return cell;
+    }
+
+    /**
+        * This method is the fast path for searches: it plays a move given as packed cell index (row * size + col)
+        * without metrics, flight recorder events or listener notifications and without allocating.
+        * Searches should run on their own model, so views are not told about positions that are only looked at.
+        *
+        * @return true if the move was legal and has been played
+     */
+
+    public synchronized boolean playMove(int cell) {
+        if (cell < 0 || cell >= size * size || gameState != GameState.PLAYING) {
+            return false;
+        }
+        int row = cell / size;
+        int col = cell % size;
+        if (board[row][col] != Player.EMPTY) {
+            return false;
+        }
+        applyMove(row, col);
+        redoSize = historySize;
+        return true;
+    }
+
+    /**
+        * This method takes back the last move in constant time, the counterpart of playMove.
+        * Moves taken back this way cannot be redone.
+        *
+        * @return the packed cell index of the move, or -1 if there is no move to take back
+     */
+
+    public synchronized int unmakeMove() {
+        if (historySize == 0) {
+            return -1;
+        }
+        int cell = revertMove();
+        redoSize = historySize;
+        return cell;
+    }
+
+    /**
+        * This method takes back the last move for the player. Listeners are notified and the move can be redone.
+        *
+        * @return true if a move was taken back
+     */
+
+    public synchronized boolean undo() {
+        if (historySize == 0) {
+            return false;
+        }
+        int cell = revertMove();
+        for (GameModelListener listener : listeners) {
+            listener.onCellChanged(cell / size, cell % size, Player.EMPTY);
+        }
+        return true;
+    }
+
+    /**
+        * This method plays the last move taken back with undo again.
+        *
+        * @return true if a move was redone
+     */
+
+    public synchronized boolean redo() {
+        if (redoSize == historySize) {
+            return false;
+        }
+        int cell = history[historySize];
+        int row = cell / size;
+        int col = cell % size;
+        Player mover = currentPlayer;
+        applyMove(row, col);
+        for (GameModelListener listener : listeners) {
+            listener.onCellChanged(row, col, mover);
+        }
+        return true;
+    }
+
+    public synchronized boolean canUndo() {
+        return historySize > 0;
+    }
+
+    public synchronized boolean canRedo() {
+        return redoSize > historySize;
+    }
+
+    /**
+        * This method returns the moves since the last reset as packed cell indices, oldest first.
+     */
+
+    public synchronized int[] getMoveHistory() {
+        return Arrays.copyOf(history, historySize);
+    }
+
+    /**
+        * This method writes the legal moves as packed cell indices (row * size + col) into the buffer, in ascending order.
+        * It looks at the empty-cell mask 64 cells at a time and neither boxes nor allocates, so searches and playouts
+        * can call it with the same buffer at every node.
+        *
+        * @param moves the buffer, must hold at least as many moves as there are empty cells
+        * @return the number of legal moves, 0 if the game is over
+     */
+
+    public synchronized int legalMoves(int[] moves) {
+        if (gameState != GameState.PLAYING) {
+            return 0;
+        }
+        int count = size * size - moveCount;
+        if (moves.length < count) {
+            throw new IllegalArgumentException("buffer too small for " + count + " moves");
+        }
+        int index = 0;
+        for (int word = 0; word < emptyMask.length; word++) {
+            long bits = emptyMask[word];
+            while (bits != 0) {
+                moves[index++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+        * This method returns the first empty cell at or after the given packed cell index, for loops that play and take back
+        * every move in turn: for (int cell = model.nextEmptyCell(0); cell >= 0; cell = model.nextEmptyCell(cell + 1)).
+        *
+        * @return the packed cell index, or -1 if there is no empty cell from there on
+     */
+
+    public synchronized int nextEmptyCell(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int word = from >>> 6;
+        if (word >= emptyMask.length) {
+            return -1;
+        }
+        long bits = emptyMask[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == emptyMask.length) {
+                return -1;
+            }
+            bits = emptyMask[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+        * This method returns the n-th empty cell in ascending order, e.g. to pick a random move without a buffer.
+        * Whole words of the mask are skipped by their bit count.
+        *
+        * @param n the number of the empty cell, from 0 to the number of empty cells - 1
+        * @return the packed cell index, or -1 if there are not that many empty cells
+     */
+
+    public synchronized int emptyCell(int n) {
+        if (n < 0) {
+            return -1;
+        }
+        for (int word = 0; word < emptyMask.length; word++) {
+            long bits = emptyMask[word];
+            int count = Long.bitCount(bits);
+            if (n < count) {
+                for (; n > 0; n--) {
+                    bits &= bits - 1;
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            n -= count;
+        }
+        return -1;
+    }
+
+    /**
+        * This method returns the Zobrist hash of the position (stones and player to move).
+        * It is updated incrementally with every move, so it can be used as key of transposition tables.
+     */
+
+    public synchronized long getPositionHash() {
+        return positionHash;
+    }
+
+    /**
+        * The random number of a stone on a cell is derived from the cell and the player with the SplitMix64 finalizer
+        * instead of a table, so even the largest boards need no memory for it.
+     */
+
+    private static long cellHash(int cell, Player player) {
+        long z = (2L * cell + (player == Player.X ? 1 : 2)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long sideHash(Player player) {
+        return player == Player.O ? 0x2545F4914F6CDD1DL : 0;
+    }
+
     /**
         * This method checks the current game state to determine if there is a winner or if the game is a draw.
-        * It checks all possible winning combinations (rows, columns, diagonals) for the current player.
+        * Only the lines through the last move can have changed, so only those are checked for the current player.
      */
 
-    private void updateGameState() {
-        if (checkWin(currentPlayer) == true) {
+    private void updateGameState(int row, int col) {
+        if (checkWin(currentPlayer, row, col) == true) {
             gameState = (currentPlayer == Player.X) ? GameState.X_WINS : GameState.O_WINS;
         } else if (isBoardFull()) {
             gameState = GameState.DRAW;
@@ -100,23 +461,32 @@ public class GameModel extends AbstractGameModel {
     }
 
     /**
-        * This method checks if the current player has won the game by checking all possible winning combinations.
+        * This method checks if the player has won the game with a move on the given cell.
+        * It counts the symbols of the player in both directions of the row, the column and both diagonals through the cell.
         * It returns true if the player has won, false otherwise.
      */
 
-    private boolean checkWin(Player player) {
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            if (board[i][0] == player && board[i][1] == player && board[i][2] == player) return true;
+    private boolean checkWin(Player player, int row, int col) {
+        for (int[] direction : DIRECTIONS) {
+            int count = 1 + countInDirection(player, row, col, direction[0], direction[1])
+                    + countInDirection(player, row, col, -direction[0], -direction[1]);
+            if (count >= winLength) {
+                return true;
+            }
         }
+        return false; //wenn keine Bedingung erfüllt ist - hat der Spieler nicht gewonnen
+    }
 
-        for (int j = 0; j < BOARD_SIZE; j++) {
-            if (board[0][j] == player && board[1][j] == player && board[2][j] == player) return true;
+    private int countInDirection(Player player, int row, int col, int rowStep, int colStep) {
+        int count = 0;
+        int r = row + rowStep;
+        int c = col + colStep;
+        while (count < winLength && r >= 0 && r < size && c >= 0 && c < size && board[r][c] == player) {
+            count++;
+            r += rowStep;
+            c += colStep;
         }
-
-        if (board[0][0] == player && board[1][1] == player && board[2][2] == player) return true; //überprüft beide Diagonalen
-        if (board[0][2] == player && board[1][1] == player && board[2][0] == player) return true;
-
-        return false; //wenn keine Bedingung erfüllt ist - hat der Spieler nicht gewonnen
+        return count;
     }
 
 
@@ -126,14 +496,101 @@ public class GameModel extends AbstractGameModel {
      */
 
     private boolean isBoardFull() {
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                if (board[i][j] == Player.EMPTY) {
-                    return false;
+        return moveCount == size * size;
+    }
+
+    /**
+        * This method replaces the whole position, e.g. with the state sent by an authoritative server.
+        * Listeners are notified about every cell that changed. The move stack is cleared, so moves before it cannot be undone.
+        * The board must have the size of this model and the current player must be X or O.
+     */
+
+    public synchronized void restoreState(Player[][] cells, Player current, GameState state) {
+        if (cells.length != size || current == Player.EMPTY || state == null) {
+            throw new IllegalArgumentException("state does not fit this board");
+        }
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (cells[row].length != size) {
+                throw new IllegalArgumentException("state does not fit this board");
+            }
+            for (int col = 0; col < size; col++) {
+                Player player = cells[row][col];
+                if (player != Player.EMPTY) {
+                    count++;
+                }
+                if (board[row][col] != player) {
+                    board[row][col] = player;
+                    int cell = row * size + col;
+                    if (player == Player.EMPTY) {
+                        emptyMask[cell >>> 6] |= 1L << cell;
+                    } else {
+                        emptyMask[cell >>> 6] &= ~(1L << cell);
+                    }
+                    for (GameModelListener listener : listeners) {
+                        listener.onCellChanged(row, col, player);
+                    }
                 }
             }
         }
-        return true;
+        moveCount = count;
+        currentPlayer = current;
+        gameState = state;
+        // Die Zugfolge zum neuen Stand ist unbekannt: Stapel leeren und Hash neu berechnen
+        historySize = 0;
+        redoSize = 0;
+        positionHash = sideHash(current);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board[row][col] != Player.EMPTY) {
+                    positionHash ^= cellHash(row * size + col, board[row][col]);
+                }
+            }
+        }
+    }
+
+    /**
+        * This method applies one move sent by an authoritative server as delta and checks the result against the server's position.
+        * The move is played if the cell is still empty; a cell that is already taken is expected to hold the own move,
+        * which the client played before the server confirmed it.
+        * It returns false if the position now differs from the server's (hash, player to move or game state);
+        * the caller should then ask for a full snapshot.
+     */
+
+    public synchronized boolean applyDelta(int row, int col, Player current, GameState state, long expectedHash) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            return false;
+        }
+        if (board[row][col] == Player.EMPTY && !makeMove(row, col)) {
+            return false;
+        }
+        return positionHash == expectedHash && currentPlayer == current && gameState == state;
+    }
+
+    /**
+        * This method replaces the whole position like restoreState, but derives the game state from the board itself,
+        * e.g. for a position sent by a client that does not know or cannot be trusted with the state.
+        * A board on which both players have a line is rejected with an IllegalArgumentException.
+     */
+
+    public synchronized void restorePosition(Player[][] cells, Player current) {
+        restoreState(cells, current, GameState.PLAYING);
+        GameState state = isBoardFull() ? GameState.DRAW : GameState.PLAYING;
+        boolean xWins = false;
+        boolean oWins = false;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                Player player = board[row][col];
+                if (player != Player.EMPTY && !(player == Player.X ? xWins : oWins) && checkWin(player, row, col)) {
+                    xWins |= player == Player.X;
+                    oWins |= player == Player.O;
+                }
+            }
+        }
+        if (xWins && oWins) {
+            throw new IllegalArgumentException("both players have a line");
+        }
+        gameState = xWins ? GameState.X_WINS : (oWins ? GameState.O_WINS : state);
     }
 
     /**
@@ -144,9 +601,9 @@ public class GameModel extends AbstractGameModel {
      */
 
     public synchronized Player[][] getBoard() {   // Gibt eine Kopie des Spielfelds zurück, damit es von außen nicht versehentlich verändert wird
-        Player[][] boardCopy = new Player[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            boardCopy[i] = Arrays.copyOf(this.board[i], BOARD_SIZE);
+        Player[][] boardCopy = new Player[size][size];
+        for (int i = 0; i < size; i++) {
+            boardCopy[i] = Arrays.copyOf(this.board[i], size);
         }
         return boardCopy;
     }
@@ -159,6 +616,18 @@ public class GameModel extends AbstractGameModel {
         return board[row][col];
     }
 
+    public synchronized int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
     public static int getBoardSize() {
         return BOARD_SIZE;
     }
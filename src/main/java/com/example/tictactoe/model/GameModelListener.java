@@ -0,0 +1,14 @@
+package com.example.tictactoe.model;
+
+/**
+ * This interface is used to get notified about changes of a GameModel.
+ * The methods are called on the thread that changed the model, while the model is still locked,
+ * so implementations should only record the change and do the actual work later.
+ *
+ */
+
+public interface GameModelListener {
+    void onCellChanged(int row, int col, Player player);
+
+    void onBoardReset();
+}
@@ -0,0 +1,130 @@
+package com.example.tictactoe.network;
+
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+
+import java.util.Base64;
+
+/**
+ * This class converts a game position to the text payload of a STATE message and back.
+ * The payload has the form cells:currentPlayer:gameState, where cells contains one character per cell
+ * in row-major order ('X', 'O' or '.' for an empty cell).
+ * Snapshots use a packed form instead: two bits per cell (0 empty, 1 X, 2 O), four cells per byte, in Base64,
+ * which is about a third of the text form and contains no ':'.
+ *
+ */
+
+public final class BoardCodec {
+    private static final char EMPTY_CELL = '.';
+
+    private BoardCodec() {
+    }
+
+    public static String encodeState(GameModel model) {
+        synchronized (model) {
+            int size = model.getSize();
+            StringBuilder text = new StringBuilder(size * size + 16);
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    Player player = model.getPlayerAt(row, col);
+                    text.append(player == Player.EMPTY ? EMPTY_CELL : player.toString().charAt(0));
+                }
+            }
+            text.append(':').append(model.getCurrentPlayer().name()).append(':').append(model.getGameState().name());
+            return text.toString();
+        }
+    }
+
+    /**
+     * Packs the cells of the model for a SNAPSHOT. Must be called with the lock of the model, so the board matches
+     * the other fields of the snapshot.
+     */
+
+    public static String encodePacked(GameModel model) {
+        int size = model.getSize();
+        byte[] packed = new byte[(size * size + 3) / 4];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                Player player = model.getPlayerAt(row, col);
+                int cell = row * size + col;
+                int value = player == Player.X ? 1 : (player == Player.O ? 2 : 0);
+                packed[cell >>> 2] |= (byte) (value << ((cell & 3) << 1));
+            }
+        }
+        return Base64.getEncoder().withoutPadding().encodeToString(packed);
+    }
+
+    /**
+     * Unpacks the cells of a SNAPSHOT.
+     *
+     * @param size   the board size sent with the snapshot
+     * @param packed the packed cells
+     * @throws IllegalArgumentException if the size is outside 1..GameModel.MAX_BOARD_SIZE, the text is no valid Base64,
+     *                                  has the wrong length or contains an invalid cell
+     */
+
+    public static Player[][] decodePacked(int size, String packed) {
+        if (size < 1 || size > GameModel.MAX_BOARD_SIZE) { // die Größe kommt vom Peer, erst prüfen, dann Speicher anlegen
+            throw new IllegalArgumentException("invalid board size: " + size);
+        }
+        byte[] bytes = Base64.getDecoder().decode(packed);
+        if (bytes.length != ((long) size * size + 3) / 4) {
+            throw new IllegalArgumentException("packed cells do not fit the board size " + size);
+        }
+        Player[][] board = new Player[size][size];
+        for (int cell = 0; cell < size * size; cell++) {
+            int value = (bytes[cell >>> 2] >>> ((cell & 3) << 1)) & 3;
+            if (value == 3) {
+                throw new IllegalArgumentException("invalid packed cell: " + cell);
+            }
+            board[cell / size][cell % size] = value == 1 ? Player.X : (value == 2 ? Player.O : Player.EMPTY);
+        }
+        return board;
+    }
+
+    /**
+     * Decodes the cells of a STATE payload.
+     *
+     * @param cells the cell characters
+     * @return the board, the size is derived from the number of cells
+     * @throws IllegalArgumentException if the cells do not form a square board or contain unknown characters
+     */
+
+    public static Player[][] decodeCells(String cells) {
+        int size = (int) Math.round(Math.sqrt(cells.length()));
+        if (size * size != cells.length() || size == 0) {
+            throw new IllegalArgumentException("cells do not form a square board: " + cells.length());
+        }
+        Player[][] board = new Player[size][size];
+        for (int i = 0; i < cells.length(); i++) {
+            board[i / size][i % size] = decodeCell(cells.charAt(i));
+        }
+        return board;
+    }
+
+    private static Player decodeCell(char cell) {
+        switch (cell) {
+            case 'X':
+                return Player.X;
+            case 'O':
+                return Player.O;
+            case EMPTY_CELL:
+                return Player.EMPTY;
+            default:
+                throw new IllegalArgumentException("unknown cell: " + cell);
+        }
+    }
+
+    public static GameState decodeGameState(String text) {
+        return GameState.valueOf(text);
+    }
+
+    public static Player decodePlayer(String text) {
+        Player player = Player.valueOf(text);
+        if (player == Player.EMPTY) {
+            throw new IllegalArgumentException("player must be X or O");
+        }
+        return player;
+    }
+}
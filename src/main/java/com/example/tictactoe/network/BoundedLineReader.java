@@ -0,0 +1,88 @@
+package com.example.tictactoe.network;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * This class reads text lines like BufferedReader.readLine(), but never keeps more than the maximum line length in memory.
+ * A longer line is reported with a LineTooLongException as soon as the limit is exceeded; the next call skips the rest
+ * of that line first, so the reader stays at a line boundary and the connection can continue.
+ *
+ */
+
+public final class BoundedLineReader {
+    private final Reader in;
+    private final int maxLineLength;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder line = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean skipping;
+
+    public BoundedLineReader(Reader in, int maxLineLength) {
+        this.in = in;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * Reads the next line without the line terminator ("\n" or "\r\n").
+     *
+     * @return the line, or null at the end of the stream
+     * @throws LineTooLongException if the line is longer than the maximum length
+     * @throws IOException          if reading fails
+     */
+
+    public String readLine() throws IOException {
+        line.setLength(0);
+        while (true) {
+            if (position == limit) {
+                int read = in.read(buffer, 0, buffer.length);
+                if (read < 0) {
+                    limit = 0;
+                    position = 0;
+                    return line.length() > 0 && !skipping ? line.toString() : null; // letzte Zeile ohne Zeilenende
+                }
+                position = 0;
+                limit = read;
+            }
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            boolean complete = position < limit;
+            if (skipping) {
+                skipping = !complete;
+            } else {
+                line.append(buffer, start, position - start);
+                if (complete && line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+                    line.setLength(line.length() - 1);
+                }
+                if (line.length() > maxLineLength) {
+                    skipping = !complete;
+                    position += complete ? 1 : 0;
+                    line.setLength(0);
+                    throw new LineTooLongException(maxLineLength);
+                }
+                if (complete) {
+                    position++;
+                    return line.toString();
+                }
+            }
+            if (complete) {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * This exception reports a line that is longer than the maximum length. The line has been discarded.
+     */
+
+    public static final class LineTooLongException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LineTooLongException(int maxLineLength) {
+            super("line longer than " + maxLineLength + " characters");
+        }
+    }
+}
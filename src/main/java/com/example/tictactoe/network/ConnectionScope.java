@@ -0,0 +1,116 @@
+package com.example.tictactoe.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * This class owns the threads and resources of one run of a NetworkConnection, from the start until the close.
+ * Threads are only started through the scope and sockets are registered with it, so closing the connection
+ * is one shutdown() that closes every resource and interrupts every thread, and join() waits until the threads are gone.
+ * A resource that is registered after the shutdown, e.g. a socket whose connect finished just then, is closed at once
+ * and a thread is not started anymore, so nothing can outlive the connection.
+ *
+ * This is the structure of a StructuredTaskScope (fork, shutdown, join), written out because that API is still a preview.
+ *
+ */
+
+final class ConnectionScope {
+    private static final long JOIN_MILLIS = 2000;
+
+    private final List<Thread> threads = new ArrayList<>(2);
+    private final Deque<Closeable> resources = new ArrayDeque<>(2);
+    private boolean shutdown;
+
+    /**
+     * Starts a thread that belongs to the scope.
+     *
+     * @return false if the scope was already shut down, the task did not start
+     */
+
+    synchronized boolean fork(String name, Runnable task) {
+        if (shutdown) {
+            return false;
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Registers a resource that is closed on shutdown, the resources are closed in reverse order.
+     *
+     * @return false if the scope was already shut down, the resource was closed right away
+     */
+
+    boolean register(Closeable resource) {
+        synchronized (this) {
+            if (!shutdown) {
+                resources.push(resource);
+                return true;
+            }
+        }
+        closeQuietly(resource);
+        return false;
+    }
+
+    /**
+     * Closes all resources and interrupts all threads of the scope. Does not block, blocked reads of the threads
+     * fail because their sockets are closed.
+     */
+
+    void shutdown() {
+        List<Closeable> closing;
+        List<Thread> interrupting;
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            closing = new ArrayList<>(resources);
+            interrupting = new ArrayList<>(threads);
+            resources.clear();
+        }
+        closing.forEach(ConnectionScope::closeQuietly);
+        interrupting.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Waits until the threads of the scope have finished. The calling thread is skipped, a connection is often
+     * closed by its own listener thread.
+     */
+
+    void join() {
+        List<Thread> joining;
+        synchronized (this) {
+            joining = new ArrayList<>(threads);
+        }
+        for (Thread thread : joining) {
+            if (thread == Thread.currentThread()) {
+                continue;
+            }
+            try {
+                thread.join(JOIN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (thread.isAlive()) {
+                System.err.println("network: " + thread.getName() + " did not finish after the connection was closed");
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException e) {
+            System.err.println("error closing " + resource + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.tictactoe.network;
+
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.util.GameConfig;
+
+import java.util.Locale;
+
+/**
+ * This class protects a receiving connection against a peer that sends too much. Every connection has its own limiter:
+ * a token bucket limits the messages per second (with a burst for short peaks), the number of received messages whose
+ * listener callback has not run yet is bounded, and lines longer than the maximum are never buffered completely.
+ *
+ * What happens when a limit is reached is decided by the overflow policy: DROP discards the message, DISCONNECT closes
+ * the connection and THROTTLE stops reading until the limit allows the next message. Throttling only blocks the reader
+ * thread of this connection, the TCP window then fills up and slows the sender down, so other connections are not affected.
+ *
+ */
+
+public final class InboundLimiter {
+    public enum OverflowPolicy {
+        DROP, DISCONNECT, THROTTLE;
+
+        /**
+         * Parses a policy name from the configuration, e.g. "throttle".
+         *
+         * @throws IllegalArgumentException if the name is unknown
+         */
+
+        public static OverflowPolicy fromString(String text) {
+            return valueOf(text.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public enum Decision {
+        ACCEPT, DROP, DISCONNECT
+    }
+
+    private final OverflowPolicy policy;
+    private final double messagesPerNano;
+    private final int burst;
+    private final int maxQueuedMessages;
+    private final int maxLineLength;
+    private double tokens;
+    private long lastRefill;
+    private int queuedMessages;
+
+    /**
+     * @param policy             what to do when a limit is reached
+     * @param messagesPerSecond  the sustained rate of messages, 0 for no rate limit
+     * @param burst              the number of messages that may arrive at once after a quiet period
+     * @param maxQueuedMessages  the number of received messages that may wait for their callback
+     * @param maxLineLength      the maximum length of one message in characters
+     */
+
+    public InboundLimiter(OverflowPolicy policy, double messagesPerSecond, int burst, int maxQueuedMessages, int maxLineLength) {
+        if (burst < 1 || maxQueuedMessages < 1 || maxLineLength < 1 || messagesPerSecond < 0) {
+            throw new IllegalArgumentException("invalid limits");
+        }
+        this.policy = policy;
+        this.messagesPerNano = messagesPerSecond / 1e9;
+        this.burst = burst;
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.maxLineLength = maxLineLength;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Creates a limiter with the network.* settings of the configuration.
+     */
+
+    public static InboundLimiter fromConfig(GameConfig config) {
+        return fromConfig(config, 1);
+    }
+
+    /**
+     * Creates a limiter for a connection that carries the messages of up to the given number of players,
+     * e.g. a multiplexed connection: it may send as many messages per second as that many separate connections.
+     */
+
+    public static InboundLimiter fromConfig(GameConfig config, int players) {
+        return new InboundLimiter(config.getOverflowPolicy(), config.getRateLimit() * players,
+                (int) Math.min(Integer.MAX_VALUE, (long) config.getRateBurst() * players),
+                config.getMaxQueuedMessages(), config.getMaxLineLength());
+    }
+
+    /**
+     * Decides about one received message, called by the reader thread before the message is processed.
+     * With the THROTTLE policy the call waits until a token is available and the queue has room, so it always accepts.
+     *
+     * @return whether the message is processed, dropped, or the connection has to be closed
+     */
+
+    public Decision admit() {
+        try {
+            if (policy == OverflowPolicy.THROTTLE) {
+                long wait;
+                boolean throttled = false;
+                while ((wait = takeToken()) > 0) {
+                    throttled = true;
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+                synchronized (this) {
+                    while (queuedMessages >= maxQueuedMessages) {
+                        throttled = true;
+                        wait();
+                    }
+                }
+                if (throttled) {
+                    Metrics.NETWORK_READS_THROTTLED.increment();
+                }
+                return Decision.ACCEPT;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // die Verbindung wird gerade geschlossen
+            return Decision.DROP;
+        }
+        synchronized (this) {
+            if (queuedMessages < maxQueuedMessages && takeToken() == 0) {
+                return Decision.ACCEPT;
+            }
+        }
+        return overflow();
+    }
+
+    /**
+     * Decides about a message that broke a limit that cannot be waited for, e.g. a line that is too long.
+     * Only DISCONNECT closes the connection, the other policies drop the message.
+     */
+
+    public Decision overflow() {
+        if (policy == OverflowPolicy.DISCONNECT) {
+            Metrics.NETWORK_OVERFLOW_DISCONNECTS.increment();
+            return Decision.DISCONNECT;
+        }
+        Metrics.NETWORK_MESSAGES_DROPPED.increment();
+        return Decision.DROP;
+    }
+
+    /**
+     * Wraps the listener callback of an accepted message, so the message counts as queued until the callback has run.
+     */
+
+    public Runnable track(Runnable callback) {
+        synchronized (this) {
+            queuedMessages++;
+        }
+        return () -> {
+            try {
+                callback.run();
+            } finally {
+                synchronized (this) {
+                    queuedMessages--;
+                    notifyAll();
+                }
+            }
+        };
+    }
+
+    /**
+     * Takes one token from the bucket.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+     */
+
+    private synchronized long takeToken() {
+        if (messagesPerNano == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * messagesPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) ((1 - tokens) / messagesPerNano));
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+}
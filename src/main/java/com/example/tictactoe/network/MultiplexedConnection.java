@@ -0,0 +1,470 @@
+package com.example.tictactoe.network;
+
+import com.example.tictactoe.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class carries many independent channels over one TCP connection, e.g. hundreds of games of a bot farm
+ * or all games a router forwards to one shard. Every channel behaves like its own line based connection:
+ * a NetworkConnection can run on a channel instead of a socket, with its own listener and GameModel.
+ *
+ * The frames are text lines like the game protocol:
+ * OPEN:id opens a channel, DATA:id:message carries one message, WINDOW:id:n grants the sender n more messages
+ * and CLOSE:id closes the channel. The side that connected uses odd channel ids, the accepting side even ones,
+ * so both can open channels at the same time.
+ *
+ * Every received frame passes the InboundLimiter of the connection, and the peer can only open a limited number of channels,
+ * further OPEN frames are answered with CLOSE. So one client cannot open unlimited players or send at any rate.
+ *
+ * Flow control is per channel: a sender may only have as many unreleased messages in flight as the receiver granted.
+ * The receiver releases a message once it has handled it and grants new credit in batches, further messages wait in the
+ * sender's backlog. A slow channel therefore never blocks the shared reader thread or the other channels.
+ * The time of the last received frame and since when the connection has no channels are kept, so a server can close
+ * connections whose peer went silent or stopped playing.
+ *
+ */
+
+public class MultiplexedConnection {
+    private static final String OPEN = "OPEN";
+    private static final String DATA = "DATA";
+    private static final String WINDOW = "WINDOW";
+    private static final String CLOSE = "CLOSE";
+    private static final int BACKLOG_WINDOWS = 4;
+
+    /**
+     * This interface receives the messages of one channel. The methods run on the reader thread of the connection,
+     * only onClosed() runs on the closing thread when the connection is closed locally.
+     */
+
+    public interface ChannelHandler {
+        /**
+         * Handles one message. The handler must call Channel.release() once it is done with the message,
+         * possibly later on another thread, otherwise the sender runs out of credit.
+         */
+
+        void onLine(Channel channel, String line);
+
+        /**
+         * Called when the peer closed the channel or the whole connection ended, not after a local close().
+         */
+
+        void onClosed(Channel channel);
+    }
+
+    private final Socket socket;
+    private final PrintWriter out;
+    private final BoundedLineReader in;
+    private final InboundLimiter limiter;
+    private final int window;
+    private final int maxChannels;
+    private final Consumer<Channel> acceptor;
+    private final Map<Integer, Channel> channels = new ConcurrentHashMap<>();
+    private final boolean initiator;
+    private final List<Runnable> closeActions = new ArrayList<>();
+    private volatile boolean open = true;
+    private volatile long lastReceivedNanos = System.nanoTime();
+    private volatile long emptySinceNanos = System.nanoTime();
+    private int nextChannelId;
+
+    /**
+     * Creates a connection on which the peer may open any number of channels.
+     *
+     * @see #MultiplexedConnection(Socket, boolean, int, InboundLimiter, int, Consumer)
+     */
+
+    public MultiplexedConnection(Socket socket, boolean initiator, int window, InboundLimiter limiter, Consumer<Channel> acceptor) throws IOException {
+        this(socket, initiator, window, limiter, Integer.MAX_VALUE, acceptor);
+    }
+
+    /**
+     * @param socket      the connected socket
+     * @param initiator   true on the side that connected, it opens channels with odd ids
+     * @param window      the number of unreleased messages a channel may receive
+     * @param limiter     limits the frames per second and the line length; on overflow DISCONNECT closes the whole connection,
+     *                    DROP drops the frame and THROTTLE stops reading
+     * @param maxChannels the number of channels that may be open at the same time, further channels of the peer are refused
+     * @param acceptor    called on the reader thread for every channel the peer opens, it must set a handler;
+     *                    null if the peer may not open channels
+     * @throws IOException if the streams cannot be created
+     */
+
+    public MultiplexedConnection(Socket socket, boolean initiator, int window, InboundLimiter limiter, int maxChannels,
+                                 Consumer<Channel> acceptor) throws IOException {
+        if (window < 2 || maxChannels < 1) {
+            throw new IllegalArgumentException("window must be at least 2 and maxChannels at least 1");
+        }
+        this.socket = socket;
+        this.window = window;
+        this.maxChannels = maxChannels;
+        this.limiter = limiter;
+        this.acceptor = acceptor;
+        this.initiator = initiator;
+        this.nextChannelId = initiator ? 1 : 2;
+        this.out = new PrintWriter(socket.getOutputStream(), true);
+        this.in = new BoundedLineReader(new InputStreamReader(socket.getInputStream()), limiter.getMaxLineLength() + 32);
+        Metrics.ACTIVE_CONNECTIONS.increment();
+    }
+
+    /**
+     * Starts the reader thread.
+     */
+
+    public void start() {
+        Thread thread = new Thread(this::readLoop, "tictactoe_mux_thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Opens a new channel. The handler is set before the peer learns about the channel, so no message can be missed.
+     *
+     * @param handler receives the messages of the channel
+     * @return the channel
+     */
+
+    public Channel openChannel(ChannelHandler handler) {
+        Channel channel;
+        synchronized (this) {
+            channel = new Channel(nextChannelId);
+            nextChannelId += 2;
+        }
+        channel.handler = handler;
+        channels.put(channel.id, channel);
+        Metrics.MUX_CHANNELS.increment();
+        writeFrame(OPEN + ":" + channel.id);
+        return channel;
+    }
+
+    private void readLoop() {
+        try {
+            String frame;
+            while (open) {
+                try {
+                    frame = in.readLine();
+                } catch (BoundedLineReader.LineTooLongException e) {
+                    System.err.println("mux: " + e.getMessage());
+                    if (limiter.overflow() == InboundLimiter.Decision.DISCONNECT) {
+                        break;
+                    }
+                    continue;
+                }
+                if (frame == null) {
+                    break;
+                }
+                lastReceivedNanos = System.nanoTime();
+                Metrics.MESSAGES_RECEIVED.increment();
+                InboundLimiter.Decision decision = limiter.admit();
+                if (decision == InboundLimiter.Decision.DISCONNECT) {
+                    System.err.println("mux: peer exceeded the limits, disconnecting");
+                    break;
+                }
+                if (decision == InboundLimiter.Decision.ACCEPT) {
+                    handleFrame(frame);
+                }
+            }
+        } catch (IOException e) {
+            if (open) {
+                System.err.println("mux: read error: " + e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void handleFrame(String frame) {
+        int typeEnd = frame.indexOf(':');
+        int idEnd = typeEnd < 0 ? -1 : frame.indexOf(':', typeEnd + 1);
+        try {
+            String type = typeEnd < 0 ? frame : frame.substring(0, typeEnd);
+            int id = Integer.parseInt(idEnd < 0 ? frame.substring(typeEnd + 1) : frame.substring(typeEnd + 1, idEnd));
+            Channel channel = channels.get(id);
+            switch (type) {
+                case DATA:
+                    if (channel != null && idEnd > 0) {
+                        channel.received(frame.substring(idEnd + 1));
+                    }
+                    break;
+                case WINDOW:
+                    if (channel != null && idEnd > 0) {
+                        channel.grant(Integer.parseInt(frame.substring(idEnd + 1)));
+                    }
+                    break;
+                case CLOSE:
+                    if (channel != null) {
+                        channel.remoteClosed();
+                    }
+                    break;
+                case OPEN:
+                    accept(id, channel);
+                    break;
+                default:
+                    System.err.println("mux: unknown frame " + frame);
+                    Metrics.PARSE_ERRORS.increment();
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            System.err.println("mux: invalid frame " + frame);
+            Metrics.PARSE_ERRORS.increment();
+        }
+    }
+
+    private void accept(int id, Channel existing) {
+        boolean peerId = (id % 2 == 0) == initiator;
+        if (acceptor == null || existing != null || !peerId || channels.size() >= maxChannels) {
+            System.err.println("mux: refusing channel " + id);
+            writeFrame(CLOSE + ":" + id);
+            return;
+        }
+        Channel channel = new Channel(id);
+        channels.put(id, channel);
+        Metrics.MUX_CHANNELS.increment();
+        acceptor.accept(channel);
+        if (channel.handler == null) {
+            channel.close();
+        }
+    }
+
+    private boolean writeFrame(String frame) {
+        synchronized (out) {
+            if (!open) {
+                return false;
+            }
+            out.println(frame);
+            Metrics.MESSAGES_SENT.increment();
+            return !out.checkError();
+        }
+    }
+
+    /**
+     * Closes the connection. All channels are closed as if the peer had closed them.
+     */
+
+    public void close() {
+        synchronized (out) {
+            if (!open) {
+                return;
+            }
+            open = false;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("mux: error closing socket: " + e.getMessage());
+        }
+        Metrics.ACTIVE_CONNECTIONS.decrement();
+        for (Channel channel : new ArrayList<>(channels.values())) {
+            channel.remoteClosed();
+        }
+        List<Runnable> actions;
+        synchronized (out) {
+            actions = new ArrayList<>(closeActions);
+            closeActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+        System.out.println("mux: connection closed");
+    }
+
+    /**
+     * Runs the action once the connection is closed, on the closing thread; at once if it is already closed.
+     */
+
+    public void whenClosed(Runnable action) {
+        synchronized (out) {
+            if (open) {
+                closeActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Forgets a closed channel. Returns false if it was already forgotten.
+     */
+
+    private boolean forget(Channel channel) {
+        if (!channels.remove(channel.id, channel)) {
+            return false;
+        }
+        Metrics.MUX_CHANNELS.decrement();
+        if (channels.isEmpty()) {
+            emptySinceNanos = System.nanoTime();
+        }
+        return true;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * Returns the time of the last frame received from the peer, or of the connect, as a System.nanoTime() value.
+     */
+
+    public long getLastReceivedNanos() {
+        return lastReceivedNanos;
+    }
+
+    /**
+     * Returns since when the connection has no channels, as a System.nanoTime() value. Only meaningful while getChannelCount() is 0.
+     */
+
+    public long getEmptySinceNanos() {
+        return emptySinceNanos;
+    }
+
+    /**
+     * This class is one channel of the connection.
+     */
+
+    public final class Channel {
+        private final int id;
+        private final Queue<String> backlog = new ArrayDeque<>();
+        private volatile ChannelHandler handler;
+        private boolean channelOpen = true;
+        private int credits = window;
+        private int unreleased;
+        private int released;
+
+        private Channel(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Sets the handler of a channel the peer opened, must be called by the acceptor.
+         */
+
+        public void setHandler(ChannelHandler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Sends a message, or keeps it in the backlog until the peer grants credit.
+         *
+         * @return false if the channel is closed or the peer stopped releasing messages
+         */
+
+        public boolean send(String line) {
+            synchronized (this) {
+                if (!channelOpen) {
+                    return false;
+                }
+                if (credits > 0 && backlog.isEmpty()) {
+                    credits--;
+                    return writeFrame(DATA + ":" + id + ":" + line);
+                }
+                if (backlog.size() < BACKLOG_WINDOWS * window) {
+                    backlog.add(line);
+                    return true;
+                }
+            }
+            System.err.println("mux: channel " + id + " does not release its messages, closing it");
+            close();
+            return false;
+        }
+
+        private synchronized void grant(int count) {
+            credits += count;
+            while (credits > 0 && !backlog.isEmpty()) {
+                credits--;
+                writeFrame(DATA + ":" + id + ":" + backlog.poll());
+            }
+        }
+
+        private void received(String line) {
+            boolean withinWindow;
+            synchronized (this) {
+                if (!channelOpen) {
+                    return;
+                }
+                withinWindow = unreleased < window;
+                if (withinWindow) {
+                    unreleased++;
+                }
+            }
+            if (!withinWindow) {
+                System.err.println("mux: peer ignores the window of channel " + id + ", closing it");
+                Metrics.NETWORK_MESSAGES_DROPPED.increment();
+                remoteClosed();
+                writeFrame(CLOSE + ":" + id);
+                return;
+            }
+            handler.onLine(this, line);
+        }
+
+        /**
+         * Marks one received message as handled. Credit is granted back to the peer after half a window.
+         */
+
+        public void release() {
+            int grant = 0;
+            synchronized (this) {
+                unreleased--;
+                released++;
+                if (released >= window / 2) {
+                    grant = released;
+                    released = 0;
+                }
+                if (!channelOpen) {
+                    return;
+                }
+            }
+            if (grant > 0) {
+                writeFrame(WINDOW + ":" + id + ":" + grant);
+            }
+        }
+
+        /**
+         * Closes the channel and tells the peer. The handler is not called.
+         */
+
+        public void close() {
+            synchronized (this) {
+                if (!channelOpen) {
+                    return;
+                }
+                channelOpen = false;
+                backlog.clear();
+            }
+            forget(this);
+            writeFrame(CLOSE + ":" + id);
+        }
+
+        private void remoteClosed() {
+            synchronized (this) {
+                channelOpen = false;
+                backlog.clear();
+            }
+            if (forget(this)) {
+                ChannelHandler current = handler;
+                if (current != null) {
+                    current.onClosed(this);
+                }
+            }
+        }
+
+        public synchronized boolean isOpen() {
+            return channelOpen && open;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+}
@@ -13,7 +13,13 @@ public enum NetworkCommand {
     QUIT("QUIT"),
     ERROR("ERROR"),
     CONNECT("CONNECT"),
-    DISCONNECT("DISCONNECT");
+    DISCONNECT("DISCONNECT"),
+    STATE("STATE"),
+    JOIN("JOIN"),
+    HANDOFF("HANDOFF"),
+    SNAPSHOT("SNAPSHOT"),
+    DELTA("DELTA"),
+    SYNC("SYNC");
 
     private final String command;
 
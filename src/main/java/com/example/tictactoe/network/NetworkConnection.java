@@ -1,36 +1,64 @@
 package com.example.tictactoe.network;
 
+import com.example.tictactoe.jfr.ConnectionEvent;
+import com.example.tictactoe.jfr.NetworkMessageEvent;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
 import com.example.tictactoe.model.Player;
-import javafx.application.Platform;
+import com.example.tictactoe.util.ConfigService;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.Executor;
 
 /**
  * This class handles the network connection for the Tic Tac Toe game.
  * It allows for both server and client functionality, enabling two players to connect and play against each other.
  * The class uses sockets to establish a connection and communicate between the players.
  * It also provides methods to send and receive messages, including moves, resets, and quit commands.
+ * All listener callbacks are handed to a callback executor, e.g. Platform::runLater for the JavaFX client,
+ * so the class itself does not depend on JavaFX and can be used by headless servers and bots.
+ * Received messages pass an InboundLimiter first, so a peer that floods the connection cannot fill the callback executor
+ * or the memory; what happens on overflow is configured with network.overflowPolicy.
+ * Instead of its own socket a connection can also run on a channel of a MultiplexedConnection, e.g. one of many bots
+ * that share one connection to a server; the channel's flow control then bounds the received messages.
+ * An authoritative server sends a SNAPSHOT when a game starts and a DELTA per move afterwards. The connection checks
+ * that no delta is missing and asks for a new snapshot with SYNC otherwise; the listener checks the position of every delta.
+ * Every run of a connection owns a ConnectionScope with its sockets and threads; closeConnection() shuts the scope down,
+ * so nothing the connection started survives the close, even if the listener thread closes at the same time.
  */
 
 public class NetworkConnection {
     private final NetworkListener listener;
+    private final Executor callbackExecutor;
+    private final InboundLimiter limiter;
+    private final MultiplexedConnection multiplexer;
+    private MultiplexedConnection.Channel channel;
+    private MultiplexedConnection.Channel receivingChannel;
+    private boolean dispatched;
+    private long syncSequence = -1;
+    private boolean snapshotRequested;
     private Socket socket;
     private PrintWriter out;
-    private BufferedReader in;
-    private Thread listenerThread;
+    private InputStreamReader in;
+    private BoundedLineReader lines;
+    private ConnectionScope scope;
+    private volatile long lastReceivedNanos = System.nanoTime();
     private volatile boolean running = false;
     private final String opponentIp;
     private final int port;
     private Player localPlayer = null;
+    private boolean countedAsActive = false;
 
     /**
      * Constructor for the NetworkConnection class.
+     * The listener is called directly on the network threads.
      *
      * @param listener   the listener to handle network events
      * @param opponentIp the IP address of the opponent
@@ -38,49 +66,111 @@ public class NetworkConnection {
      */
 
     public NetworkConnection(NetworkListener listener, String opponentIp, int port) {
+        this(listener, opponentIp, port, Runnable::run);
+    }
+
+    /**
+     * Constructor for the NetworkConnection class.
+     *
+     * @param listener         the listener to handle network events
+     * @param opponentIp       the IP address of the opponent
+     * @param port             the port number to connect to
+     * @param callbackExecutor the executor that runs all listener callbacks
+     */
+
+    public NetworkConnection(NetworkListener listener, String opponentIp, int port, Executor callbackExecutor) {
+        this(listener, opponentIp, port, callbackExecutor, InboundLimiter.fromConfig(ConfigService.getDefault().get()));
+    }
+
+    /**
+     * Constructor for the NetworkConnection class.
+     *
+     * @param listener         the listener to handle network events
+     * @param opponentIp       the IP address of the opponent
+     * @param port             the port number to connect to
+     * @param callbackExecutor the executor that runs all listener callbacks
+     * @param limiter          the limits for received messages, used by this connection only
+     */
+
+    public NetworkConnection(NetworkListener listener, String opponentIp, int port, Executor callbackExecutor, InboundLimiter limiter) {
         if (listener == null) {
             throw new IllegalArgumentException("listener cannot be null");
         }
+        if (callbackExecutor == null) {
+            throw new IllegalArgumentException("callbackExecutor cannot be null");
+        }
         this.listener = listener;
+        this.callbackExecutor = callbackExecutor;
+        this.limiter = limiter;
+        this.multiplexer = null;
         this.opponentIp = opponentIp;
         this.port = port;
     }
 
+    /**
+     * Constructor for a connection that runs on a new channel of a multiplexed connection, opened by startClient().
+     *
+     * @param listener         the listener to handle network events
+     * @param multiplexer      the shared connection
+     * @param callbackExecutor the executor that runs all listener callbacks
+     */
+
+    public NetworkConnection(NetworkListener listener, MultiplexedConnection multiplexer, Executor callbackExecutor) {
+        if (listener == null || multiplexer == null || callbackExecutor == null) {
+            throw new IllegalArgumentException("listener, multiplexer and callbackExecutor cannot be null");
+        }
+        this.listener = listener;
+        this.callbackExecutor = callbackExecutor;
+        this.limiter = InboundLimiter.fromConfig(ConfigService.getDefault().get());
+        this.multiplexer = multiplexer;
+        this.opponentIp = null;
+        this.port = 0;
+    }
+
     /**
      * Starts the server to listen for incoming connections.
      * If the server is already running, an error message is sent to the listener.
      */
 
     public void startServer() {
-        if (running) {
-            listener.onError("Server is already running");
+        ConnectionScope created = null;
+        String refused;
+        synchronized (this) {
+            if (running) {
+                refused = "Server is already running";
+            } else if (multiplexer != null) {
+                refused = "a multiplexed connection cannot host a game";
+            } else {
+                refused = null;
+                this.localPlayer = Player.X;
+                running = true;
+                created = scope = new ConnectionScope();
+            }
+        }
+        if (refused != null) {
+            listener.onError(refused); // außerhalb der Sperre, der Listener darf selbst senden
             return;
         }
-        this.localPlayer = Player.X;
-        running = true;
+        ConnectionScope owner = created;
 
-        new Thread(() -> {
-            try(ServerSocket serverSocket = new ServerSocket(port)) {
+        owner.fork("tictactoe_server_thread", () -> {
+            try (ServerSocket serverSocket = new ServerSocket(port)) {
+                if (!owner.register(serverSocket)) {
+                    return;
+                }
                 System.out.println("server started on port " + port + ". waiting for client...");
-                socket = serverSocket.accept();
-                System.out.println("client connected from " + socket.getInetAddress());
-                setupStreams();
-                startListening();
-                Platform.runLater(() -> listener.onConnectionChanged(true, this.localPlayer));
-            } catch (IOException e) {
-                if (running) {
-                    System.err.println("server error: " + e.getMessage());
-                    Platform.runLater(() -> listener.onError("Server error: " + e.getMessage()));
-                    closeConnection(false);
+                callbackExecutor.execute(() -> listener.onListening(port));
+                Socket accepted = serverSocket.accept();
+                System.out.println("client connected from " + accepted.getInetAddress());
+                if (owner.register(accepted) && connected(owner, accepted)) {
+                    callbackExecutor.execute(() -> listener.onConnectionChanged(true, Player.X));
                 }
             } catch (Exception e) {
-                if (running) {
+                if (close(owner, false, () -> listener.onError("Server error: " + e.getMessage()))) {
                     System.err.println("server error: " + e.getMessage());
-                    Platform.runLater(() -> listener.onError("Server error: " + e.getMessage()));
-                    closeConnection(false);
                 }
             }
-        }, "tictactoe_server_thread").start();
+        });
     }
 
     /**
@@ -89,80 +179,181 @@ public class NetworkConnection {
      */
 
     public void startClient() {
-        if (running) {
+        ConnectionScope created = null;
+        boolean alreadyRunning;
+        synchronized (this) {
+            alreadyRunning = running;
+            if (!alreadyRunning) {
+                this.localPlayer = Player.O;
+                running = true;
+                if (multiplexer != null) {
+                    channel = multiplexer.openChannel(new ChannelListener());
+                } else {
+                    created = scope = new ConnectionScope();
+                }
+            }
+        }
+        if (alreadyRunning) {
             listener.onError("Client is already running");
             return;
         }
-        this.localPlayer = Player.O;
-        running = true;
-        new Thread(() -> {
-            try{
+        if (created == null) {
+            callbackExecutor.execute(() -> listener.onConnectionChanged(true, Player.O));
+            return;
+        }
+        ConnectionScope owner = created;
+        owner.fork("tictactoe_client_thread", () -> {
+            try {
                 System.out.println("attempting to connect to server" + opponentIp + ":" + port);
-                socket = new Socket(opponentIp, port);
+                Socket connecting = new Socket();
+                if (!owner.register(connecting)) {
+                    return;
+                }
+                connecting.connect(new InetSocketAddress(opponentIp, port)); // ein Schließen des Scopes bricht den Verbindungsaufbau ab
                 System.out.println("connected to server");
-                setupStreams();
-                startListening();
-                Platform.runLater(() -> listener.onConnectionChanged(true, this.localPlayer));
+                if (connected(owner, connecting)) {
+                    callbackExecutor.execute(() -> listener.onConnectionChanged(true, Player.O));
+                }
             } catch (UnknownHostException e) {
-                System.err.println("client error: unknown host: " + e.getMessage());
-                Platform.runLater(() -> listener.onError("unknown host: " + e.getMessage()));
-                closeConnection(false);
+                if (close(owner, false, () -> listener.onError("unknown host: " + e.getMessage()))) {
+                    System.err.println("client error: unknown host: " + e.getMessage());
+                }
             } catch (IOException e) {
-                if (running) {
+                if (close(owner, false, () -> listener.onError("could not connect to server: " + opponentIp + ": error" + e.getMessage()))) {
                     System.err.println("client error: " + e.getMessage());
-                    Platform.runLater(() -> listener.onError("could not connect to server: " + opponentIp + ": error" + e.getMessage()));
-                    closeConnection(false);
                 }
             } catch (Exception e) {
-                if (running) {
+                if (close(owner, false, () -> listener.onError("client error: " + e.getMessage()))) {
                     System.err.println("client error during startup: " + e.getMessage());
-                    Platform.runLater(() -> listener.onError("client error: " + e.getMessage()));
-                    closeConnection(false);
                 }
             }
-        }, "tictactoe_client_thread").start();
+        });
     }
 
     /**
-     * Sets up the input and output streams for communication.
+     * Takes over the socket of a started server or client once it is connected.
+     * If the connection was closed in the meantime the socket is not used; the scope has already closed it.
+     */
+
+    private synchronized boolean connected(ConnectionScope owner, Socket connectedSocket) throws IOException {
+        if (!running || scope != owner) {
+            return false;
+        }
+        socket = connectedSocket;
+        setupStreams();
+        startListening(owner);
+        return true;
+    }
+
+    /**
+     * Uses a socket that was already accepted by a server, e.g. by the GameServer for one seat of a session.
+     * Unlike startServer() and startClient() no connection event is sent to the listener, the caller knows about the new connection.
+     *
+     * @param acceptedSocket the connected socket
+     * @param player         the player this connection represents
+     * @throws IOException if the streams cannot be created
+     */
+
+    public synchronized void attach(Socket acceptedSocket, Player player) throws IOException {
+        if (running) {
+            throw new IllegalStateException("connection is already running");
+        }
+        this.socket = acceptedSocket;
+        this.localPlayer = player;
+        running = true;
+        scope = new ConnectionScope();
+        scope.register(acceptedSocket);
+        setupStreams();
+        startListening(scope);
+    }
+
+    /**
+     * Uses a channel the peer of a multiplexed connection opened, e.g. by the GameServer for one seat of a session.
+     * Like attach(Socket, Player) no connection event is sent to the listener.
+     *
+     * @param acceptedChannel the channel, its handler is set by this method
+     * @param player          the player this connection represents
+     */
+
+    public synchronized void attach(MultiplexedConnection.Channel acceptedChannel, Player player) {
+        if (running) {
+            throw new IllegalStateException("connection is already running");
+        }
+        this.channel = acceptedChannel;
+        this.localPlayer = player;
+        running = true;
+        lastReceivedNanos = System.nanoTime();
+        acceptedChannel.setHandler(new ChannelListener());
+    }
+
+    /**
+     * Sets up the input and output streams for communication. Called with the lock of the connection held.
      *
      * @throws IOException if an I/O error occurs
      */
 
     private void setupStreams() throws IOException {
         out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        in = new InputStreamReader(socket.getInputStream());
+        lines = new BoundedLineReader(in, limiter.getMaxLineLength());
+        Metrics.ACTIVE_CONNECTIONS.increment();
+        countedAsActive = true;
+        lastReceivedNanos = System.nanoTime();
+        commitConnectionEvent("OPEN", socket, localPlayer);
         System.out.println("input/output streams created");
     }
 
     /**
      * Starts the listener thread to read messages from the server.
-     * The thread runs in a loop, reading messages and processing them.
+     * The thread runs in a loop, reading messages and processing them. When it ends, for whatever reason, it closes
+     * the connection; if the connection was closed by someone else in the meantime the thread just finishes.
      */
 
-    private void startListening() {
-        listenerThread = new Thread(() -> {
+    private void startListening(ConnectionScope owner) {
+        BoundedLineReader reader = lines;
+        owner.fork("tictactoe_networklistener_thread", () -> {
+            IOException failure = null;
             try {
-                String messageFromServer;
-                while (running && (messageFromServer = in.readLine()) != null) {
-                    System.out.println("received message: " + messageFromServer);
-                    processMessage(messageFromServer);
+                while (running) {
+                    String messageFromServer;
+                    InboundLimiter.Decision decision;
+                    try {
+                        messageFromServer = reader.readLine();
+                        if (messageFromServer == null) {
+                            break;
+                        }
+                        System.out.println("received message: " + messageFromServer);
+                        Metrics.MESSAGES_RECEIVED.increment();
+                        lastReceivedNanos = System.nanoTime();
+                        decision = limiter.admit();
+                    } catch (BoundedLineReader.LineTooLongException e) {
+                        System.err.println("network: " + e.getMessage());
+                        messageFromServer = null;
+                        decision = limiter.overflow();
+                    }
+                    if (decision == InboundLimiter.Decision.DISCONNECT) {
+                        System.err.println("network: peer exceeded the limits, disconnecting");
+                        sendMessage(NetworkCommand.ERROR + ":too many or too long messages");
+                        break;
+                    }
+                    if (decision == InboundLimiter.Decision.ACCEPT) {
+                        processMessage(messageFromServer);
+                    }
                 }
             } catch (IOException e) { // Bei Interrupt wird catch Block ausgeführt
-                if (running) {
-                    System.err.println("network read error: " + e.getMessage());
-                    Platform.runLater(() -> listener.onError("connection lost: " + e.getMessage()));
-                    Platform.runLater(listener::onOpponentQuit);
-                }
+                failure = e;
             } finally {
-                if (running) {
-                    closeConnection(false);
+                IOException error = failure;
+                Runnable lost = error == null ? null : () -> {
+                    listener.onError("connection lost: " + error.getMessage());
+                    listener.onOpponentQuit();
+                };
+                if (close(owner, false, lost) && error != null) { // nur melden, wenn nicht schon jemand anderes geschlossen hat
+                    System.err.println("network read error: " + error.getMessage());
                 }
             }
             System.out.println("listener thread finished");
-        }, "tictactoe_networklistener_thread");
-        listenerThread.setDaemon(true);
-        listenerThread.start();
+        });
     }
 
     /**
@@ -174,12 +365,18 @@ public class NetworkConnection {
 
 
     private void processMessage(String message) {
+        long start = System.nanoTime();
+        NetworkMessageEvent event = new NetworkMessageEvent();
+        event.begin();
         try {
             String[] parts = message.split(":", 2);
             NetworkCommand command = NetworkCommand.fromString(parts[0]);
+            event.command = parts[0];
+            event.parseTime = System.nanoTime() - start;
 
             if (command == null) {
                 System.err.println("unknown command: " + parts[0]);
+                Metrics.PARSE_ERRORS.increment();
                 return;
             }
 
@@ -190,35 +387,155 @@ public class NetworkConnection {
                         if (coords.length == 2) {
                             int row = Integer.parseInt(coords[0]);
                             int col = Integer.parseInt(coords[1]);
-                            Platform.runLater(() -> listener.onMoveReceived(row, col));
+                            event.parseTime = System.nanoTime() - start;
+                            dispatch(() -> listener.onMoveReceived(row, col));
+                            event.dispatched = true;
                         } else {
                             System.err.println("invalid format: " + message);
+                            Metrics.PARSE_ERRORS.increment();
+                        }
+                    } else {
+                        System.err.println("invalid format: " + message);
+                        Metrics.PARSE_ERRORS.increment();
+                    }
+                    break;
+                }
+                case CONNECT: {
+                    if (parts.length == 2) {
+                        Player assignedPlayer = BoardCodec.decodePlayer(parts[1]);
+                        localPlayer = assignedPlayer;
+                        dispatch(() -> listener.onConnectionChanged(true, assignedPlayer));
+                        event.dispatched = true;
+                    } else {
+                        System.err.println("invalid format: " + message);
+                        Metrics.PARSE_ERRORS.increment();
+                    }
+                    break;
+                }
+                case STATE: {
+                    String[] fields = parts.length == 2 ? parts[1].split(":") : new String[0];
+                    if (fields.length == 3) {
+                        Player[][] board = BoardCodec.decodeCells(fields[0]);
+                        Player currentPlayer = BoardCodec.decodePlayer(fields[1]);
+                        GameState gameState = BoardCodec.decodeGameState(fields[2]);
+                        dispatch(() -> listener.onStateReceived(board, currentPlayer, gameState));
+                        event.dispatched = true;
+                    } else {
+                        System.err.println("invalid format: " + message);
+                        Metrics.PARSE_ERRORS.increment();
+                    }
+                    break;
+                }
+                case SNAPSHOT: {
+                    String[] fields = parts.length == 2 ? parts[1].split(":") : new String[0];
+                    if (fields.length == 5) {
+                        long sequence = Long.parseLong(fields[0]);
+                        Player[][] board = BoardCodec.decodePacked(Integer.parseInt(fields[1]), fields[2]);
+                        Player currentPlayer = BoardCodec.decodePlayer(fields[3]);
+                        GameState gameState = BoardCodec.decodeGameState(fields[4]);
+                        synchronized (this) {
+                            syncSequence = sequence;
+                            snapshotRequested = false;
                         }
+                        dispatch(() -> listener.onStateReceived(board, currentPlayer, gameState));
+                        event.dispatched = true;
                     } else {
                         System.err.println("invalid format: " + message);
+                        Metrics.PARSE_ERRORS.increment();
                     }
                     break;
                 }
+                case DELTA: {
+                    String[] fields = parts.length == 2 ? parts[1].split(":") : new String[0];
+                    if (fields.length == 6) {
+                        long sequence = Long.parseLong(fields[0]);
+                        int row = Integer.parseInt(fields[1]);
+                        int col = Integer.parseInt(fields[2]);
+                        Player currentPlayer = BoardCodec.decodePlayer(fields[3]);
+                        GameState gameState = BoardCodec.decodeGameState(fields[4]);
+                        long positionHash = Long.parseUnsignedLong(fields[5], 16);
+                        if (acceptDelta(sequence)) {
+                            dispatch(() -> listener.onDeltaReceived(row, col, currentPlayer, gameState, positionHash));
+                            event.dispatched = true;
+                        } else {
+                            System.err.println("missed a delta before " + sequence + ", requesting a snapshot");
+                            requestSnapshot();
+                        }
+                    } else {
+                        System.err.println("invalid format: " + message);
+                        Metrics.PARSE_ERRORS.increment();
+                    }
+                    break;
+                }
+                case SYNC: {
+                    dispatch(listener::onSyncRequested);
+                    event.dispatched = true;
+                    break;
+                }
+                case JOIN: {
+                    String[] fields = parts.length == 2 ? parts[1].split(":") : new String[0];
+                    if (fields.length == 2 || fields.length == 5) {
+                        long gameId = Long.parseLong(fields[0]);
+                        Player player = BoardCodec.decodePlayer(fields[1]);
+                        boolean restored = fields.length == 5;
+                        Player[][] board = restored ? BoardCodec.decodeCells(fields[2]) : null;
+                        Player currentPlayer = restored ? BoardCodec.decodePlayer(fields[3]) : null;
+                        GameState gameState = restored ? BoardCodec.decodeGameState(fields[4]) : null;
+                        dispatch(() -> listener.onJoinReceived(gameId, player, board, currentPlayer, gameState));
+                        event.dispatched = true;
+                    } else {
+                        System.err.println("invalid format: " + message);
+                        Metrics.PARSE_ERRORS.increment();
+                    }
+                    break;
+                }
+                case HANDOFF: {
+                    dispatch(listener::onHandoffRequested);
+                    event.dispatched = true;
+                    break;
+                }
+                case ERROR: {
+                    String errorMessage = parts.length == 2 ? parts[1] : "unknown error";
+                    dispatch(() -> listener.onError(errorMessage));
+                    event.dispatched = true;
+                    break;
+                }
                 case RESET: {
-                    Platform.runLater(listener::onResetReceived);
+                    dispatch(listener::onResetReceived);
+                    event.dispatched = true;
                     break;
                 }
                 case QUIT: {
-                    Platform.runLater(listener::onOpponentQuit);
+                    dispatch(listener::onOpponentQuit);
+                    event.dispatched = true;
                     closeConnection(false);
                     break;
                 }
                 default: {
                     System.err.println("unknown command: " + parts[0]);
+                    Metrics.PARSE_ERRORS.increment();
                 }
             }
         } catch (NumberFormatException e) {
             System.err.println("invalid format with coordinate: " + message + ": " + e.getMessage());
+            Metrics.PARSE_ERRORS.increment();
+        } catch (IllegalArgumentException e) {
+            System.err.println("invalid value in message: " + message + ": " + e.getMessage());
+            Metrics.PARSE_ERRORS.increment();
         } catch (ArrayIndexOutOfBoundsException e) {
             System.err.println("error parsing message structure " + message);
+            Metrics.PARSE_ERRORS.increment();
         } catch (Exception e) {
             System.err.println("error parsing message " + message + ": " + e.getMessage());
-            Platform.runLater(() -> listener.onError("error parsing message " + e.getMessage()));
+            Metrics.PARSE_ERRORS.increment();
+            callbackExecutor.execute(() -> listener.onError("error parsing message " + e.getMessage()));
+        } finally {
+            Metrics.PROCESS_LATENCY.recordSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.message = message;
+                event.commit();
+            }
         }
     }
     /**
@@ -229,10 +546,20 @@ public class NetworkConnection {
      */
 
     public synchronized boolean sendMessage(String message) {
+        if (channel != null) {
+            System.out.println("sending message: " + message);
+            boolean sent = channel.send(message);
+            Metrics.MESSAGES_SENT.increment();
+            return sent;
+        }
         if (out != null && !socket.isClosed()) {
             System.out.println("sending message: " + message);
+            long start = System.nanoTime();
             out.println(message);
-            return !out.checkError();
+            boolean sent = !out.checkError();
+            Metrics.SEND_LATENCY.recordSince(start);
+            Metrics.MESSAGES_SENT.increment();
+            return sent;
         } else {
             System.err.println("failed to send message, not connected");
             return false;
@@ -253,6 +580,101 @@ public class NetworkConnection {
         sendMessage(NetworkCommand.RESET.toString());
     }
 
+    /**
+     * Sends the complete position of the model, used by an authoritative server after every accepted move.
+     *
+     * @param model the model to send
+     */
+
+    public void sendState(GameModel model) {
+        sendMessage(NetworkCommand.STATE + ":" + BoardCodec.encodeState(model));
+    }
+
+    /**
+     * Sends the complete position as compact snapshot, used by an authoritative server when a game starts or a client resyncs.
+     *
+     * @param sequence the number of the last delta of the game, the next delta has sequence + 1
+     * @param model    the model to send
+     */
+
+    public void sendSnapshot(long sequence, GameModel model) {
+        String snapshot;
+        synchronized (model) {
+            snapshot = NetworkCommand.SNAPSHOT + ":" + sequence + ":" + model.getSize() + ":" + BoardCodec.encodePacked(model) + ":"
+                    + model.getCurrentPlayer().name() + ":" + model.getGameState().name();
+        }
+        sendMessage(snapshot);
+        Metrics.SYNC_SNAPSHOTS.increment();
+    }
+
+    /**
+     * Sends one accepted move with the position that results from it, so the client can check that its board did not drift.
+     *
+     * @param sequence the number of this delta, one more than the previous one
+     * @param model    the model after the move
+     */
+
+    public void sendDelta(long sequence, int row, int col, GameModel model) {
+        String delta;
+        synchronized (model) {
+            delta = NetworkCommand.DELTA + ":" + sequence + ":" + row + ":" + col + ":" + model.getCurrentPlayer().name() + ":"
+                    + model.getGameState().name() + ":" + Long.toHexString(model.getPositionHash());
+        }
+        sendMessage(delta);
+        Metrics.SYNC_DELTAS.increment();
+    }
+
+    /**
+     * Asks the server for a snapshot, e.g. because a delta did not match the local board. Deltas are ignored until
+     * the snapshot arrives; while a request is pending no second one is sent.
+     */
+
+    public synchronized void requestSnapshot() {
+        syncSequence = -1;
+        if (!snapshotRequested) {
+            snapshotRequested = true;
+            sendMessage(NetworkCommand.SYNC.toString());
+            Metrics.SYNC_REQUESTS.increment();
+        }
+    }
+
+    private synchronized boolean acceptDelta(long sequence) {
+        if (syncSequence < 0 || sequence != syncSequence + 1) {
+            return false;
+        }
+        syncSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Tells the peer which player it plays, used by an authoritative server when a session starts.
+     *
+     * @param player the player assigned to the peer
+     */
+
+    public void sendAssignedPlayer(Player player) {
+        sendMessage(NetworkCommand.CONNECT + ":" + player.name());
+    }
+
+    /**
+     * Confirms a JOIN of a shard server once both players of the game are seated, so the router may forward their messages.
+     */
+
+    public void sendJoined() {
+        sendMessage(NetworkCommand.JOIN.toString());
+    }
+
+    /**
+     * Confirms a HANDOFF request of the router. The confirmation for the second player carries the final position,
+     * the one for the first player has no payload.
+     *
+     * @param model the model whose position is handed over, or null
+     */
+
+    public void sendHandoff(GameModel model) {
+        sendMessage(model == null ? NetworkCommand.HANDOFF.toString() : NetworkCommand.HANDOFF + ":" + BoardCodec.encodeState(model));
+    }
+
     public void sendQuitAndClose() {
         if (running) {
             sendMessage(NetworkCommand.QUIT.toString());
@@ -262,61 +684,124 @@ public class NetworkConnection {
 
     /**
      * Closes the connection and cleans up resources.
+     * Returns once the threads of the connection have finished, unless it is called by one of them.
      *
      * @param notifyOpponent whether to notify the opponent about the disconnection
      */
 
-    public synchronized void closeConnection(boolean notifyOpponent) {
-        if (!running) {
-            return;
-        }
-        running = false;
+    public void closeConnection(boolean notifyOpponent) {
+        close(null, notifyOpponent, null);
+    }
 
-        System.out.println("closing connection");
+    /**
+     * Closes the connection exactly once, no matter how many threads try at the same time: the first caller
+     * closes the socket and the channel, releases the counters and tells the listener, all later callers return false.
+     * The threads of the connection pass their own scope, so a thread of an earlier run cannot close a new run.
+     *
+     * @param owner            the scope of the calling thread, or null for any caller
+     * @param notifyOpponent   whether to notify the opponent about the disconnection
+     * @param beforeDisconnect a listener callback that runs before onConnectionChanged(false), or null
+     * @return true if this call closed the connection
+     */
 
-        if (notifyOpponent && out != null && socket != null && !socket.isClosed()) {
-            out.println(NetworkCommand.QUIT.toString());
-        }
+    private boolean close(ConnectionScope owner, boolean notifyOpponent, Runnable beforeDisconnect) {
+        ConnectionScope closing;
+        Player previouslyAssignedPlayer;
+        synchronized (this) {
+            if (!running || (owner != null && owner != scope)) {
+                return false;
+            }
+            running = false;
 
-        if (listenerThread != null) {
-            listenerThread.interrupt(); // damit wird Interrupted IO Exception innerhalb vom listenerThread geworfen - Subklasse der IOException
-        }
-        try {
-            if (out != null) {
-                out.close();
+            System.out.println("closing connection");
+
+            if (channel != null) {
+                if (notifyOpponent) {
+                    channel.send(NetworkCommand.QUIT.toString());
+                }
+                channel.close(); // die übrigen Felder sind bei einem Kanal nicht gesetzt
             }
-        } catch (Exception e) {
-            System.err.println("error closing output stream: " + e.getMessage());
-        }
 
-        try {
-            if (in != null) {
-                in.close();
+            if (notifyOpponent && out != null && socket != null && !socket.isClosed()) {
+                out.println(NetworkCommand.QUIT.toString());
             }
-        } catch (IOException e) {
-            System.err.println("error closing input stream: " + e.getMessage());
-        }
 
-        try {
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
+            closing = scope;
+            scope = null;
+            if (closing != null) {
+                closing.shutdown(); // schließt den Socket, blockierte Lese- und Verbindungsaufrufe brechen damit ab
             }
-        } catch (IOException e) {
-            System.err.println("error closing socket: " + e.getMessage());
-        }
 
-        out = null;
-        in = null;
-        socket = null;
-        listenerThread = null;
-        Player previouslyAssignedPlayer = this.localPlayer;
-        this.localPlayer = null;
+            if (countedAsActive) {
+                Metrics.ACTIVE_CONNECTIONS.decrement();
+                countedAsActive = false;
+                commitConnectionEvent("CLOSE", socket, localPlayer);
+            }
 
-        Platform.runLater(() -> listener.onConnectionChanged(false, previouslyAssignedPlayer));
+            out = null;
+            in = null;
+            lines = null;
+            socket = null;
+            previouslyAssignedPlayer = this.localPlayer;
+            this.localPlayer = null;
+        }
+        // Erst nach der Sperre: ein Listener, der selbst sperrt und dann sendet, kann sonst verklemmen
+        if (beforeDisconnect != null) {
+            callbackExecutor.execute(beforeDisconnect);
+        }
+        callbackExecutor.execute(() -> listener.onConnectionChanged(false, previouslyAssignedPlayer));
+        if (closing != null) {
+            closing.join(); // außerhalb der Sperre, die Threads brauchen sie vielleicht noch für ihre letzte Nachricht
+        }
         System.out.println("connection closed");
+        return true;
+    }
+
+    /**
+     * Returns the time of the last received message, or of the connect if nothing has been received yet,
+     * as a System.nanoTime() value.
+     */
+
+    public long getLastReceivedNanos() {
+        return lastReceivedNanos;
+    }
+
+    /**
+     * Hands the listener callback of a received message to the callback executor, counted by the limiter until it has run.
+     */
+
+    private void dispatch(Runnable callback) {
+        Runnable tracked = limiter.track(callback);
+        MultiplexedConnection.Channel source = receivingChannel;
+        if (source == null) {
+            callbackExecutor.execute(tracked);
+            return;
+        }
+        dispatched = true;
+        callbackExecutor.execute(() -> {
+            try {
+                tracked.run();
+            } finally {
+                source.release(); // erst jetzt darf der Absender die nächste Nachricht schicken
+            }
+        });
+    }
+
+    private static void commitConnectionEvent(String action, Socket socket, Player player) {
+        ConnectionEvent event = new ConnectionEvent();
+        if (event.shouldCommit()) {
+            event.action = action;
+            event.remoteAddress = socket != null ? String.valueOf(socket.getRemoteSocketAddress()) : null;
+            event.localPlayer = player != null ? player.name() : null;
+            event.commit();
+        }
     }
 
     public boolean isRunning() {
+        MultiplexedConnection.Channel current = channel;
+        if (current != null) {
+            return running && current.isOpen();
+        }
         return running && socket != null && socket.isConnected() && !socket.isClosed();
     }
 
@@ -324,4 +809,41 @@ public class NetworkConnection {
         return localPlayer;
     }
 
+    /**
+     * This class receives the messages of the channel, on the reader thread of the multiplexed connection.
+     */
+
+    private final class ChannelListener implements MultiplexedConnection.ChannelHandler {
+        @Override
+        public void onLine(MultiplexedConnection.Channel source, String line) {
+            System.out.println("received message: " + line);
+            Metrics.MESSAGES_RECEIVED.increment();
+            lastReceivedNanos = System.nanoTime();
+            InboundLimiter.Decision decision = limiter.admit(); // dieselben Grenzen wie auf einer eigenen Verbindung
+            if (decision != InboundLimiter.Decision.ACCEPT) {
+                source.release();
+                if (decision == InboundLimiter.Decision.DISCONNECT) {
+                    System.err.println("network: peer exceeded the limits, disconnecting");
+                    sendMessage(NetworkCommand.ERROR + ":too many or too long messages");
+                    closeConnection(false);
+                }
+                return;
+            }
+            receivingChannel = source;
+            dispatched = false;
+            processMessage(line);
+            receivingChannel = null;
+            if (!dispatched) {
+                source.release();
+            }
+        }
+
+        @Override
+        public void onClosed(MultiplexedConnection.Channel source) {
+            if (running) {
+                closeConnection(false);
+            }
+        }
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.example.tictactoe.network;
 
+import com.example.tictactoe.model.GameState;
 import com.example.tictactoe.model.Player;
 
 public interface NetworkListener {
@@ -12,4 +13,22 @@ public interface NetworkListener {
     void onError(String message);
 
     void onOpponentQuit();
+
+    default void onStateReceived(Player[][] board, Player currentPlayer, GameState gameState) { // vollständiger Spielstand vom Server
+    }
+
+    default void onDeltaReceived(int row, int col, Player currentPlayer, GameState gameState, long positionHash) { // ein Zug vom Server, positionHash dient zur Prüfung
+    }
+
+    default void onSyncRequested() { // nur Server: der Client will einen vollständigen Snapshot
+    }
+
+    default void onListening(int port) { // wird aufgerufen, sobald der Server auf Verbindungen wartet
+    }
+
+    default void onJoinReceived(long gameId, Player player, Player[][] board, Player currentPlayer, GameState gameState) { // nur Shard-Server, board ist null bei einem neuen Spiel
+    }
+
+    default void onHandoffRequested() { // nur Shard-Server: das Spiel zieht auf einen anderen Shard um
+    }
 }
@@ -0,0 +1,75 @@
+package com.example.tictactoe.ratings;
+
+import java.util.List;
+
+/**
+ * This class is an immutable snapshot of all ratings, ordered by rating and indexed by name.
+ * The RatingsService publishes a new snapshot after every game; a reader keeps the one it got,
+ * so a leaderboard that is being rendered or saved never changes underneath it.
+ * All queries take O(log n) plus the number of returned players.
+ *
+ */
+
+public final class Leaderboard {
+    static final Leaderboard EMPTY = new Leaderboard(new RatingTree<>(Rating.BY_RATING), new RatingTree<>(Rating.BY_NAME));
+
+    private final RatingTree<Rating> byRating;
+    private final RatingTree<Rating> byName;
+
+    private Leaderboard(RatingTree<Rating> byRating, RatingTree<Rating> byName) {
+        this.byRating = byRating;
+        this.byName = byName;
+    }
+
+    /**
+     * Returns a snapshot in which the player has the given rating. The old entry of the player is replaced.
+     */
+
+    Leaderboard with(Rating rating) {
+        Rating old = byName.find(rating);
+        RatingTree<Rating> ordered = old == null ? byRating : byRating.without(old);
+        return new Leaderboard(ordered.with(rating), byName.with(rating));
+    }
+
+    /**
+     * Returns the rating of a player, or null if the player has not played yet.
+     */
+
+    public Rating get(String name) {
+        return byName.find(new Rating(name, 0, 0, 0, 0));
+    }
+
+    /**
+     * Returns the place of a player, 1 for the best player, or -1 if the player has not played yet.
+     */
+
+    public int rankOf(String name) {
+        Rating rating = get(name);
+        return rating == null ? -1 : byRating.rankOf(rating) + 1;
+    }
+
+    /**
+     * Returns the best players, the best first.
+     *
+     * @param count the number of players, fewer are returned if there are not as many
+     */
+
+    public List<Rating> top(int count) {
+        return byRating.range(0, count);
+    }
+
+    /**
+     * Returns the players from a place on, e.g. the page of a leaderboard.
+     *
+     * @param rank  the first place, 1 for the best player
+     * @param count the number of players
+     */
+
+    public List<Rating> page(int rank, int count) {
+        return byRating.range(rank - 1, count);
+    }
+
+    public int size() {
+        return byRating.size();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.tictactoe.ratings;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * This class is the immutable rating of one player: the Elo rating and the results it is based on.
+ * An update creates a new object, so a leaderboard snapshot never changes.
+ *
+ */
+
+public final class Rating {
+    /**
+     * The leaderboard order: highest rating first, players with the same rating by name.
+     */
+
+    static final Comparator<Rating> BY_RATING = Comparator.comparingDouble(Rating::getRating).reversed().thenComparing(Rating::getName);
+    static final Comparator<Rating> BY_NAME = Comparator.comparing(Rating::getName);
+
+    private final String name;
+    private final double rating;
+    private final int wins;
+    private final int draws;
+    private final int losses;
+
+    public Rating(String name, double rating, int wins, int draws, int losses) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.rating = rating;
+        this.wins = wins;
+        this.draws = draws;
+        this.losses = losses;
+    }
+
+    /**
+     * Returns the rating after one more game.
+     *
+     * @param newRating the rating after the game
+     * @param score     1 for a win, 0.5 for a draw, 0 for a loss
+     */
+
+    Rating after(double newRating, double score) {
+        return new Rating(name, newRating, wins + (score == 1 ? 1 : 0), draws + (score == 0.5 ? 1 : 0), losses + (score == 0 ? 1 : 0));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getDraws() {
+        return draws;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public int getGames() {
+        return wins + draws + losses;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Rating)) {
+            return false;
+        }
+        Rating that = (Rating) other;
+        return name.equals(that.name) && Double.compare(rating, that.rating) == 0
+                && wins == that.wins && draws == that.draws && losses == that.losses;
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode(); // auch die Priorität im RatingTree, damit ein Spieler seinen Platz im Baum behält
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %.0f (+%d =%d -%d)", name, rating, wins, draws, losses);
+    }
+}
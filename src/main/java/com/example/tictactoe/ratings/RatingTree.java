@@ -0,0 +1,214 @@
+package com.example.tictactoe.ratings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class is an immutable ordered set: a treap whose nodes know the size of their subtree.
+ * Every change copies only the nodes on the path to the changed element (O(log n) expected) and returns a new tree,
+ * the old tree stays valid and unchanged. Readers can therefore keep using a tree while a writer builds the next one,
+ * without any locks. The subtree sizes give the rank of an element and the element at a rank in O(log n).
+ *
+ * The priority of a node is derived from the hash of its element, so the shape of the tree does not depend on chance.
+ *
+ */
+
+final class RatingTree<T> {
+    private final Comparator<? super T> order;
+    private final Node<T> root;
+
+    RatingTree(Comparator<? super T> order) {
+        this(order, null);
+    }
+
+    private RatingTree(Comparator<? super T> order, Node<T> root) {
+        this.order = order;
+        this.root = root;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns a tree that contains the element. An equal element (by the order of the tree) is replaced.
+     */
+
+    RatingTree<T> with(T value) {
+        Split<T> lower = split(root, value, false);
+        Split<T> upper = split(lower.right, value, true); // entfernt ein gleiches Element
+        Node<T> single = new Node<>(value, priority(value), null, null);
+        return new RatingTree<>(order, merge(merge(lower.left, single), upper.right));
+    }
+
+    /**
+     * Returns a tree without the element, or this tree if it does not contain an equal element.
+     */
+
+    RatingTree<T> without(T value) {
+        if (find(value) == null) {
+            return this;
+        }
+        Split<T> lower = split(root, value, false);
+        Split<T> upper = split(lower.right, value, true);
+        return new RatingTree<>(order, merge(lower.left, upper.right));
+    }
+
+    /**
+     * Returns the element that is equal to the probe by the order of the tree, or null.
+     */
+
+    T find(T probe) {
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = order.compare(probe, node.value);
+            if (comparison == 0) {
+                return node.value;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements before the element, or -1 if the tree does not contain it.
+     */
+
+    int rankOf(T value) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = order.compare(value, node.value);
+            if (comparison == 0) {
+                return rank + size(node.left);
+            }
+            if (comparison < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the element at the rank (0 is the first).
+     *
+     * @throws IndexOutOfBoundsException if the rank is outside the tree
+     */
+
+    T get(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("rank " + rank + " of " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (rank == leftSize) {
+                return node.value;
+            }
+            if (rank < leftSize) {
+                node = node.left;
+            } else {
+                rank -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns up to count elements starting at the rank, in order.
+     */
+
+    List<T> range(int from, int count) {
+        List<T> values = new ArrayList<>(Math.max(0, Math.min(count, size() - from)));
+        collect(root, Math.max(0, from), Math.max(0, from) + Math.max(0, count), 0, values);
+        return values;
+    }
+
+    private static <T> void collect(Node<T> node, int from, int to, int offset, List<T> values) {
+        if (node == null || offset >= to || offset + node.size <= from) {
+            return;
+        }
+        int own = offset + size(node.left);
+        collect(node.left, from, to, offset, values);
+        if (own >= from && own < to) {
+            values.add(node.value);
+        }
+        collect(node.right, from, to, own + 1, values);
+    }
+
+    /**
+     * Splits a tree into the elements before the key and the rest; with inclusive the elements equal to the key
+     * go to the left part as well. Only the nodes on the search path are copied.
+     */
+
+    private Split<T> split(Node<T> node, T key, boolean inclusive) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+        int comparison = order.compare(node.value, key);
+        if (comparison < 0 || (inclusive && comparison == 0)) {
+            Split<T> rest = split(node.right, key, inclusive);
+            return new Split<>(new Node<>(node.value, node.priority, node.left, rest.left), rest.right);
+        }
+        Split<T> rest = split(node.left, key, inclusive);
+        return new Split<>(rest.left, new Node<>(node.value, node.priority, rest.right, node.right));
+    }
+
+    /**
+     * Joins two trees where every element of the left one comes before every element of the right one.
+     */
+
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return new Node<>(left.value, left.priority, left.left, merge(left.right, right));
+        }
+        return new Node<>(right.value, right.priority, merge(left, right.left), right.right);
+    }
+
+    private static int priority(Object value) {
+        long z = value.hashCode() * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (z ^ (z >>> 31));
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final int priority;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int size;
+
+        Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private static final class Split<T> {
+        private final Node<T> left;
+        private final Node<T> right;
+
+        Split(Node<T> left, Node<T> right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.tictactoe.ratings;
+
+import com.example.tictactoe.metrics.Counter;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps the Elo ratings of all players and updates them as games finish.
+ *
+ * Results are only queued by recordResult(), a single writer thread applies them one after another and publishes
+ * a new immutable Leaderboard after each; the thread that finished the game never waits for the update or for readers.
+ * Readers take the current Leaderboard without a lock and may query it as long as they like.
+ *
+ * Because snapshots never change, saving one needs no copy: the writer thread writes the current snapshot to a
+ * temporary file every few seconds and moves it over the old one, so the file is always complete.
+ * On start the last saved snapshot is loaded.
+ *
+ */
+
+public class RatingsService {
+    public static final double DEFAULT_INITIAL_RATING = 1500;
+    public static final double DEFAULT_K_FACTOR = 32;
+    public static final long DEFAULT_SNAPSHOT_SECONDS = 10;
+    private static final int MAGIC = 0x54545252; // "TTRR"
+    private static final int VERSION = 1;
+    private static final Counter GAMES_RATED = Metrics.registry().counter("ratings.games");
+    private static final Counter SNAPSHOTS_SAVED = Metrics.registry().counter("ratings.snapshots.saved");
+
+    private final double initialRating;
+    private final double kFactor;
+    private final Path snapshotFile;
+    private final long snapshotSeconds;
+    private final ScheduledExecutorService writer;
+    private volatile Leaderboard leaderboard = Leaderboard.EMPTY;
+    private Leaderboard saved = Leaderboard.EMPTY;
+
+    /**
+     * @param initialRating   the rating of a player in the first game
+     * @param kFactor         the maximum change of a rating by one game
+     * @param snapshotFile    the file the ratings are loaded from and saved to, null to keep them only in memory
+     * @param snapshotSeconds the interval between two saves, 0 to save only on stop()
+     */
+
+    public RatingsService(double initialRating, double kFactor, Path snapshotFile, long snapshotSeconds) {
+        this.initialRating = initialRating;
+        this.kFactor = kFactor;
+        this.snapshotFile = snapshotFile;
+        this.snapshotSeconds = snapshotSeconds;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_ratings_thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the last snapshot, if there is one, and starts saving periodically.
+     *
+     * @throws IOException if the snapshot file exists but cannot be read
+     */
+
+    public void start() throws IOException {
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            leaderboard = load(snapshotFile);
+            saved = leaderboard;
+            System.out.println("ratings: loaded " + leaderboard.size() + " players from " + snapshotFile);
+        }
+        if (snapshotFile != null && snapshotSeconds > 0) {
+            writer.scheduleWithFixedDelay(this::saveIfChanged, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Queues the result of a finished game. The ratings of both players change once the writer thread got to it.
+     *
+     * @param playerX the name of the player who played X
+     * @param playerO the name of the player who played O
+     * @param result  the final state of the game
+     * @throws IllegalArgumentException if the game is not over or both names are equal
+     */
+
+    public void recordResult(String playerX, String playerO, GameState result) {
+        if (!result.isGameOver()) {
+            throw new IllegalArgumentException("game is not over yet");
+        }
+        if (playerX.equals(playerO)) {
+            throw new IllegalArgumentException("a player cannot play against itself");
+        }
+        double scoreX = result == GameState.DRAW ? 0.5 : (result == GameState.X_WINS ? 1 : 0);
+        writer.execute(() -> apply(playerX, playerO, scoreX));
+    }
+
+    private void apply(String playerX, String playerO, double scoreX) {
+        Leaderboard current = leaderboard;
+        Rating x = ratingOf(current, playerX);
+        Rating o = ratingOf(current, playerO);
+        double expectedX = 1 / (1 + Math.pow(10, (o.getRating() - x.getRating()) / 400));
+        double change = kFactor * (scoreX - expectedX);
+        leaderboard = current.with(x.after(x.getRating() + change, scoreX)).with(o.after(o.getRating() - change, 1 - scoreX));
+        GAMES_RATED.increment();
+    }
+
+    private Rating ratingOf(Leaderboard current, String name) {
+        Rating rating = current.get(name);
+        return rating != null ? rating : new Rating(name, initialRating, 0, 0, 0);
+    }
+
+    /**
+     * Returns the current snapshot. It never changes, later results go into a new one.
+     */
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Returns a future that completes once all results queued before this call are in the leaderboard.
+     */
+
+    public CompletableFuture<Leaderboard> awaitUpdates() {
+        return CompletableFuture.supplyAsync(() -> leaderboard, writer);
+    }
+
+    /**
+     * Applies the queued results, saves the ratings and stops the writer thread.
+     */
+
+    public void stop() throws InterruptedException {
+        writer.execute(this::saveIfChanged);
+        writer.shutdown();
+        writer.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void saveIfChanged() {
+        Leaderboard current = leaderboard;
+        if (snapshotFile == null || current == saved) {
+            return;
+        }
+        try {
+            save(current, snapshotFile);
+            saved = current;
+            SNAPSHOTS_SAVED.increment();
+        } catch (IOException e) {
+            System.err.println("ratings: could not save " + snapshotFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file next to the target and moves it over the target.
+     */
+
+    static void save(Leaderboard snapshot, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Rating rating : snapshot.top(snapshot.size())) {
+                    out.writeUTF(rating.getName());
+                    out.writeDouble(rating.getRating());
+                    out.writeInt(rating.getWins());
+                    out.writeInt(rating.getDraws());
+                    out.writeInt(rating.getLosses());
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static Leaderboard load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a ratings file: " + file);
+            }
+            int count = in.readInt();
+            Leaderboard snapshot = Leaderboard.EMPTY;
+            for (int i = 0; i < count; i++) {
+                snapshot = snapshot.with(new Rating(in.readUTF(), in.readDouble(), in.readInt(), in.readInt(), in.readInt()));
+            }
+            return snapshot;
+        }
+    }
+}
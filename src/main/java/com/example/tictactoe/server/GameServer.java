@@ -0,0 +1,310 @@
+package com.example.tictactoe.server;
+
+import com.example.tictactoe.capture.TrafficCapture;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.network.InboundLimiter;
+import com.example.tictactoe.network.MultiplexedConnection;
+import com.example.tictactoe.network.NetworkConnection;
+import com.example.tictactoe.util.ConfigService;
+import com.example.tictactoe.util.GameConfig;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is an authoritative game server. Clients connect with the normal "Join Game" function,
+ * two waiting clients are paired into a GameSession from the SessionPool and the session decides which moves are valid.
+ * Listener callbacks of all connections run on a small shared thread pool, in order per connection.
+ * On the optional multiplexed port a client (e.g. a bot farm or a router) opens many channels over one connection,
+ * every channel is a player of its own, paired and played exactly like a separate connection.
+ * Connections that stay silent longer than server.idleTimeoutSeconds and games that run longer than server.maxSessionSeconds
+ * are closed by a SessionLifecycle, so a server that runs for days keeps a flat number of sockets, threads and sessions;
+ * so are multiplexed connections that stay silent or have no channel open for the idle timeout.
+ * stop() ends the running games and closes all connections.
+ * With setCapture() the traffic of all new sessions is recorded for a later replay.
+ *
+ */
+
+public class GameServer {
+    private final int port;
+    private final int multiplexPort;
+    private final SessionPool sessionPool;
+    private final ExecutorService callbackPool;
+    private final SessionLifecycle lifecycle;
+    private final Set<MultiplexedConnection> multiplexers = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = false;
+    private volatile TrafficCapture capture;
+    private ServerSocket serverSocket;
+    private ServerSocket multiplexSocket;
+    private PlayerSeat waitingSeat;
+
+    public GameServer(int port, SessionPool sessionPool) {
+        this(port, 0, sessionPool);
+    }
+
+    /**
+     * @param port          the port for normal connections, 0 for none
+     * @param multiplexPort the port for multiplexed connections, 0 for none
+     * @param sessionPool   the pool the sessions are taken from
+     */
+
+    public GameServer(int port, int multiplexPort, SessionPool sessionPool) {
+        this.port = port;
+        this.multiplexPort = multiplexPort;
+        this.sessionPool = sessionPool;
+        this.callbackPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "tictactoe_server_callback_thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lifecycle = new SessionLifecycle(ConfigService.getDefault()::get, callbackPool);
+    }
+
+    /**
+     * Binds the server socket and starts accepting clients on a background thread.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        if (port > 0) {
+            serverSocket = new ServerSocket(port);
+        }
+        if (multiplexPort > 0) {
+            multiplexSocket = new ServerSocket(multiplexPort);
+        }
+        running = true;
+        if (serverSocket != null) {
+            new Thread(() -> acceptLoop(serverSocket, false), "tictactoe_server_accept_thread").start();
+            System.out.println("game server started on port " + port);
+        }
+        if (multiplexSocket != null) {
+            new Thread(() -> acceptLoop(multiplexSocket, true), "tictactoe_server_accept_thread").start();
+            System.out.println("game server accepts multiplexed connections on port " + multiplexPort);
+        }
+    }
+
+    private void acceptLoop(ServerSocket listeningSocket, boolean multiplexed) {
+        while (running) {
+            try {
+                Socket socket = listeningSocket.accept();
+                System.out.println("server: client connected from " + socket.getInetAddress());
+                if (multiplexed) {
+                    handleMultiplexed(socket);
+                } else {
+                    handleAccepted(socket);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("server: accept failed: " + e.getMessage());
+                }
+            }
+        }
+        System.out.println("server: accept thread finished");
+    }
+
+    private void handleAccepted(Socket socket) {
+        PlayerSeat seat = new PlayerSeat(this);
+        NetworkConnection connection = new NetworkConnection(seat, null, port, new SerialExecutor(callbackPool));
+        seat.setConnection(connection);
+        try {
+            connection.attach(socket, null);
+        } catch (IOException e) {
+            System.err.println("server: could not set up connection: " + e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException closeException) {
+                System.err.println("server: error closing socket: " + closeException.getMessage());
+            }
+            return;
+        }
+        lifecycle.watch(seat);
+        accepted(seat);
+    }
+
+    /**
+     * Starts a multiplexed connection, every channel the client opens becomes a seat.
+     */
+
+    private void handleMultiplexed(Socket socket) {
+        GameConfig config = ConfigService.getDefault().get();
+        MultiplexedConnection multiplexer;
+        try {
+            int maxChannels = config.getServerMaxChannels();
+            multiplexer = new MultiplexedConnection(socket, false, config.getMaxQueuedMessages(),
+                    InboundLimiter.fromConfig(config, maxChannels), maxChannels, channel -> {
+                PlayerSeat seat = new PlayerSeat(this);
+                NetworkConnection connection = new NetworkConnection(seat, null, multiplexPort, new SerialExecutor(callbackPool));
+                seat.setConnection(connection);
+                connection.attach(channel, null);
+                lifecycle.watch(seat);
+                accepted(seat);
+            });
+        } catch (IOException e) {
+            System.err.println("server: could not set up multiplexed connection: " + e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException closeException) {
+                System.err.println("server: error closing socket: " + closeException.getMessage());
+            }
+            return;
+        }
+        multiplexers.add(multiplexer);
+        multiplexer.whenClosed(() -> multiplexers.remove(multiplexer));
+        if (!running) {
+            multiplexer.close(); // der Server wurde währenddessen gestoppt
+            return;
+        }
+        lifecycle.watch(multiplexer);
+        multiplexer.start();
+    }
+
+    /**
+     * Handles a seat whose connection is set up. The normal server pairs it with the next client.
+     */
+
+    void accepted(PlayerSeat seat) {
+        pair(seat);
+    }
+
+    /**
+     * Handles the JOIN of a cluster router. Only a ShardServer accepts it.
+     */
+
+    void join(PlayerSeat seat, long gameId, Player player, Player[][] board, Player currentPlayer, GameState gameState) {
+        System.err.println("server: JOIN received, but this server is not a shard");
+        seat.getConnection().sendMessage("ERROR:not a shard");
+        seat.getConnection().closeConnection(false);
+    }
+
+    /**
+     * Called after a seat has left its session or handed it over. The normal server has nothing to do.
+     */
+
+    void sessionChanged(PlayerSeat seat, GameSession session) {
+    }
+
+    /**
+     * Lets the seat wait for an opponent, or starts a session with the seat that is already waiting.
+     * Only the decision is made under the lock of the server; the seats are joined, the game is started and a rejected
+     * client is closed afterwards, because a seat calls removeWaiting() and closing a connection can take a while.
+     */
+
+    private void pair(PlayerSeat seat) {
+        PlayerSeat seatX;
+        GameSession session;
+        synchronized (this) {
+            if (waitingSeat == null || !waitingSeat.getConnection().isRunning()) {
+                waitingSeat = seat;
+                System.out.println("server: client waits for an opponent");
+                return;
+            }
+            session = acquireSession();
+            seatX = session == null ? null : waitingSeat;
+            if (session != null) {
+                waitingSeat = null;
+            }
+        }
+        if (session == null) {
+            System.err.println("server: no free session, rejecting client");
+            seat.getConnection().sendMessage("ERROR:server is full");
+            seat.getConnection().closeConnection(false);
+            return;
+        }
+        long id = session.getSessionId();
+        boolean seatedX = seatX.join(session, Player.X);
+        boolean seatedO = seat.join(session, Player.O);
+        if (!session.start(id, seatX.getConnection(), seat.getConnection())) {
+            // ein Spieler ist zwischen join() und start() gegangen, die Sitzung ist schon geschlossen
+            for (PlayerSeat remaining : new PlayerSeat[]{seatX, seat}) {
+                if (remaining.getConnection().isRunning()) {
+                    remaining.getConnection().sendQuitAndClose();
+                }
+            }
+            return;
+        }
+        if (!seatedX) {
+            session.handleLeave(id, Player.X); // der Spieler ist gegangen, während er noch wartete
+        }
+        if (!seatedO) {
+            session.handleLeave(id, Player.O);
+        }
+    }
+
+    /**
+     * Takes a session from the pool and starts its time limit.
+     *
+     * @return the session, or null if the pool has no free session
+     */
+
+    GameSession acquireSession() {
+        GameSession session = sessionPool.acquire();
+        if (session != null) {
+            lifecycle.limit(session);
+            session.setCapture(capture);
+        }
+        return session;
+    }
+
+    synchronized void removeWaiting(PlayerSeat seat) {
+        if (waitingSeat == seat) {
+            waitingSeat = null;
+            System.out.println("server: waiting client left");
+        }
+    }
+
+    public void stop() {
+        PlayerSeat waiting;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            for (ServerSocket listeningSocket : new ServerSocket[]{serverSocket, multiplexSocket}) {
+                try {
+                    if (listeningSocket != null) {
+                        listeningSocket.close();
+                    }
+                } catch (IOException e) {
+                    System.err.println("server: error closing server socket: " + e.getMessage());
+                }
+            }
+            waiting = waitingSeat;
+            waitingSeat = null;
+        }
+        if (waiting != null) {
+            waiting.getConnection().closeConnection(true);
+        }
+        for (GameSession session : sessionPool.sessionsInUse()) {
+            session.shutdown();
+        }
+        for (MultiplexedConnection multiplexer : new ArrayList<>(multiplexers)) {
+            multiplexer.close();
+        }
+        lifecycle.stop();
+        callbackPool.shutdown();
+        System.out.println("game server stopped");
+    }
+
+    /**
+     * Records the frames of all sessions started from now on, null stops recording new sessions.
+     */
+
+    public void setCapture(TrafficCapture capture) {
+        this.capture = capture;
+    }
+
+    public SessionPool getSessionPool() {
+        return sessionPool;
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.tictactoe.server;
+
+import com.example.tictactoe.capture.TrafficCapture;
+import com.example.tictactoe.metrics.Counter;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.network.NetworkCommand;
+import com.example.tictactoe.network.NetworkConnection;
+
+/**
+ * This class is one game between two connected players on an authoritative server.
+ * The session owns the GameModel: it validates every move, applies it and sends the accepted move to both players.
+ * The players get a snapshot of the whole position when the game starts, after a reset and when they ask for it;
+ * afterwards only numbered deltas, so the traffic grows with the moves and not with the board size.
+ * Sessions are recycled by the SessionPool, so every call carries the id of the game it belongs to
+ * and calls for an earlier game on the same object are ignored.
+ * On a shard of a cluster the players are seated one by one by the ShardServer, and a game can be handed over
+ * to another shard: after both players asked for the handoff, the final position is sent to the router and the session closes.
+ * A session that runs longer than server.maxSessionSeconds is ended by the server. However a game ends, close() releases
+ * everything the session holds (both connections, the time limit and the session itself) in one place.
+ * With a TrafficCapture every frame the players send is recorded together with its outcome.
+ *
+ */
+
+public class GameSession {
+    private static final Counter MOVES_REJECTED = Metrics.registry().counter("server.moves.rejected");
+
+    private final SessionPool pool;
+    private final GameModel gameModel;
+    private long sessionId;
+    private boolean open;
+    private boolean restored;
+    private long sequence;
+    private Player handoffRequestedBy;
+    private NetworkConnection seatX;
+    private NetworkConnection seatO;
+    private TimingWheel.Timeout deadline;
+    private TrafficCapture capture;
+
+    GameSession(SessionPool pool, GameModel gameModel) {
+        this.pool = pool;
+        this.gameModel = gameModel;
+    }
+
+    synchronized void open(long id) {
+        this.sessionId = id;
+        this.open = true;
+        this.restored = false;
+        this.sequence = 0;
+        this.handoffRequestedBy = null;
+        this.capture = null;
+        gameModel.resetGame();
+    }
+
+    /**
+     * Continues a game that was handed over by another shard.
+     *
+     * @throws IllegalArgumentException if the position does not fit the board of this session
+     */
+
+    synchronized void restore(Player[][] board, Player currentPlayer, GameState gameState) {
+        gameModel.restoreState(board, currentPlayer, gameState);
+        restored = true;
+        capture = null; // eine Aufzeichnung beginnt immer mit dem leeren Spielfeld
+    }
+
+    /**
+     * Seats one player of a sharded game. As soon as both players are seated the router gets a JOIN confirmation
+     * on both connections; a new game is started like on a normal server, a restored game just continues.
+     *
+     * @return false if the seat is already taken or the session was closed in between
+     */
+
+    synchronized boolean seat(long id, Player player, NetworkConnection connection) {
+        if (!isCurrent(id) || seatFor(player) != null) {
+            return false;
+        }
+        if (player == Player.X) {
+            seatX = connection;
+        } else {
+            seatO = connection;
+        }
+        if (seatX != null && seatO != null) {
+            seatX.sendJoined();
+            seatO.sendJoined();
+            if (restored) {
+                System.out.println("session " + sessionId + ": game taken over after " + gameModel.getMoveCount() + " moves");
+                broadcastSnapshot(); // die Nummerierung der Deltas beginnt auf diesem Shard neu
+            } else {
+                start(id, seatX, seatO);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts the game with the snapshot of the empty board and tells both players which side they play.
+     * The snapshot goes first, because a client may already move when it learns its side.
+     *
+     * @return false if a player left before the game started and the session is already closed
+     */
+
+    synchronized boolean start(long id, NetworkConnection playerX, NetworkConnection playerO) {
+        if (!isCurrent(id)) {
+            return false;
+        }
+        this.seatX = playerX;
+        this.seatO = playerO;
+        System.out.println("session " + sessionId + ": game started");
+        Metrics.GAMES_STARTED.increment();
+        if (capture != null) {
+            capture.recordStart(sessionId);
+        }
+        broadcastSnapshot();
+        seatX.sendAssignedPlayer(Player.X);
+        seatO.sendAssignedPlayer(Player.O);
+        return true;
+    }
+
+    /**
+     * Validates and applies a move. A rejected move is answered with a snapshot, so the sender can correct its board.
+     */
+
+    synchronized void handleMove(long id, Player player, int row, int col) {
+        if (!isCurrent(id)) {
+            return;
+        }
+        boolean accepted = false;
+        if (!gameModel.getGameState().isGameOver() && gameModel.getCurrentPlayer() == player) {
+            try {
+                accepted = gameModel.makeMove(row, col);
+            } catch (IllegalArgumentException e) {
+                accepted = false;
+            }
+        }
+        if (capture != null) {
+            capture.record(sessionId, player, NetworkCommand.MOVE + ":" + row + ":" + col, accepted ? outcome() : TrafficCapture.REJECTED);
+        }
+        if (accepted) {
+            sequence++;
+            seatX.sendDelta(sequence, row, col, gameModel);
+            seatO.sendDelta(sequence, row, col, gameModel);
+            if (gameModel.getGameState().isGameOver()) {
+                System.out.println("session " + sessionId + ": " + gameModel.getGameState().getMessage());
+            }
+        } else {
+            System.err.println("session " + sessionId + ": rejected move " + row + ", " + col + " from " + player);
+            MOVES_REJECTED.increment();
+            seatFor(player).sendSnapshot(sequence, gameModel);
+        }
+    }
+
+    synchronized void handleReset(long id, Player player) {
+        if (!isCurrent(id)) {
+            return;
+        }
+        System.out.println("session " + sessionId + ": reset requested by " + player);
+        gameModel.resetGame();
+        Metrics.GAMES_STARTED.increment();
+        if (capture != null) {
+            capture.record(sessionId, player, NetworkCommand.RESET.toString(), outcome());
+        }
+        seatFor(player.opponent()).sendReset(); // der anfragende Spieler hat sein Spielfeld schon selbst zurückgesetzt
+        broadcastSnapshot();
+    }
+
+    /**
+     * Sends a fresh snapshot to a player whose board drifted or who missed a delta.
+     */
+
+    synchronized void handleSync(long id, Player player) {
+        if (!isCurrent(id) || seatFor(player) == null) {
+            return;
+        }
+        System.out.println("session " + sessionId + ": snapshot requested by " + player);
+        if (capture != null) {
+            capture.record(sessionId, player, NetworkCommand.SYNC.toString(), outcome());
+        }
+        seatFor(player).sendSnapshot(sequence, gameModel);
+    }
+
+    /**
+     * Ends the session when one player leaves. The other player is told that the opponent quit
+     * and the session goes back to the pool.
+     */
+
+    synchronized void handleLeave(long id, Player player) {
+        if (!isCurrent(id)) {
+            return;
+        }
+        open = false;
+        System.out.println("session " + sessionId + ": player " + player + " left");
+        if (capture != null) {
+            capture.record(sessionId, player, NetworkCommand.QUIT.toString(), TrafficCapture.NONE);
+        }
+        NetworkConnection other = seatFor(player.opponent());
+        if (other != null) {
+            other.sendQuitAndClose();
+        }
+        NetworkConnection own = seatFor(player);
+        if (own != null) {
+            own.closeConnection(false);
+        }
+        close();
+    }
+
+    /**
+     * Ends the session when its time limit is reached. Both players get an error and their connections are closed.
+     *
+     * @return false if the game of the given id was already over
+     */
+
+    synchronized boolean expire(long id) {
+        if (!isCurrent(id)) {
+            return false;
+        }
+        System.out.println("session " + sessionId + ": time limit reached after " + gameModel.getMoveCount() + " moves");
+        end("time limit of the game reached");
+        return true;
+    }
+
+    /**
+     * Ends the running game because the server stops. Both players get an error and are disconnected.
+     */
+
+    synchronized void shutdown() {
+        if (open) {
+            System.out.println("session " + sessionId + ": server stops after " + gameModel.getMoveCount() + " moves");
+            end("server is shutting down");
+        }
+    }
+
+    private void end(String reason) {
+        for (NetworkConnection connection : new NetworkConnection[]{seatX, seatO}) {
+            if (connection != null) {
+                connection.sendMessage("ERROR:" + reason);
+                connection.closeConnection(false);
+            }
+        }
+        close();
+    }
+
+    /**
+     * Hands the game over to another shard. The router asks on both connections; the first request is only confirmed,
+     * moves of the other player are still applied until it asks as well. The second confirmation carries the final
+     * position, then both connections are closed without a QUIT and the session goes back to the pool.
+     */
+
+    synchronized void handleHandoff(long id, Player player) {
+        if (!isCurrent(id) || seatX == null || seatO == null || handoffRequestedBy == player) {
+            return;
+        }
+        if (handoffRequestedBy == null) {
+            handoffRequestedBy = player;
+            seatFor(player).sendHandoff(null);
+            return;
+        }
+        open = false;
+        System.out.println("session " + sessionId + ": game handed over after " + gameModel.getMoveCount() + " moves");
+        seatFor(player).sendHandoff(gameModel);
+        seatX.closeConnection(false);
+        seatO.closeConnection(false);
+        close();
+    }
+
+    /**
+     * Releases everything the game held and returns the session to the pool. The connections are already closed.
+     */
+
+    private void close() {
+        open = false;
+        seatX = null;
+        seatO = null;
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+        pool.release(this);
+    }
+
+    /**
+     * Records the frames of this game, set right after the session was taken from the pool.
+     *
+     * @param capture the capture, or null to record nothing
+     */
+
+    synchronized void setCapture(TrafficCapture capture) {
+        this.capture = capture;
+    }
+
+    private String outcome() {
+        return TrafficCapture.outcome(gameModel.getGameState(), gameModel.getPositionHash());
+    }
+
+    /**
+     * Sets the time limit of the game. If the game is already over the timeout is cancelled at once.
+     */
+
+    synchronized void setDeadline(long id, TimingWheel.Timeout timeout) {
+        if (!isCurrent(id)) {
+            timeout.cancel();
+            return;
+        }
+        deadline = timeout;
+    }
+
+    /**
+     * Returns the latest of the given time and the last message of both players, as a System.nanoTime() value.
+     */
+
+    synchronized long getLastActivityNanos(long id, long since) {
+        long latest = since;
+        if (isCurrent(id)) {
+            for (NetworkConnection connection : new NetworkConnection[]{seatX, seatO}) {
+                if (connection != null && connection.getLastReceivedNanos() - latest > 0) {
+                    latest = connection.getLastReceivedNanos();
+                }
+            }
+        }
+        return latest;
+    }
+
+    synchronized boolean isCurrentSession(long id) {
+        return isCurrent(id);
+    }
+
+    private boolean isCurrent(long id) {
+        return open && id == sessionId;
+    }
+
+    private NetworkConnection seatFor(Player player) {
+        return player == Player.X ? seatX : seatO;
+    }
+
+    private void broadcastSnapshot() {
+        seatX.sendSnapshot(sequence, gameModel);
+        seatO.sendSnapshot(sequence, gameModel);
+    }
+
+    synchronized long getSessionId() {
+        return sessionId;
+    }
+}
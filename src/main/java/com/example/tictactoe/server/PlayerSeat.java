@@ -0,0 +1,173 @@
+package com.example.tictactoe.server;
+
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import com.example.tictactoe.network.NetworkConnection;
+import com.example.tictactoe.network.NetworkListener;
+
+/**
+ * This class connects one client connection of the server to its GameSession.
+ * Until a second player arrives the seat waits in the GameServer and has no session.
+ * On a ShardServer the seat instead waits for the JOIN of the router, which names the game and the player.
+ * The idle timeout of the seat is cancelled as soon as its connection is closed.
+ *
+ */
+
+class PlayerSeat implements NetworkListener {
+    private final GameServer server;
+    private NetworkConnection connection;
+    private GameSession session;
+    private long sessionId;
+    private long gameId;
+    private Player player;
+    private TimingWheel.Timeout idleTimeout;
+    private boolean closed;
+    private boolean departed;
+
+    PlayerSeat(GameServer server) {
+        this.server = server;
+    }
+
+    void setConnection(NetworkConnection connection) {
+        this.connection = connection;
+    }
+
+    NetworkConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Seats the player in the session.
+     *
+     * @return false if the player already left while it had no session, the caller then ends the game for it
+     */
+
+    synchronized boolean join(GameSession session, Player player) {
+        if (departed) {
+            return false;
+        }
+        this.session = session;
+        this.sessionId = session.getSessionId();
+        this.player = player;
+        return true;
+    }
+
+    synchronized boolean join(GameSession session, Player player, long gameId) {
+        if (!join(session, player)) {
+            return false;
+        }
+        this.gameId = gameId;
+        return true;
+    }
+
+    synchronized long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Replaces the pending idle timeout of the seat. A timeout set after the connection was closed is cancelled at once.
+     */
+
+    synchronized void setIdleTimeout(TimingWheel.Timeout timeout) {
+        idleTimeout = timeout;
+        if (closed) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Returns when the seat or its opponent last sent a message, as a System.nanoTime() value.
+     * A player who waits for the move of the opponent is not idle.
+     */
+
+    synchronized long getLastActivityNanos() {
+        long own = connection.getLastReceivedNanos();
+        return session == null ? own : session.getLastActivityNanos(sessionId, own);
+    }
+
+    @Override
+    public synchronized void onMoveReceived(int row, int col) {
+        if (session != null) {
+            session.handleMove(sessionId, player, row, col);
+        }
+    }
+
+    @Override
+    public synchronized void onResetReceived() {
+        if (session != null) {
+            session.handleReset(sessionId, player);
+        }
+    }
+
+    @Override
+    public synchronized void onSyncRequested() {
+        if (session != null) {
+            session.handleSync(sessionId, player);
+        }
+    }
+
+    @Override
+    public void onJoinReceived(long gameId, Player player, Player[][] board, Player currentPlayer, GameState gameState) {
+        server.join(this, gameId, player, board, currentPlayer, gameState);
+    }
+
+    @Override
+    public void onHandoffRequested() {
+        GameSession handedOver;
+        synchronized (this) {
+            if (session == null) {
+                return;
+            }
+            session.handleHandoff(sessionId, player);
+            handedOver = session;
+        }
+        server.sessionChanged(this, handedOver); // außerhalb der Sperre des Sitzes, siehe ShardServer
+    }
+
+    @Override
+    public void onConnectionChanged(boolean connected, Player assignedPlayer) {
+        if (!connected) {
+            synchronized (this) {
+                closed = true;
+                if (idleTimeout != null) {
+                    idleTimeout.cancel();
+                    idleTimeout = null;
+                }
+            }
+            leave();
+        }
+    }
+
+    @Override
+    public void onError(String message) {
+        System.err.println("server: client error: " + message);
+    }
+
+    @Override
+    public void onOpponentQuit() {
+        leave();
+    }
+
+    /**
+     * Leaves the session, or the queue of the server if the seat has no session yet. The server is only called
+     * after the lock of the seat was released, because the server pairs seats while it holds its own lock.
+     */
+
+    private void leave() {
+        GameSession left;
+        synchronized (this) {
+            if (session == null) {
+                departed = true;
+                left = null;
+            } else {
+                session.handleLeave(sessionId, player);
+                left = session;
+            }
+        }
+        if (left == null) {
+            server.removeWaiting(this);
+        } else {
+            server.sessionChanged(this, left);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.tictactoe.server;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * This executor runs its tasks one after another in submission order on a shared executor.
+ * The server gives every connection its own SerialExecutor, so messages of one connection are handled in order
+ * without blocking a thread per connection and without running listener code on the network threads.
+ * A bot farm uses it the same way for the bots on a multiplexed connection.
+ *
+ */
+
+public class SerialExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor executor;
+    private Runnable active;
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(() -> {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            executor.execute(active);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.tictactoe.server;
+
+import com.example.tictactoe.metrics.Counter;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.network.MultiplexedConnection;
+import com.example.tictactoe.network.NetworkConnection;
+import com.example.tictactoe.util.GameConfig;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * This class reclaims connections and sessions that would otherwise live forever, e.g. because a peer vanished
+ * without closing its socket. Every seat has an idle timeout: if neither player of its game sent anything for that long,
+ * the connection is closed and the seat leaves like after a QUIT. Every session has an absolute time limit,
+ * after which the game is ended for both players. A multiplexed connection gets the idle timeout as well:
+ * it is closed, with its socket and reader thread, once its peer sent no frame or had no channel open for that long.
+ *
+ * All timeouts live in one TimingWheel. The idle timeout is not moved on every message; when it fires it looks at the
+ * time of the last message and schedules itself again for the rest, so a busy connection costs one timeout
+ * per idle interval. Timeouts of closed seats and sessions are cancelled, so the wheel only holds live ones.
+ * The limits are read from the configuration whenever a timeout is scheduled or fires, so a reloaded configuration
+ * applies to new seats and sessions at once and to waiting ones the next time their timeout fires.
+ *
+ */
+
+class SessionLifecycle {
+    private static final Counter IDLE_CLOSED = Metrics.registry().counter("server.connections.idleClosed");
+    private static final Counter SESSIONS_EXPIRED = Metrics.registry().counter("server.sessions.expired");
+    private static final long TICK_MILLIS = 250;
+    private static final int BUCKETS = 512;
+
+    private final Supplier<GameConfig> config;
+    private final TimingWheel wheel;
+
+    /**
+     * @param config   returns the current configuration, with server.idleTimeoutSeconds and server.maxSessionSeconds (0 for none)
+     * @param executor the executor that closes expired connections and sessions
+     */
+
+    SessionLifecycle(Supplier<GameConfig> config, Executor executor) {
+        this.config = config;
+        this.wheel = new TimingWheel("tictactoe_server_timeout_thread", TICK_MILLIS, BUCKETS, executor);
+    }
+
+    private long idleMillis() {
+        return TimeUnit.SECONDS.toMillis(config.get().getServerIdleTimeoutSeconds());
+    }
+
+    /**
+     * Starts the idle timeout of a new seat.
+     */
+
+    void watch(PlayerSeat seat) {
+        long idleMillis = idleMillis();
+        if (idleMillis > 0) {
+            seat.setIdleTimeout(wheel.schedule(idleMillis, () -> checkIdle(seat)));
+        }
+    }
+
+    private void checkIdle(PlayerSeat seat) {
+        NetworkConnection connection = seat.getConnection();
+        long idleMillis = idleMillis();
+        if (!connection.isRunning() || idleMillis <= 0) {
+            return;
+        }
+        long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seat.getLastActivityNanos());
+        if (idle < idleMillis) {
+            seat.setIdleTimeout(wheel.schedule(idleMillis - idle, () -> checkIdle(seat)));
+            return;
+        }
+        System.out.println("server: closing connection, nothing received for " + idle / 1000 + " s");
+        IDLE_CLOSED.increment();
+        connection.sendMessage("ERROR:idle timeout");
+        connection.closeConnection(false);
+    }
+
+    /**
+     * Starts the idle timeout of a new multiplexed connection. The timeout is cancelled when the connection closes.
+     */
+
+    void watch(MultiplexedConnection multiplexer) {
+        long idleMillis = idleMillis();
+        if (idleMillis > 0) {
+            AtomicReference<TimingWheel.Timeout> pending = new AtomicReference<>();
+            pending.set(wheel.schedule(idleMillis, () -> checkIdle(multiplexer, pending)));
+            multiplexer.whenClosed(() -> pending.get().cancel());
+        }
+    }
+
+    private void checkIdle(MultiplexedConnection multiplexer, AtomicReference<TimingWheel.Timeout> pending) {
+        long idleMillis = idleMillis();
+        if (!multiplexer.isOpen() || idleMillis <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long idle = TimeUnit.NANOSECONDS.toMillis(now - multiplexer.getLastReceivedNanos());
+        if (multiplexer.getChannelCount() == 0) {
+            idle = Math.max(idle, TimeUnit.NANOSECONDS.toMillis(now - multiplexer.getEmptySinceNanos()));
+        }
+        if (idle < idleMillis) {
+            pending.set(wheel.schedule(idleMillis - idle, () -> checkIdle(multiplexer, pending)));
+            if (!multiplexer.isOpen()) {
+                pending.get().cancel(); // in der Zwischenzeit geschlossen
+            }
+            return;
+        }
+        System.out.println("server: closing multiplexed connection, idle or without games for " + idle / 1000 + " s");
+        IDLE_CLOSED.increment();
+        multiplexer.close();
+    }
+
+    /**
+     * Starts the time limit of a session that was just taken from the pool.
+     */
+
+    void limit(GameSession session) {
+        long maxSessionMillis = TimeUnit.SECONDS.toMillis(config.get().getServerMaxSessionSeconds());
+        if (maxSessionMillis > 0) {
+            long id = session.getSessionId();
+            session.setDeadline(id, wheel.schedule(maxSessionMillis, () -> {
+                if (session.expire(id)) {
+                    SESSIONS_EXPIRED.increment();
+                }
+            }));
+        }
+    }
+
+    void stop() {
+        try {
+            wheel.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.tictactoe.server;
+
+import com.example.tictactoe.metrics.Counter;
+import com.example.tictactoe.metrics.Gauge;
+import com.example.tictactoe.metrics.Metrics;
+import com.example.tictactoe.model.GameModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class recycles GameSession objects together with their GameModel.
+ * Finished sessions are reset and kept for the next pair of players, so a high game churn does not allocate
+ * a new board per game. The number of sessions that are in use at the same time is limited.
+ *
+ */
+
+public class SessionPool {
+    private static final Gauge ACTIVE_SESSIONS = Metrics.registry().gauge("server.sessions.active");
+    private static final Counter SESSIONS_CREATED = Metrics.registry().counter("server.sessions.created");
+    private static final Counter SESSIONS_REUSED = Metrics.registry().counter("server.sessions.reused");
+
+    private final int boardSize;
+    private final int winLength;
+    private int maxSessions;
+    private final Deque<GameSession> idleSessions = new ArrayDeque<>();
+    private final Set<GameSession> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int activeSessions;
+    private long nextSessionId = 1;
+
+    public SessionPool(int boardSize, int winLength, int maxSessions) {
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Takes an idle session from the pool or creates a new one.
+     *
+     * @return the session, or null if the maximum number of sessions is in use
+     */
+
+    public synchronized GameSession acquire() {
+        if (activeSessions >= maxSessions) {
+            return null;
+        }
+        GameSession session = idleSessions.pollFirst();
+        if (session == null) {
+            session = new GameSession(this, new GameModel(boardSize, winLength));
+            SESSIONS_CREATED.increment();
+        } else {
+            SESSIONS_REUSED.increment();
+        }
+        activeSessions++;
+        ACTIVE_SESSIONS.set(activeSessions);
+        inUse.add(session);
+        session.open(nextSessionId++);
+        return session;
+    }
+
+    /**
+     * Returns a session to the pool. Called by the session itself once both players are gone.
+     *
+     * @param session the session to return
+     */
+
+    synchronized void release(GameSession session) {
+        inUse.remove(session);
+        activeSessions--;
+        ACTIVE_SESSIONS.set(activeSessions);
+        idleSessions.addFirst(session);
+    }
+
+    /**
+     * Returns the sessions that are in use right now, e.g. to end them when the server stops.
+     */
+
+    synchronized List<GameSession> sessionsInUse() {
+        return new ArrayList<>(inUse);
+    }
+
+    /**
+     * Changes the number of sessions that may be in use at the same time, e.g. after the configuration was reloaded.
+     * Sessions that are already in use beyond a lower limit keep running, only new ones are refused.
+     */
+
+    public synchronized void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public synchronized int getActiveSessions() {
+        return activeSessions;
+    }
+
+    public synchronized int getIdleSessions() {
+        return idleSessions.size();
+    }
+}
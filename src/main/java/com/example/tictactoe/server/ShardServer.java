@@ -0,0 +1,103 @@
+package com.example.tictactoe.server;
+
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is one shard of a game server cluster. Players do not connect directly, the ShardRouter opens one multiplexed
+ * connection to the shard and one channel per player, which it starts with a JOIN that names the game id and the player. Both connections of a game are seated
+ * in the same GameSession, the game itself runs exactly like on a normal GameServer.
+ * A JOIN can carry a position, then the game was handed over by another shard and continues from there.
+ *
+ */
+
+public class ShardServer extends GameServer {
+    private final Map<Long, ShardGame> games = new ConcurrentHashMap<>();
+
+    /**
+     * @param port        the port for the multiplexed connections of the routers
+     * @param sessionPool the pool the sessions are taken from
+     */
+
+    public ShardServer(int port, SessionPool sessionPool) {
+        super(0, port, sessionPool);
+    }
+
+    @Override
+    void accepted(PlayerSeat seat) {
+        // der Sitz wartet auf das JOIN des Routers
+    }
+
+    /**
+     * Seats the connection in the session of the game, the first JOIN of a game takes a session from the pool.
+     * The map is only changed inside compute(), no other lock is held there, so seats and sessions can call back freely.
+     */
+
+    @Override
+    void join(PlayerSeat seat, long gameId, Player player, Player[][] board, Player currentPlayer, GameState gameState) {
+        ShardGame game = games.compute(gameId, (id, existing) -> {
+            if (existing != null && existing.session.isCurrentSession(existing.sessionId)) {
+                return existing;
+            }
+            GameSession session = acquireSession();
+            if (session == null) {
+                return null;
+            }
+            if (board != null) {
+                try {
+                    session.restore(board, currentPlayer, gameState);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("shard: handed over position of game " + gameId + " does not fit: " + e.getMessage());
+                    session.handleLeave(session.getSessionId(), player);
+                    return null;
+                }
+            }
+            return new ShardGame(session, session.getSessionId());
+        });
+        if (game == null) {
+            reject(seat, "ERROR:shard is full");
+            return;
+        }
+        if (game.session.seat(game.sessionId, player, seat.getConnection())) {
+            if (!seat.join(game.session, player, gameId)) { // die Nachrichten dieses Sitzes laufen erst nach diesem Aufruf
+                game.session.handleLeave(game.sessionId, player); // die Verbindung wurde vor dem JOIN geschlossen
+                games.computeIfPresent(gameId, (id, current) -> current == game && !game.session.isCurrentSession(game.sessionId) ? null : current);
+            }
+        } else {
+            reject(seat, "ERROR:seat " + player + " of game " + gameId + " is not free");
+        }
+    }
+
+    private static void reject(PlayerSeat seat, String error) {
+        System.err.println("shard: " + error);
+        seat.getConnection().sendMessage(error);
+        seat.getConnection().closeConnection(false);
+    }
+
+    /**
+     * Forgets the game of the seat once its session has been closed.
+     */
+
+    @Override
+    void sessionChanged(PlayerSeat seat, GameSession session) {
+        games.computeIfPresent(seat.getGameId(), (id, game) ->
+                game.session == session && !session.isCurrentSession(game.sessionId) ? null : game);
+    }
+
+    public int getGameCount() {
+        return games.size();
+    }
+
+    private static final class ShardGame {
+        private final GameSession session;
+        private final long sessionId;
+
+        ShardGame(GameSession session, long sessionId) {
+            this.session = session;
+            this.sessionId = sessionId;
+        }
+    }
+}
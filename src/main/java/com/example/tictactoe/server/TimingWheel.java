@@ -0,0 +1,235 @@
+package com.example.tictactoe.server;
+
+import com.example.tictactoe.metrics.Gauge;
+import com.example.tictactoe.metrics.Metrics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is a hashed timing wheel for a large number of coarse timeouts, e.g. the idle and time limits of sessions.
+ * The wheel has a fixed number of buckets, one per tick; a timeout is put into the bucket of its deadline and remembers
+ * how many full turns of the wheel it still has to wait. Scheduling and cancelling take O(1) no matter how many timeouts
+ * are pending, and one thread serves all of them, instead of one scheduled task per connection.
+ *
+ * Only the wheel thread touches the buckets. Other threads hand new and cancelled timeouts over through queues,
+ * a cancelled timeout is unlinked at the next tick, so it does not stay in memory until its deadline.
+ * Expired timeouts run on the given executor, never on the wheel thread.
+ *
+ */
+
+final class TimingWheel {
+    private static final Gauge PENDING_TIMEOUTS = Metrics.registry().gauge("server.timeouts.pending");
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Executor executor;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+    private int pending;
+
+    /**
+     * @param name        the name of the wheel thread
+     * @param tickMillis  the resolution of the wheel, a timeout expires up to one tick late
+     * @param bucketCount the number of buckets, rounded up to a power of two
+     * @param executor    the executor that runs expired timeouts
+     */
+
+    TimingWheel(String name, long tickMillis, int bucketCount, Executor executor) {
+        if (tickMillis <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("tickMillis and bucketCount must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+        this.startNanos = System.nanoTime();
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules a task. It runs once, after the delay, unless the returned timeout is cancelled before.
+     *
+     * @param delayMillis the delay in milliseconds
+     * @param task        the task to run on the executor
+     */
+
+    Timeout schedule(long delayMillis, Runnable task) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        if (running) {
+            added.add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel thread. Pending timeouts are dropped.
+     */
+
+    void stop() throws InterruptedException {
+        running = false;
+        thread.interrupt();
+        thread.join();
+        PENDING_TIMEOUTS.set(0);
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    continue; // running ist dann false
+                }
+            }
+            removeCancelled();
+            transferAdded();
+            buckets[(int) (tick & mask)].expire();
+            tick++;
+            PENDING_TIMEOUTS.set(pending);
+        }
+        System.out.println("server: timing wheel stopped");
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.WAITING) {
+                continue;
+            }
+            long dueTick = Math.max(tick, (timeout.deadline - startNanos + tickNanos - 1) / tickNanos - 1);
+            timeout.rounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * This class is one scheduled task of the wheel.
+     */
+
+    final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long rounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout.
+         *
+         * @return false if the task already ran or was cancelled before
+         */
+
+        boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(WAITING, EXPIRED)) {
+                return;
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // der Server wird gerade beendet
+            }
+        }
+    }
+
+    /**
+     * This class is the doubly linked list of the timeouts of one tick, only used by the wheel thread.
+     */
+
+    private final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+            pending++;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+            pending--;
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout following = timeout.next;
+                if (timeout.rounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = following;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.tictactoe.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * This class keeps the current configuration as an immutable GameConfig snapshot.
+ * The file is read once; afterwards a daemon thread watches it with a WatchService and publishes a new snapshot
+ * whenever it changes. Readers only read a volatile field, so get() can be called on hot paths.
+ *
+ */
+
+public class ConfigService {
+    private static final String CONFIG_FILE = "config.properties";
+    private static volatile ConfigService defaultInstance;
+
+    private final Path file;
+    private final List<Consumer<GameConfig>> listeners = new CopyOnWriteArrayList<>();
+    private volatile GameConfig current;
+    private Thread watchThread;
+    private WatchService watchService;
+
+    public ConfigService(Path file) {
+        this.file = file.toAbsolutePath();
+        this.current = GameConfig.fromProperties(ConfigLoader.loadConfig(file.toString()));
+    }
+
+    /**
+     * Returns the shared service for config.properties in the working directory.
+     * The file is loaded on the first call.
+     *
+     * @return the shared config service
+     */
+
+    public static ConfigService getDefault() {
+        ConfigService instance = defaultInstance;
+        if (instance == null) {
+            synchronized (ConfigService.class) {
+                instance = defaultInstance;
+                if (instance == null) {
+                    instance = new ConfigService(Path.of(CONFIG_FILE));
+                    defaultInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    public GameConfig get() {
+        return current;
+    }
+
+    /**
+     * Registers a listener that is called with every newly published snapshot, on the watcher thread.
+     *
+     * @param listener the listener to add
+     */
+
+    public void addListener(Consumer<GameConfig> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<GameConfig> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reads the file again and publishes the new snapshot.
+     */
+
+    public void reload() {
+        GameConfig config = GameConfig.fromProperties(ConfigLoader.loadConfig(file.toString()));
+        current = config;
+        for (Consumer<GameConfig> listener : listeners) {
+            try {
+                listener.accept(config);
+            } catch (RuntimeException e) {
+                System.err.println("config listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts watching the directory of the config file. Calling it more than once has no effect.
+     */
+
+    public synchronized void startWatching() {
+        if (watchThread != null) {
+            return;
+        }
+        Path directory = file.getParent();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("could not watch config file " + file + ": " + e.getMessage());
+            return;
+        }
+        watchThread = new Thread(this::watchLoop, "tictactoe_config_watch_thread");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        System.out.println("watching config file " + file);
+    }
+
+    private void watchLoop() {
+        Path fileName = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    Thread.sleep(50); // Editoren schreiben oft in mehreren Schritten
+                    System.out.println("config file changed, reloading");
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            System.out.println("config watcher stopped");
+        }
+    }
+
+    public synchronized void stopWatching() {
+        if (watchThread == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("error closing config watcher: " + e.getMessage());
+        }
+        watchThread.interrupt();
+        watchThread = null;
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.tictactoe.util;
+
+import com.example.tictactoe.network.InboundLimiter;
+
+import java.util.Properties;
+
+/**
+ * This class is an immutable, already parsed snapshot of the configuration.
+ * Invalid values are reported once while parsing and replaced by their defaults,
+ * so code that reads the configuration never has to parse or validate anything.
+ *
+ */
+
+public final class GameConfig {
+    public static final String DEFAULT_OPPONENT_IP = "127.0.0.1";
+    public static final int DEFAULT_PORT = 54321;
+    public static final int DEFAULT_BOARD_SIZE = 3;
+    public static final int MAX_WIN_LENGTH = 5;
+    public static final String DEFAULT_RENDERER = "auto";
+    public static final long DEFAULT_METRICS_REPORT_SECONDS = 0;
+    public static final int DEFAULT_SERVER_MAX_SESSIONS = 256;
+    public static final long DEFAULT_AI_TIME_BUDGET_MILLIS = 1000;
+    public static final int DEFAULT_ANALYSIS_BATCH_SIZE = 32;
+    public static final int MIN_MAX_LINE_LENGTH = 1024;
+    public static final double DEFAULT_RATE_LIMIT = 1000;
+    public static final int DEFAULT_RATE_BURST = 100;
+    public static final int DEFAULT_MAX_QUEUED_MESSAGES = 256;
+    public static final int DEFAULT_HTTP_CACHE_ENTRIES = 100_000;
+    public static final long DEFAULT_SERVER_IDLE_TIMEOUT_SECONDS = 300;
+    public static final long DEFAULT_SERVER_MAX_SESSION_SECONDS = 3600;
+    public static final int DEFAULT_SERVER_MAX_CHANNELS = 512;
+    public static final InboundLimiter.OverflowPolicy DEFAULT_OVERFLOW_POLICY = InboundLimiter.OverflowPolicy.THROTTLE;
+
+    private final Properties properties;
+    private final String opponentIp;
+    private final int networkPort;
+    private final int boardSize;
+    private final int winLength;
+    private final String rendererType;
+    private final long metricsReportSeconds;
+    private final int serverMaxSessions;
+    private final long aiTimeBudgetMillis;
+    private final int analysisBatchSize;
+    private final int maxLineLength;
+    private final double rateLimit;
+    private final int rateBurst;
+    private final int maxQueuedMessages;
+    private final InboundLimiter.OverflowPolicy overflowPolicy;
+    private final int httpEngines;
+    private final int httpCacheEntries;
+    private final long serverIdleTimeoutSeconds;
+    private final long serverMaxSessionSeconds;
+    private final int serverMaxChannels;
+
+    private GameConfig(Properties properties) {
+        this.properties = properties;
+        this.opponentIp = properties.getProperty("opponent.ip", DEFAULT_OPPONENT_IP);
+        this.networkPort = parseInt(properties, "network.port", DEFAULT_PORT, 1, 65535);
+        int size = parseInt(properties, "board.size", DEFAULT_BOARD_SIZE, 1, 1000);
+        int win = parseInt(properties, "board.winLength", Math.min(size, MAX_WIN_LENGTH), 1, Integer.MAX_VALUE);
+        if (win > size) {
+            System.out.println("invalid board size or win length");
+            size = DEFAULT_BOARD_SIZE;
+            win = DEFAULT_BOARD_SIZE;
+        }
+        this.boardSize = size;
+        this.winLength = win;
+        this.rendererType = properties.getProperty("board.renderer", DEFAULT_RENDERER);
+        this.metricsReportSeconds = parseLong(properties, "metrics.report.seconds", DEFAULT_METRICS_REPORT_SECONDS, 0);
+        this.serverMaxSessions = parseInt(properties, "server.maxSessions", DEFAULT_SERVER_MAX_SESSIONS, 1, Integer.MAX_VALUE);
+        this.aiTimeBudgetMillis = parseLong(properties, "ai.timeBudgetMillis", DEFAULT_AI_TIME_BUDGET_MILLIS, 1);
+        this.analysisBatchSize = parseInt(properties, "analysis.batchSize", DEFAULT_ANALYSIS_BATCH_SIZE, 1, Integer.MAX_VALUE);
+        // ein STATE mit dem ganzen Spielfeld muss immer in eine Zeile passen
+        this.maxLineLength = parseInt(properties, "network.maxLineLength", Math.max(MIN_MAX_LINE_LENGTH, size * size + 64),
+                size * size + 64, Integer.MAX_VALUE);
+        this.rateLimit = parseLong(properties, "network.rateLimit", (long) DEFAULT_RATE_LIMIT, 0);
+        this.rateBurst = parseInt(properties, "network.rateBurst", DEFAULT_RATE_BURST, 1, Integer.MAX_VALUE);
+        this.maxQueuedMessages = parseInt(properties, "network.maxQueuedMessages", DEFAULT_MAX_QUEUED_MESSAGES, 1, Integer.MAX_VALUE);
+        this.overflowPolicy = parsePolicy(properties.getProperty("network.overflowPolicy"));
+        this.httpEngines = parseInt(properties, "http.engines", Runtime.getRuntime().availableProcessors(), 1, Integer.MAX_VALUE);
+        this.httpCacheEntries = parseInt(properties, "http.cacheEntries", DEFAULT_HTTP_CACHE_ENTRIES, 0, Integer.MAX_VALUE);
+        this.serverIdleTimeoutSeconds = parseLong(properties, "server.idleTimeoutSeconds", DEFAULT_SERVER_IDLE_TIMEOUT_SECONDS, 0);
+        this.serverMaxSessionSeconds = parseLong(properties, "server.maxSessionSeconds", DEFAULT_SERVER_MAX_SESSION_SECONDS, 0);
+        this.serverMaxChannels = parseInt(properties, "server.maxChannelsPerConnection", DEFAULT_SERVER_MAX_CHANNELS, 1, Integer.MAX_VALUE);
+    }
+
+    private static InboundLimiter.OverflowPolicy parsePolicy(String value) {
+        if (value == null) {
+            return DEFAULT_OVERFLOW_POLICY;
+        }
+        try {
+            return InboundLimiter.OverflowPolicy.fromString(value);
+        } catch (IllegalArgumentException e) {
+            System.out.println("invalid value for network.overflowPolicy: " + value + ", using " + DEFAULT_OVERFLOW_POLICY);
+            return DEFAULT_OVERFLOW_POLICY;
+        }
+    }
+
+    /**
+     * Creates a snapshot from the given properties. The properties are copied, later changes have no effect.
+     *
+     * @param properties the raw properties
+     * @return the parsed configuration
+     */
+
+    public static GameConfig fromProperties(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return new GameConfig(copy);
+    }
+
+    public static GameConfig defaults() {
+        return new GameConfig(new Properties());
+    }
+
+    private static int parseInt(Properties properties, String key, int defaultValue, int min, int max) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // fällt unten auf den Standardwert zurück
+        }
+        System.out.println("invalid value for " + key + ": " + value + ", using " + defaultValue);
+        return defaultValue;
+    }
+
+    private static long parseLong(Properties properties, String key, long defaultValue, long min) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed >= min) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // fällt unten auf den Standardwert zurück
+        }
+        System.out.println("invalid value for " + key + ": " + value + ", using " + defaultValue);
+        return defaultValue;
+    }
+
+    public String getOpponentIp() {
+        return opponentIp;
+    }
+
+    public int getNetworkPort() {
+        return networkPort;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public String getRendererType() {
+        return rendererType;
+    }
+
+    public long getMetricsReportSeconds() {
+        return metricsReportSeconds;
+    }
+
+    public int getServerMaxSessions() {
+        return serverMaxSessions;
+    }
+
+    public long getAiTimeBudgetMillis() {
+        return aiTimeBudgetMillis;
+    }
+
+    public int getAnalysisBatchSize() {
+        return analysisBatchSize;
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * Returns the number of messages per second one connection may send, 0 means no limit.
+     */
+
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public int getRateBurst() {
+        return rateBurst;
+    }
+
+    public int getMaxQueuedMessages() {
+        return maxQueuedMessages;
+    }
+
+    public InboundLimiter.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getHttpEngines() {
+        return httpEngines;
+    }
+
+    public int getHttpCacheEntries() {
+        return httpCacheEntries;
+    }
+
+    /**
+     * Returns after how many seconds without a message from either player a server closes a connection, 0 for never.
+     */
+
+    public long getServerIdleTimeoutSeconds() {
+        return serverIdleTimeoutSeconds;
+    }
+
+    /**
+     * Returns after how many seconds a server ends a game, no matter whether it is still played, 0 for never.
+     */
+
+    public long getServerMaxSessionSeconds() {
+        return serverMaxSessionSeconds;
+    }
+
+    /**
+     * Returns how many channels, i.e. players, a client may open on one multiplexed connection of a server.
+     */
+
+    public int getServerMaxChannels() {
+        return serverMaxChannels;
+    }
+
+    /**
+     * Returns a raw value for settings that have no typed getter.
+     *
+     * @param key          the property key
+     * @param defaultValue the value to return if the key is missing
+     * @return the value or the default value
+     */
+
+    public String getString(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return parseInt(properties, key, defaultValue, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return parseLong(properties, key, defaultValue, Long.MIN_VALUE);
+    }
+}
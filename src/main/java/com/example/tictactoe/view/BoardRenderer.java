@@ -0,0 +1,34 @@
+package com.example.tictactoe.view;
+
+import com.example.tictactoe.model.GameModel;
+import javafx.scene.Node;
+
+/**
+ * This interface describes a view that draws the game board.
+ * Cells are marked as dirty when the model changes and only those cells are repainted by render().
+ * All methods must be called on the JavaFX application thread.
+ *
+ */
+
+public interface BoardRenderer {
+    Node getNode();
+
+    void markDirty(int row, int col);
+
+    /**
+     * Marks every cell that currently shows a symbol as dirty, e.g. after the board was reset.
+     */
+
+    void markOccupiedDirty();
+
+    /**
+     * Repaints the dirty cells from the given model.
+     *
+     * @param model the model to read the cells from
+     * @return the number of cells that were repainted
+     */
+
+    int render(GameModel model);
+
+    void setEnabled(boolean enabled);
+}
@@ -0,0 +1,125 @@
+package com.example.tictactoe.view;
+
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.Player;
+import javafx.geometry.HPos;
+import javafx.geometry.Insets;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class draws the board as a grid of buttons, one button per cell.
+ * It is the default for small boards, where the scene graph stays small and the buttons give keyboard and focus handling for free.
+ * The colors and fonts come from the style classes in tictactoe.css.
+ *
+ */
+
+public class ButtonBoardRenderer implements BoardRenderer {
+    private static final String CELL_STYLE_CLASS = "board-cell";
+    private static final List<String> STYLE_X = List.of("button", CELL_STYLE_CLASS, "cell-x");
+    private static final List<String> STYLE_O = List.of("button", CELL_STYLE_CLASS, "cell-o");
+    private static final List<String> STYLE_EMPTY = List.of("button", CELL_STYLE_CLASS, "cell-empty");
+    private static final int LARGE_BOARD_SIZE = 4;
+
+    private final int size;
+    private final GridPane grid = new GridPane();
+    private final Button[][] buttons;
+    private final Player[][] renderedCells;
+    private final BitSet dirtyCells;
+
+    public ButtonBoardRenderer(int size, CellClickHandler clickHandler) {
+        this.size = size;
+        this.buttons = new Button[size][size];
+        this.renderedCells = new Player[size][size];
+        this.dirtyCells = new BitSet(size * size);
+        dirtyCells.set(0, size * size);
+
+        grid.setGridLinesVisible(true);
+        grid.setHgap(5.0);
+        grid.setVgap(5.0);
+        grid.setPadding(new Insets(5.0));
+        grid.getStyleClass().add(size >= LARGE_BOARD_SIZE ? "board-large" : "board-small");
+
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                Button button = new Button();
+                button.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+                button.getStyleClass().setAll(STYLE_EMPTY);
+                final int r = row;
+                final int c = col;
+                button.setOnAction(event -> clickHandler.onCellClicked(r, c));
+
+                GridPane.setHalignment(button, HPos.CENTER);
+                GridPane.setValignment(button, VPos.CENTER);
+                GridPane.setHgrow(button, Priority.ALWAYS);
+                GridPane.setVgrow(button, Priority.ALWAYS);
+
+                grid.add(button, col, row);
+                buttons[row][col] = button;
+            }
+        }
+        System.out.println("board buttons loaded successfully");
+    }
+
+    @Override
+    public Node getNode() {
+        return grid;
+    }
+
+    @Override
+    public void markDirty(int row, int col) {
+        dirtyCells.set(row * size + col);
+    }
+
+    @Override
+    public void markOccupiedDirty() {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (renderedCells[row][col] != Player.EMPTY) {
+                    dirtyCells.set(row * size + col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Repaints the dirty cells. Buttons whose symbol did not change keep their text and style class.
+     */
+
+    @Override
+    public int render(GameModel model) {
+        int cellsUpdated = 0;
+        for (int index = dirtyCells.nextSetBit(0); index >= 0; index = dirtyCells.nextSetBit(index + 1)) {
+            int row = index / size;
+            int col = index % size;
+            Player player = model.getPlayerAt(row, col);
+            if (renderedCells[row][col] == player) {
+                continue;
+            }
+            Button button = buttons[row][col];
+            button.setText(player.toString());
+            if (player == Player.X) {
+                button.getStyleClass().setAll(STYLE_X);
+            } else if (player == Player.O) {
+                button.getStyleClass().setAll(STYLE_O);
+            } else {
+                button.getStyleClass().setAll(STYLE_EMPTY);
+            }
+            renderedCells[row][col] = player;
+            cellsUpdated++;
+        }
+        dirtyCells.clear();
+        return cellsUpdated;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        grid.setDisable(!enabled);
+    }
+}
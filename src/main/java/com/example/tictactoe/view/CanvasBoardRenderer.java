@@ -0,0 +1,256 @@
+package com.example.tictactoe.view;
+
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.Player;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+import java.util.BitSet;
+
+/**
+ * This class draws the whole board on a single Canvas, so even a 100x100 board is only one node in the scene graph.
+ * Clicks are mapped to cells by coordinate math, only dirty cells are repainted after a move,
+ * and the board can be zoomed with the mouse wheel and panned by dragging.
+ *
+ */
+
+public final class CanvasBoardRenderer implements BoardRenderer {
+    private static final Color BACKGROUND_COLOR = Color.web("#f4f4f4");
+    private static final Color GRID_COLOR = Color.web("#1b1b1b");
+    private static final Color X_COLOR = Color.web("#00ffcb");
+    private static final Color O_COLOR = Color.web("#f61212");
+    private static final double ZOOM_STEP = 1.1;
+    private static final double MIN_GRID_CELL_SIZE = 4.0;   // darunter werden keine Gitterlinien mehr gezeichnet
+    private static final double MIN_SYMBOL_CELL_SIZE = 12.0;  // darunter werden Felder nur noch eingefärbt
+
+    private final int size;
+    private final Canvas canvas;
+    private final GraphicsContext graphics;
+    private final CellClickHandler clickHandler;
+    private final BitSet dirtyCells;
+    private final double baseCellSize;
+    private final double maxZoom;
+
+    private GameModel lastModel;
+    private boolean fullRedraw = true;
+    private boolean enabled = true;
+    private double zoom = 1.0;
+    private double offsetX = 0;
+    private double offsetY = 0;
+    private double dragStartX;
+    private double dragStartY;
+    private double dragStartOffsetX;
+    private double dragStartOffsetY;
+    private Font symbolFont;
+    private double symbolFontCellSize = -1;
+
+    public CanvasBoardRenderer(int size, double width, double height, CellClickHandler clickHandler) {
+        this.size = size;
+        this.clickHandler = clickHandler;
+        this.canvas = new Canvas(width, height);
+        this.graphics = canvas.getGraphicsContext2D();
+        this.dirtyCells = new BitSet(size * size);
+        this.baseCellSize = Math.min(width, height) / size;
+        this.maxZoom = Math.max(1.0, 60.0 / baseCellSize);
+
+        graphics.setTextAlign(TextAlignment.CENTER);
+        graphics.setTextBaseline(VPos.CENTER);
+
+        canvas.setOnMousePressed(this::handleMousePressed);
+        canvas.setOnMouseDragged(this::handleMouseDragged);
+        canvas.setOnMouseClicked(this::handleMouseClicked);
+        canvas.setOnScroll(this::handleScroll);
+        System.out.println("canvas board renderer created for " + size + "x" + size);
+    }
+
+    @Override
+    public Node getNode() {
+        return canvas;
+    }
+
+    @Override
+    public void markDirty(int row, int col) {
+        dirtyCells.set(row * size + col);
+    }
+
+    @Override
+    public void markOccupiedDirty() {
+        fullRedraw = true;
+    }
+
+    /**
+     * Repaints the dirty cells, or the whole visible part of the board after a reset, zoom or pan.
+     */
+
+    @Override
+    public int render(GameModel model) {
+        lastModel = model;
+        int cellsUpdated;
+        if (fullRedraw) {
+            cellsUpdated = redrawAll(model);
+            fullRedraw = false;
+        } else {
+            cellsUpdated = 0;
+            for (int index = dirtyCells.nextSetBit(0); index >= 0; index = dirtyCells.nextSetBit(index + 1)) {
+                int row = index / size;
+                int col = index % size;
+                if (isVisible(row, col)) {
+                    drawCell(row, col, model.getPlayerAt(row, col));
+                    cellsUpdated++;
+                }
+            }
+        }
+        dirtyCells.clear();
+        return cellsUpdated;
+    }
+
+    private int redrawAll(GameModel model) {
+        double cellSize = cellSize();
+        graphics.setFill(BACKGROUND_COLOR);
+        graphics.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        int firstRow = Math.max(0, (int) Math.floor(-offsetY / cellSize));
+        int lastRow = Math.min(size - 1, (int) Math.floor((canvas.getHeight() - offsetY) / cellSize));
+        int firstCol = Math.max(0, (int) Math.floor(-offsetX / cellSize));
+        int lastCol = Math.min(size - 1, (int) Math.floor((canvas.getWidth() - offsetX) / cellSize));
+
+        if (cellSize >= MIN_GRID_CELL_SIZE) {
+            graphics.setStroke(GRID_COLOR);
+            graphics.setLineWidth(1.0);
+            for (int row = firstRow; row <= lastRow + 1; row++) {
+                double y = offsetY + row * cellSize;
+                graphics.strokeLine(offsetX + firstCol * cellSize, y, offsetX + (lastCol + 1) * cellSize, y);
+            }
+            for (int col = firstCol; col <= lastCol + 1; col++) {
+                double x = offsetX + col * cellSize;
+                graphics.strokeLine(x, offsetY + firstRow * cellSize, x, offsetY + (lastRow + 1) * cellSize);
+            }
+        }
+
+        int cellsDrawn = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                Player player = model.getPlayerAt(row, col);
+                if (player != Player.EMPTY) {
+                    drawCell(row, col, player);
+                    cellsDrawn++;
+                }
+            }
+        }
+        return cellsDrawn;
+    }
+
+    private void drawCell(int row, int col, Player player) {
+        double cellSize = cellSize();
+        double x = offsetX + col * cellSize;
+        double y = offsetY + row * cellSize;
+        double inset = cellSize >= MIN_GRID_CELL_SIZE ? 1.0 : 0.0;
+
+        graphics.setFill(BACKGROUND_COLOR);
+        graphics.fillRect(x + inset, y + inset, cellSize - 2 * inset, cellSize - 2 * inset);
+        if (player == Player.EMPTY) {
+            return;
+        }
+
+        Color color = player == Player.X ? X_COLOR : O_COLOR;
+        graphics.setFill(color);
+        if (cellSize < MIN_SYMBOL_CELL_SIZE) {
+            graphics.fillRect(x + inset, y + inset, cellSize - 2 * inset, cellSize - 2 * inset);
+        } else {
+            graphics.setFont(symbolFont(cellSize));
+            graphics.fillText(player.toString(), x + cellSize / 2, y + cellSize / 2);
+        }
+    }
+
+    private Font symbolFont(double cellSize) {
+        if (cellSize != symbolFontCellSize) {
+            symbolFont = Font.font("Arial", FontWeight.BOLD, cellSize * 0.6);
+            symbolFontCellSize = cellSize;
+        }
+        return symbolFont;
+    }
+
+    private boolean isVisible(int row, int col) {
+        double cellSize = cellSize();
+        double x = offsetX + col * cellSize;
+        double y = offsetY + row * cellSize;
+        return x + cellSize > 0 && y + cellSize > 0 && x < canvas.getWidth() && y < canvas.getHeight();
+    }
+
+    private double cellSize() {
+        return baseCellSize * zoom;
+    }
+
+    private void handleMousePressed(MouseEvent event) {
+        dragStartX = event.getX();
+        dragStartY = event.getY();
+        dragStartOffsetX = offsetX;
+        dragStartOffsetY = offsetY;
+    }
+
+    private void handleMouseDragged(MouseEvent event) {
+        offsetX = dragStartOffsetX + event.getX() - dragStartX;
+        offsetY = dragStartOffsetY + event.getY() - dragStartY;
+        viewChanged();
+    }
+
+    /**
+     * Maps a click to a cell. Clicks that ended a drag are ignored, so panning never places a symbol.
+     */
+
+    private void handleMouseClicked(MouseEvent event) {
+        if (!enabled || event.getButton() != MouseButton.PRIMARY || !event.isStillSincePress()) {
+            return;
+        }
+        double cellSize = cellSize();
+        int col = (int) Math.floor((event.getX() - offsetX) / cellSize);
+        int row = (int) Math.floor((event.getY() - offsetY) / cellSize);
+        if (row >= 0 && row < size && col >= 0 && col < size) {
+            clickHandler.onCellClicked(row, col);
+        }
+    }
+
+    /**
+     * Zooms around the mouse position, so the cell under the cursor stays in place.
+     */
+
+    private void handleScroll(ScrollEvent event) {
+        double oldCellSize = cellSize();
+        double factor = event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+        zoom = Math.max(1.0, Math.min(maxZoom, zoom * factor));
+        double scale = cellSize() / oldCellSize;
+        offsetX = event.getX() - (event.getX() - offsetX) * scale;
+        offsetY = event.getY() - (event.getY() - offsetY) * scale;
+        viewChanged();
+        event.consume();
+    }
+
+    private void viewChanged() {
+        double boardSize = size * cellSize();
+        offsetX = Math.min(0, Math.max(canvas.getWidth() - boardSize, offsetX));
+        offsetY = Math.min(0, Math.max(canvas.getHeight() - boardSize, offsetY));
+        fullRedraw = true;
+        if (lastModel != null) {
+            render(lastModel);
+        }
+    }
+
+    /**
+     * Disabling only blocks clicks and dims the canvas, zooming and panning keep working while waiting for the opponent.
+     */
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        canvas.setOpacity(enabled ? 1.0 : 0.6);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.tictactoe.view;
+
+/**
+ * Callback that is invoked when the user clicks on a cell of the board.
+ */
+
+public interface CellClickHandler {
+    void onCellClicked(int row, int col);
+}
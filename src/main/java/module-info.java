@@ -1,8 +1,12 @@
 module com.example.tictactoe {
-        requires javafx.controls;
-        requires javafx.fxml;
+        requires static javafx.controls; // nur für die Oberfläche, der headless Start lädt kein JavaFX
+        requires static javafx.fxml;
+        requires java.management;
+        requires jdk.jfr;
+        requires jdk.httpserver;
 
 
         opens com.example.tictactoe.controller to javafx.fxml;
         exports com.example.tictactoe;
+        exports com.example.tictactoe.metrics;
         }
\ No newline at end of file
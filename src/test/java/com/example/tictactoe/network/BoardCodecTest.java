@@ -0,0 +1,79 @@
+package com.example.tictactoe.network;
+
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the packed form of the board that is sent with a SNAPSHOT.
+ *
+ */
+
+class BoardCodecTest {
+
+    @Test
+    void packedCellsSurviveTheRoundTrip() {
+        for (int size = 1; size <= 9; size++) { // jede Anzahl an Zellen im letzten Byte
+            GameModel model = new GameModel(size, Math.min(size, 3));
+            int moves = 0;
+            for (int cell = 0; cell < size * size && !model.getGameState().isGameOver(); cell += 2) {
+                model.makeMove(cell / size, cell % size);
+                moves++;
+            }
+            Player[][] board = BoardCodec.decodePacked(size, BoardCodec.encodePacked(model));
+            assertArrayEquals(cellsOf(model), board, "board of size " + size + " after " + moves + " moves");
+        }
+    }
+
+    @Test
+    void packedCellsAreShorterThanTheText() {
+        GameModel model = new GameModel(15, 5);
+        model.makeMove(7, 7);
+        model.makeMove(7, 8);
+        String packed = BoardCodec.encodePacked(model);
+        assertTrue(packed.length() * 2 < model.getSize() * model.getSize(), "packed length " + packed.length());
+        assertTrue(packed.indexOf(':') < 0);
+    }
+
+    @Test
+    void packedCellsOfAnotherSizeAreRejected() {
+        String packed = BoardCodec.encodePacked(new GameModel(4, 3));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodePacked(3, packed));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodePacked(5, packed));
+    }
+
+    @Test
+    void invalidPackedTextIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodePacked(3, "not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodePacked(0, ""));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodePacked(65536, "")); // size * size wäre 0
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodePacked(GameModel.MAX_BOARD_SIZE + 1, ""));
+        String invalidCell = Base64.getEncoder().withoutPadding().encodeToString(new byte[]{0, 3, 0});
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodePacked(3, invalidCell));
+    }
+
+    @Test
+    void cellsOfAStateMessageMustFormASquare() {
+        assertEquals(Player.X, BoardCodec.decodeCells("X...O....")[0][0]);
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodeCells("X...O..."));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodeCells(""));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodeCells("X...Z...."));
+    }
+
+    private static Player[][] cellsOf(GameModel model) {
+        Player[][] cells = new Player[model.getSize()][model.getSize()];
+        for (int row = 0; row < model.getSize(); row++) {
+            for (int col = 0; col < model.getSize(); col++) {
+                cells[row][col] = model.getPlayerAt(row, col);
+            }
+        }
+        return cells;
+    }
+}
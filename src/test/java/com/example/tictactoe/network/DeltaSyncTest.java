@@ -0,0 +1,158 @@
+package com.example.tictactoe.network;
+
+import com.example.tictactoe.model.GameModel;
+import com.example.tictactoe.model.GameState;
+import com.example.tictactoe.model.Player;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the numbered deltas of an authoritative server: the check of a delta against the local board
+ * and the snapshot a client asks for when a delta is missing.
+ *
+ */
+
+class DeltaSyncTest {
+
+    @Test
+    void deltaWithTheServerPositionIsAccepted() {
+        GameModel server = new GameModel(3, 3);
+        GameModel client = new GameModel(3, 3);
+        server.makeMove(1, 1);
+        assertTrue(client.applyDelta(1, 1, server.getCurrentPlayer(), server.getGameState(), server.getPositionHash()));
+        assertEquals(Player.X, client.getPlayerAt(1, 1));
+    }
+
+    @Test
+    void ownMoveConfirmedByTheServerIsNotPlayedTwice() {
+        GameModel server = new GameModel(3, 3);
+        GameModel client = new GameModel(3, 3);
+        server.makeMove(0, 2);
+        client.makeMove(0, 2);
+        assertTrue(client.applyDelta(0, 2, server.getCurrentPlayer(), server.getGameState(), server.getPositionHash()));
+        assertEquals(server.getPositionHash(), client.getPositionHash());
+        assertEquals(Player.O, client.getCurrentPlayer());
+    }
+
+    @Test
+    void deltaOnADriftedBoardIsRejected() {
+        GameModel server = new GameModel(3, 3);
+        GameModel client = new GameModel(3, 3);
+        client.makeMove(2, 2); // ein Zug, den der Server nie bestätigt hat
+        client.makeMove(2, 1);
+        server.makeMove(0, 0);
+        assertFalse(client.applyDelta(0, 0, server.getCurrentPlayer(), server.getGameState(), server.getPositionHash()));
+    }
+
+    @Test
+    void deltaWithAnotherHashPlayerOrStateIsRejected() {
+        GameModel server = new GameModel(3, 3);
+        server.makeMove(1, 1);
+        long hash = server.getPositionHash();
+        assertFalse(new GameModel(3, 3).applyDelta(1, 1, Player.O, GameState.PLAYING, hash ^ 1));
+        assertFalse(new GameModel(3, 3).applyDelta(1, 1, Player.X, GameState.PLAYING, hash));
+        assertFalse(new GameModel(3, 3).applyDelta(1, 1, Player.O, GameState.DRAW, hash));
+        assertFalse(new GameModel(3, 3).applyDelta(3, 0, Player.O, GameState.PLAYING, hash));
+    }
+
+    @Test
+    void missingDeltaRequestsOneSnapshotAndIgnoresDeltasUntilItArrives() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        NetworkConnection connection = new NetworkConnection(new RecordingListener(received), "localhost", 0);
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, loopback);
+             Socket peer = new Socket(loopback, serverSocket.getLocalPort())) {
+            connection.attach(serverSocket.accept(), Player.O);
+            PrintWriter toClient = new PrintWriter(peer.getOutputStream(), true);
+            BufferedReader fromClient = new BufferedReader(new InputStreamReader(peer.getInputStream()));
+            GameModel server = new GameModel(3, 3);
+
+            toClient.println(snapshot(0, server));
+            assertEquals("state", received.poll(5, TimeUnit.SECONDS));
+            server.makeMove(0, 0);
+            toClient.println(delta(1, 0, 0, server));
+            assertEquals("delta:0:0", received.poll(5, TimeUnit.SECONDS));
+
+            server.makeMove(1, 1);
+            server.makeMove(2, 2);
+            toClient.println(delta(3, 2, 2, server)); // Delta 2 fehlt
+            assertEquals(NetworkCommand.SYNC.toString(), fromClient.readLine());
+            server.makeMove(0, 1);
+            toClient.println(delta(4, 0, 1, server)); // kommt vor dem Snapshot an und wird verworfen
+
+            toClient.println(snapshot(4, server));
+            assertEquals("state", received.poll(5, TimeUnit.SECONDS));
+            server.makeMove(2, 1);
+            toClient.println(delta(5, 2, 1, server));
+            assertEquals("delta:2:1", received.poll(5, TimeUnit.SECONDS));
+
+            peer.setSoTimeout(200);
+            assertThrows(SocketTimeoutException.class, fromClient::readLine); // kein zweiter SYNC
+        } finally {
+            connection.closeConnection(false);
+        }
+    }
+
+    private static String snapshot(long sequence, GameModel model) {
+        return NetworkCommand.SNAPSHOT + ":" + sequence + ":" + model.getSize() + ":" + BoardCodec.encodePacked(model) + ":"
+                + model.getCurrentPlayer().name() + ":" + model.getGameState().name();
+    }
+
+    private static String delta(long sequence, int row, int col, GameModel model) {
+        return NetworkCommand.DELTA + ":" + sequence + ":" + row + ":" + col + ":" + model.getCurrentPlayer().name() + ":"
+                + model.getGameState().name() + ":" + Long.toHexString(model.getPositionHash());
+    }
+
+    private static final class RecordingListener implements NetworkListener {
+        private final BlockingQueue<String> received;
+
+        RecordingListener(BlockingQueue<String> received) {
+            this.received = received;
+        }
+
+        @Override
+        public void onStateReceived(Player[][] board, Player currentPlayer, GameState gameState) {
+            received.add("state");
+        }
+
+        @Override
+        public void onDeltaReceived(int row, int col, Player currentPlayer, GameState gameState, long positionHash) {
+            received.add("delta:" + row + ":" + col);
+        }
+
+        @Override
+        public void onMoveReceived(int row, int col) {
+        }
+
+        @Override
+        public void onResetReceived() {
+        }
+
+        @Override
+        public void onConnectionChanged(boolean connected, Player assignedPlayer) {
+        }
+
+        @Override
+        public void onError(String message) {
+        }
+
+        @Override
+        public void onOpponentQuit() {
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.tictactoe.ratings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests the persistent treap behind the leaderboard, above all that a change never touches an older tree.
+ *
+ */
+
+class RatingTreeTest {
+
+    @Test
+    void ranksFollowTheOrderOfTheTree() {
+        RatingTree<Integer> tree = new RatingTree<>(Comparator.naturalOrder());
+        for (int value : new int[]{50, 10, 40, 20, 30}) {
+            tree = tree.with(value);
+        }
+        assertEquals(5, tree.size());
+        assertEquals(List.of(10, 20, 30, 40, 50), tree.range(0, 5));
+        assertEquals(2, tree.rankOf(30));
+        assertEquals(-1, tree.rankOf(35));
+        assertEquals(Integer.valueOf(50), tree.get(4));
+        assertEquals(List.of(40, 50), tree.range(3, 10));
+        assertEquals(List.of(), tree.range(7, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> new RatingTree<Integer>(Comparator.naturalOrder()).get(0));
+    }
+
+    @Test
+    void equalElementIsReplaced() {
+        RatingTree<Rating> tree = new RatingTree<>(Rating.BY_NAME);
+        tree = tree.with(new Rating("anna", 1200, 0, 0, 0)).with(new Rating("bert", 1200, 0, 0, 0));
+        RatingTree<Rating> updated = tree.with(new Rating("anna", 1216, 1, 0, 0));
+        assertEquals(2, updated.size());
+        assertEquals(1216, updated.find(new Rating("anna", 0, 0, 0, 0)).getRating(), 0);
+        assertEquals(1200, tree.find(new Rating("anna", 0, 0, 0, 0)).getRating(), 0);
+    }
+
+    @Test
+    void removingAMissingElementReturnsTheSameTree() {
+        RatingTree<Integer> tree = new RatingTree<Integer>(Comparator.naturalOrder()).with(1).with(2);
+        assertSame(tree, tree.without(3));
+    }
+
+    @Test
+    void removingCopiesThePathAndLeavesOlderVersionsUnchanged() {
+        Random random = new Random(46);
+        List<RatingTree<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> expected = new ArrayList<>();
+        RatingTree<Integer> tree = new RatingTree<>(Comparator.naturalOrder());
+        TreeSet<Integer> reference = new TreeSet<>();
+        for (int i = 0; i < 300; i++) {
+            int value = random.nextInt(1000);
+            tree = tree.with(value);
+            reference.add(value);
+        }
+        versions.add(tree);
+        expected.add(new ArrayList<>(reference));
+
+        while (!reference.isEmpty()) {
+            Integer removed = reference.floor(reference.first() + random.nextInt(1000)); // ein zufälliges Element
+            tree = tree.without(removed);
+            reference.remove(removed);
+            assertNull(tree.find(removed));
+            versions.add(tree);
+            expected.add(new ArrayList<>(reference));
+        }
+
+        for (int version = 0; version < versions.size(); version++) {
+            RatingTree<Integer> old = versions.get(version);
+            List<Integer> values = expected.get(version);
+            assertEquals(values.size(), old.size(), "size of version " + version);
+            assertEquals(values, old.range(0, old.size()), "elements of version " + version);
+            for (int rank = 0; rank < values.size(); rank++) {
+                assertEquals(rank, old.rankOf(values.get(rank)));
+                assertEquals(values.get(rank), old.get(rank));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.tictactoe.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the slot and round arithmetic of the TimingWheel with a small wheel of four buckets,
+ * so most timeouts have to wait several full turns.
+ *
+ */
+
+class TimingWheelTest {
+    private static final long TICK_MILLIS = 10;
+    private static final int BUCKETS = 4;
+    private static final long LATE_MILLIS = 500; // großzügig, damit ein ausgelasteter Build-Rechner reicht
+
+    @Test
+    void timeoutsOverSeveralRoundsRunAfterTheirDelay() throws Exception {
+        long[] delays = {0, 5, 35, 40, 41, 95, 170, 250};
+        Map<Long, Long> elapsedMillis = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(delays.length);
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK_MILLIS, BUCKETS, Runnable::run);
+        try {
+            long start = System.nanoTime();
+            for (long delay : delays) {
+                wheel.schedule(delay, () -> {
+                    elapsedMillis.put(delay, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS), "expired: " + elapsedMillis.keySet());
+        } finally {
+            wheel.stop();
+        }
+        for (long delay : delays) {
+            long elapsed = elapsedMillis.get(delay);
+            assertTrue(elapsed >= delay, "timeout of " + delay + " ms ran after " + elapsed + " ms");
+            assertTrue(elapsed < delay + LATE_MILLIS, "timeout of " + delay + " ms ran after " + elapsed + " ms");
+        }
+    }
+
+    @Test
+    void timeoutOfWholeRoundsRunsOnceAfterTheLastTurn() throws Exception {
+        long oneRound = TICK_MILLIS * BUCKETS;
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK_MILLIS, BUCKETS, Runnable::run);
+        try {
+            long start = System.nanoTime();
+            CountDownLatch done = new CountDownLatch(1);
+            wheel.schedule(3 * oneRound, () -> {
+                runs.incrementAndGet();
+                done.countDown();
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 3 * oneRound);
+            Thread.sleep(2 * oneRound);
+            assertEquals(1, runs.get());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void cancelledTimeoutNeverRuns() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK_MILLIS, BUCKETS, Runnable::run);
+        try {
+            TimingWheel.Timeout waiting = wheel.schedule(30, runs::incrementAndGet);
+            TimingWheel.Timeout longer = wheel.schedule(130, runs::incrementAndGet);
+            Thread.sleep(2 * TICK_MILLIS); // beide Timeouts liegen jetzt in ihrem Bucket, der zweite wartet noch Runden ab
+            assertTrue(waiting.cancel());
+            assertTrue(longer.cancel());
+            assertFalse(longer.cancel());
+            Thread.sleep(300);
+            assertEquals(0, runs.get());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void cancellingOneTimeoutKeepsTheOthersOfItsBucket() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK_MILLIS, BUCKETS, Runnable::run);
+        try {
+            wheel.schedule(100, done::countDown);
+            TimingWheel.Timeout middle = wheel.schedule(100, cancelledRuns::incrementAndGet);
+            wheel.schedule(100, done::countDown);
+            Thread.sleep(2 * TICK_MILLIS);
+            assertTrue(middle.cancel());
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(0, cancelledRuns.get());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void expiredTimeoutCannotBeCancelled() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK_MILLIS, BUCKETS, Runnable::run);
+        try {
+            TimingWheel.Timeout timeout = wheel.schedule(15, done::countDown);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertFalse(timeout.cancel());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void invalidWheelIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel("test-wheel", 0, BUCKETS, Runnable::run));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel("test-wheel", TICK_MILLIS, 0, Runnable::run));
+    }
+}